@@ -0,0 +1,93 @@
+#!/usr/bin/env python3
+"""Forward one fdml invocation to a running `fdml daemon` over its Unix socket.
+
+Usage: fdml-client.py <socket> [fdml args...]
+
+Sends the working directory and argv, copies the daemon's stdout/stderr frames
+through as they arrive, feeds stdin only when the command asks for it, and
+exits with the command's exit code. Exits 125 without having printed anything
+when there is no daemon to talk to or the daemon declines the invocation, so
+bin/fdml can start a JVM instead.
+"""
+
+from __future__ import annotations
+
+import os
+import socket
+import struct
+import sys
+
+
+FALLBACK_EXIT = 125
+
+
+def read_exact(sock: socket.socket, n: int) -> bytes:
+    buf = bytearray()
+    while len(buf) < n:
+        chunk = sock.recv(n - len(buf))
+        if not chunk:
+            raise EOFError("daemon closed the connection")
+        buf += chunk
+    return bytes(buf)
+
+
+def encode(parts: list[str]) -> bytes:
+    out = [struct.pack(">i", len(parts))]
+    for p in parts:
+        b = p.encode("utf-8", "surrogateescape")
+        out.append(struct.pack(">i", len(b)))
+        out.append(b)
+    return b"".join(out)
+
+
+def read_stdin(n: int) -> bytes:
+    try:
+        return os.read(0, n)
+    except OSError:
+        return b""
+
+
+def main(argv: list[str]) -> int:
+    if len(argv) < 2:
+        sys.stderr.write("usage: fdml-client.py <socket> [fdml args...]\n")
+        return 4
+    sock = socket.socket(socket.AF_UNIX, socket.SOCK_STREAM)
+    try:
+        sock.connect(argv[1])
+    except OSError:
+        return FALLBACK_EXIT
+    with sock:
+        sock.sendall(encode([os.getcwd()] + argv[2:]))
+        started = False
+        while True:
+            try:
+                kind, n = struct.unpack(">ci", read_exact(sock, 5))
+                payload = read_exact(sock, n)
+            except EOFError as e:
+                if not started:
+                    return FALLBACK_EXIT
+                sys.stderr.write(f"fdml: {e}\n")
+                return 4
+            if kind == b"o":
+                started = True
+                sys.stdout.buffer.write(payload)
+                sys.stdout.buffer.flush()
+            elif kind == b"e":
+                started = True
+                sys.stderr.buffer.write(payload)
+                sys.stderr.buffer.flush()
+            elif kind == b"i":
+                started = True
+                data = read_stdin(struct.unpack(">i", payload)[0])
+                sock.sendall(struct.pack(">i", len(data)) + data)
+            elif kind == b"x":
+                return struct.unpack(">i", payload)[0]
+            elif kind == b"f":
+                return FALLBACK_EXIT
+            else:
+                sys.stderr.write(f"fdml: unknown frame {kind!r} from daemon\n")
+                return 4
+
+
+if __name__ == "__main__":
+    raise SystemExit(main(sys.argv))
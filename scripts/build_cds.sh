@@ -0,0 +1,27 @@
+#!/usr/bin/env bash
+# Build the application class-data-sharing archive bin/fdml uses when present.
+# One JVM runs the common commands (org.fdml.cli.CdsTraining) and dumps every
+# class it loaded into target/fdml.jsa at exit; later JVMs map that archive
+# instead of loading and verifying those classes from the jar again.
+set -euo pipefail
+ROOT="$(cd "$(dirname "${BASH_SOURCE[0]}")"/.. && pwd)"
+cd "$ROOT"
+JAR="target/fdml-core.jar"
+ARCHIVE="${1:-target/fdml.jsa}"
+JAVA_BIN="java"
+if [[ -n "${JAVA_HOME:-}" && -x "${JAVA_HOME}/bin/java" ]]; then
+  JAVA_BIN="${JAVA_HOME}/bin/java"
+fi
+if [[ ! -f "$JAR" ]]; then
+  mvn -q -DskipTests package
+fi
+scratch="$(mktemp -d)"
+trap 'rm -rf "$scratch"' EXIT
+rm -f "$ARCHIVE"
+"$JAVA_BIN" -XX:ArchiveClassesAtExit="$ARCHIVE" -Xlog:cds=off -Xlog:cds+dynamic=off \
+  -cp "$JAR" org.fdml.cli.CdsTraining "$scratch"
+if [[ ! -f "$ARCHIVE" ]]; then
+  echo "build_cds: no archive written (does this JVM support -XX:ArchiveClassesAtExit?)" >&2
+  exit 1
+fi
+echo "build_cds: wrote $ARCHIVE ($(du -h "$ARCHIVE" | cut -f1))"
@@ -128,7 +128,7 @@ for f in "${M6_SHOWCASE_FILES[@]}"; do
 done
 
 # Emit index.json for Search
-bin/fdml index corpus/valid "${V12_DEMO_FILES[@]}" "$UNIFIED_CORPUS_DIR" --out site/index.json
+bin/fdml index corpus/valid "${V12_DEMO_FILES[@]}" "$UNIFIED_CORPUS_DIR" --jobs auto --out site/index.json
 
 # Emit export-json sample for demo page
 bin/fdml export-json corpus/valid_v12/haire-mamougeh.opposites.v12.fdml.xml --out site/export-json-sample.json >/dev/null
@@ -0,0 +1,107 @@
+#!/usr/bin/env python3
+"""Measure fdml startup: time to first output per subcommand, with and without the CDS archive."""
+
+from __future__ import annotations
+
+import argparse
+import json
+import os
+import statistics
+import subprocess
+import sys
+import tempfile
+import time
+from pathlib import Path
+
+
+VALID = "corpus/valid/abdala.fdml.xml"
+VALID_V12 = "corpus/valid_v12/haire-mamougeh.opposites.v12.fdml.xml"
+
+
+def parse_args() -> argparse.Namespace:
+    ap = argparse.ArgumentParser(
+        description="Report time-to-first-output and total wall time per fdml subcommand."
+    )
+    ap.add_argument("--fdml-bin", default="bin/fdml", help="fdml executable path")
+    ap.add_argument("--archive", default="target/fdml.jsa", help="CDS archive built by scripts/build_cds.sh")
+    ap.add_argument("--runs", type=int, default=5, help="runs per subcommand and mode (default: 5)")
+    ap.add_argument("--report-out", default="", help="optional JSON report output path")
+    return ap.parse_args()
+
+
+def commands(scratch: Path) -> dict[str, list[str]]:
+    return {
+        "validate": ["validate", VALID],
+        "doctor": ["doctor", VALID_V12, "--json"],
+        "lint": ["lint", VALID],
+        "render": ["render", VALID, "--out", str(scratch / "render.html")],
+        "export-json": ["export-json", VALID_V12, "--out", str(scratch / "export.json")],
+        "help": ["--help"],
+    }
+
+
+def run_once(argv: list[str], env: dict[str, str]) -> tuple[float, float, int]:
+    """Seconds to the first byte on stdout/stderr (or exit, if silent), total seconds, exit code."""
+    t0 = time.perf_counter()
+    proc = subprocess.Popen(argv, stdout=subprocess.PIPE, stderr=subprocess.STDOUT, env=env)
+    assert proc.stdout is not None
+    first = proc.stdout.read(1)
+    t_first = time.perf_counter()
+    proc.stdout.read()
+    code = proc.wait()
+    t_end = time.perf_counter()
+    return (t_first if first else t_end) - t0, t_end - t0, code
+
+
+def measure(fdml_bin: str, args: list[str], env: dict[str, str], runs: int) -> dict:
+    ttfo: list[float] = []
+    total: list[float] = []
+    codes: set[int] = set()
+    run_once([fdml_bin] + args, env)  # warm the page cache
+    for _ in range(runs):
+        first, wall, code = run_once([fdml_bin] + args, env)
+        ttfo.append(first)
+        total.append(wall)
+        codes.add(code)
+    return {
+        "ttfoMedianMs": round(statistics.median(ttfo) * 1000, 1),
+        "totalMedianMs": round(statistics.median(total) * 1000, 1),
+        "exitCodes": sorted(codes),
+    }
+
+
+def main() -> int:
+    args = parse_args()
+    if args.runs < 1:
+        print("startup_bench: --runs must be >= 1", file=sys.stderr)
+        return 2
+    archive = Path(args.archive)
+    base_env = dict(os.environ, FDML_NO_DAEMON="1")
+    modes = {"no-cds": dict(base_env, FDML_NO_CDS="1")}
+    if archive.is_file():
+        modes["cds"] = dict(base_env)
+    else:
+        print(f"startup_bench: {archive} not found; run `make cds` to compare with the archive", file=sys.stderr)
+
+    results: dict[str, dict] = {}
+    with tempfile.TemporaryDirectory() as tmp:
+        for name, cmd in commands(Path(tmp)).items():
+            results[name] = {mode: measure(args.fdml_bin, cmd, env, args.runs) for mode, env in modes.items()}
+
+    print(f"{'subcommand':<12} {'mode':<7} {'first output':>13} {'total':>9}")
+    for name, by_mode in results.items():
+        for mode, r in by_mode.items():
+            print(f"{name:<12} {mode:<7} {r['ttfoMedianMs']:>10.1f} ms {r['totalMedianMs']:>6.1f} ms")
+        if "cds" in by_mode:
+            saved = by_mode["no-cds"]["ttfoMedianMs"] - by_mode["cds"]["ttfoMedianMs"]
+            print(f"{'':<12} {'saved':<7} {saved:>10.1f} ms")
+
+    if args.report_out:
+        out = Path(args.report_out)
+        out.parent.mkdir(parents=True, exist_ok=True)
+        out.write_text(json.dumps({"runs": args.runs, "archive": str(archive), "results": results}, indent=2) + "\n", encoding="utf-8")
+    return 0
+
+
+if __name__ == "__main__":
+    raise SystemExit(main())
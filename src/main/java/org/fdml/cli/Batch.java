@@ -0,0 +1,137 @@
+package org.fdml.cli;
+
+import net.sf.saxon.s9api.SaxonApiException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@code fdml batch}: runs JSON jobs read from stdin, one per line, on one set of warm engines.
+ *
+ * A job names a command from {@link JsonCommands#NAMES} and its inputs, e.g.
+ * {@code {"id":7,"cmd":"doctor","path":"corpus/valid","explain":true}} ({@code paths} takes a
+ * list). Jobs run {@code --jobs} at a time and each writes one line as soon as it finishes, so
+ * lines come out in completion order: {@code {"id":7,"cmd":"doctor","ok":true,"result":{...}}}
+ * with the command's {@code --json} payload, or {@code "error"} instead of {@code ok}/{@code result}
+ * for a job that could not run. {@code id} is echoed as written; without one it is the job's line
+ * number. At most {@code 2 * jobs} jobs are read ahead, so a caller can keep one process for a
+ * whole run and feed it as it goes.
+ *
+ * Exits 0 when every job ran and passed, 2 when a check failed, and 4 when a job could not run.
+ */
+final class Batch {
+
+  private Batch() {}
+
+  static int run(String[] args) {
+    int jobs = 1;
+    String out = null;
+    for (int i = 1; i < args.length; i++) {
+      if ("--jobs".equals(args[i]) && i + 1 < args.length) jobs = Parallel.parseJobs(args[++i]);
+      else if ("--out".equals(args[i]) && i + 1 < args.length) out = args[++i];
+      else jobs = 0;
+    }
+    if (jobs < 1) {
+      System.err.println("batch: [--jobs N|auto] [--out file] < jobs.ndjson");
+      return 4;
+    }
+
+    AtomicInteger worst = new AtomicInteger();
+    ExecutorService pool = Parallel.newPool(jobs);
+    Semaphore window = new Semaphore(2 * jobs);
+    try (Ndjson lines = Ndjson.open(out);
+         BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))) {
+      String line;
+      int n = 0;
+      while ((line = in.readLine()) != null) {
+        n++;
+        if (line.isBlank()) continue;
+        String job = line;
+        int lineNo = n;
+        window.acquire();
+        pool.execute(() -> {
+          try {
+            StringBuilder sb = new StringBuilder();
+            worst.accumulateAndGet(execute(job, lineNo, sb), Math::max);
+            synchronized (lines) {
+              lines.line(sb.toString());
+            }
+          } finally {
+            window.release();
+          }
+        });
+      }
+      pool.shutdown();
+      pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    } catch (IOException e) {
+      System.err.println("batch: " + e.getMessage());
+      return 4;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return 4;
+    } finally {
+      pool.shutdownNow();
+    }
+    return worst.get();
+  }
+
+  /** Runs one job line into {@code sb}; returns the exit code it contributes. */
+  static int execute(String job, int lineNo, StringBuilder sb) {
+    String id = String.valueOf(lineNo);
+    String cmd = null;
+    try {
+      List<MergeResults.Member> members = MergeResults.members(job);
+      List<Path> paths = new ArrayList<>();
+      boolean explain = false;
+      for (MergeResults.Member m : members) {
+        Object v = JsonMini.parse(m.raw);
+        switch (m.key) {
+          case "id": id = m.raw; break;
+          case "cmd": cmd = v instanceof String ? (String) v : null; break;
+          case "path": paths.add(Paths.get(string(v, "path"))); break;
+          case "paths":
+            if (!(v instanceof List)) throw new IllegalArgumentException("\"paths\" must be a list of strings");
+            for (Object p : (List<?>) v) paths.add(Paths.get(string(p, "paths")));
+            break;
+          case "explain": explain = Boolean.TRUE.equals(v); break;
+          default: throw new IllegalArgumentException("unknown field \"" + m.key + "\"");
+        }
+      }
+      if (cmd == null || !JsonCommands.NAMES.contains(cmd)) {
+        throw new IllegalArgumentException("\"cmd\" must be one of " + String.join(", ", JsonCommands.NAMES));
+      }
+      if (paths.isEmpty()) throw new IllegalArgumentException("give \"path\" or \"paths\"");
+
+      JsonCommands.Result r = JsonCommands.run(cmd, paths, null, explain);
+      head(sb, id, cmd);
+      if (r.ok != null) sb.append(",\"ok\":").append(r.ok);
+      sb.append(",\"result\":").append(r.payload).append("}");
+      return r.ok == null || r.ok ? 0 : 2;
+    } catch (RuntimeException | SaxonApiException e) {
+      sb.setLength(0);
+      head(sb, id, cmd);
+      sb.append(",\"error\":\"").append(MainJson.esc(String.valueOf(e.getMessage()))).append("\"}");
+      return 4;
+    }
+  }
+
+  private static void head(StringBuilder sb, String id, String cmd) {
+    sb.append("{\"id\":").append(id);
+    if (cmd != null) sb.append(",\"cmd\":\"").append(MainJson.esc(cmd)).append("\"");
+  }
+
+  private static String string(Object v, String field) {
+    if (!(v instanceof String)) throw new IllegalArgumentException("\"" + field + "\" must be a string");
+    return (String) v;
+  }
+}
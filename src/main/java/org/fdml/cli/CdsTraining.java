@@ -0,0 +1,61 @@
+package org.fdml.cli;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * The training run for the class-data-sharing archive {@code scripts/build_cds.sh} makes: runs
+ * the common commands once each, in one JVM, so {@code -XX:ArchiveClassesAtExit} records every
+ * class they load (Saxon, the XSD and Schematron stacks, openhtmltopdf and PDFBox).
+ *
+ * Run from the repository root; outputs go to the scratch directory given as the only argument,
+ * and the commands' own output is discarded.
+ */
+final class CdsTraining {
+  static final String VALID = "corpus/valid/abdala.fdml.xml";
+  static final String VALID_V12 = "corpus/valid_v12/haire-mamougeh.opposites.v12.fdml.xml";
+
+  private CdsTraining() {}
+
+  public static void main(String[] args) throws Exception {
+    Path scratch = Paths.get(args.length > 0 ? args[0] : "target/cds-training");
+    Files.createDirectories(scratch);
+    List<String[]> commands = List.of(
+        new String[] {"validate", VALID, "corpus/invalid"},
+        new String[] {"validate", VALID, "--json"},
+        new String[] {"validate-sch", VALID_V12, "--json"},
+        new String[] {"validate-all", VALID_V12},
+        new String[] {"validate-geo", VALID_V12, "corpus/invalid_v12", "--json"},
+        new String[] {"lint", VALID, "--json"},
+        new String[] {"doctor", VALID_V12, "corpus/invalid_timing", "--json", "--explain"},
+        new String[] {"doctor", VALID_V12, "--strict"},
+        new String[] {"render", VALID, "--out", scratch.resolve("render.html").toString()},
+        new String[] {"export-json", VALID_V12, "--out", scratch.resolve("export.json").toString()},
+        new String[] {"index", "corpus/valid_v12", "--out", scratch.resolve("index.json").toString()},
+        new String[] {"export-pdf", VALID, "--out", scratch.resolve("export.pdf").toString()});
+
+    PrintStream out = System.out, err = System.err;
+    PrintStream sink = new PrintStream(OutputStream.nullOutputStream());
+    int failed = 0;
+    for (String[] c : commands) {
+      System.setOut(sink);
+      System.setErr(sink);
+      int code;
+      try {
+        code = Main.run(c);
+      } finally {
+        System.setOut(out);
+        System.setErr(err);
+      }
+      if (code != 0 && code != 2) {
+        err.println("cds-training: '" + String.join(" ", c) + "' exited " + code);
+        failed++;
+      }
+    }
+    err.println("cds-training: ran " + commands.size() + " command(s), " + failed + " failed");
+  }
+}
@@ -0,0 +1,251 @@
+package org.fdml.cli;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.transform.stream.StreamSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Function;
+
+/**
+ * The one way commands turn their path arguments into input files.
+ *
+ * Directories are listed in parallel (one fork/join task per directory) and flattened back into
+ * the same depth-first order {@link Files#walk} gives, so output order does not change. Paths are
+ * de-duplicated. Files found in a directory must look like XML by name and have an {@code fdml}
+ * root element, checked with a StAX peek at the first start tag rather than a full parse, so
+ * provenance JSON and other side files no longer reach the stages. Files named on the command
+ * line are always kept and left to the stages to report. The peeked {@code fdml/@version} is
+ * carried along so stages can route on it without parsing.
+ *
+ * {@link #open} reads a file once into {@link FileBytes} and hands the buffer to the caller, which
+ * owns it and must release it. {@link #map} does so inside each file's own task, so buffers go back
+ * to the pool as files finish; {@link #walk} and {@link #files} only peek and keep nothing.
+ */
+final class CorpusWalker {
+
+  /** One input file and what the root-element peek found. */
+  static final class Entry {
+    final Path file;
+    /** True when the path was named directly rather than found by walking a directory. */
+    final boolean explicit;
+    /** {@code fdml/@version} ("" when absent), or null if the root is not fdml or could not be read. */
+    final String version;
+    /** The file's bytes, owned by whoever consumes this entry; null if not read (see {@link #walk}) or unreadable. */
+    final FileBytes bytes;
+
+    Entry(Path file, boolean explicit, String version, FileBytes bytes) {
+      this.file = file;
+      this.explicit = explicit;
+      this.version = version;
+      this.bytes = bytes;
+    }
+
+    /** A parser source over the shared bytes, or over the file itself if they could not be read. */
+    StreamSource source() {
+      return bytes != null ? bytes.source() : new StreamSource(file.toFile());
+    }
+
+    void release() {
+      if (bytes != null) bytes.release();
+    }
+  }
+
+  private static final ThreadLocal<XMLInputFactory> STAX = ThreadLocal.withInitial(() -> {
+    XMLInputFactory f = XMLInputFactory.newInstance();
+    f.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+    f.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    f.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    return f;
+  });
+
+  private CorpusWalker() {}
+
+  /** Paths only: peeks each candidate's root and keeps no bytes. */
+  static List<Path> files(List<Path> inputs) {
+    List<Path> found = new ArrayList<>();
+    List<Boolean> explicit = new ArrayList<>();
+    candidates(inputs, found, explicit);
+    List<String> versions = Parallel.map(found, peekThreads(), CorpusWalker::peekVersion);
+    List<Path> out = new ArrayList<>(found.size());
+    for (int i = 0; i < found.size(); i++) {
+      if (explicit.get(i) || versions.get(i) != null) out.add(found.get(i));
+    }
+    return out;
+  }
+
+  /** Entries with the peeked version but no bytes; whoever uses one reads the file when it needs it. */
+  static List<Entry> walk(List<Path> inputs) {
+    return walk(inputs, null);
+  }
+
+  /** Only the files of {@code shard} (all of them when null). */
+  static List<Entry> walk(List<Path> inputs, Shard shard) {
+    return present(Parallel.map(plan(inputs, shard), peekThreads(), CorpusWalker::peek));
+  }
+
+  /**
+   * {@code fn} over each input file on up to {@code jobs} threads, in input order. Each file is
+   * {@link #open}ed inside its own task and handed to {@code fn}, which owns the bytes.
+   */
+  static <R> List<R> map(List<Path> inputs, Shard shard, int jobs, Function<Entry, R> fn) {
+    return present(Parallel.map(plan(inputs, shard), jobs, c -> {
+      Entry e = open(c);
+      return e != null ? fn.apply(e) : null;
+    }));
+  }
+
+  private static <T> List<T> present(List<T> items) {
+    List<T> out = new ArrayList<>(items.size());
+    for (T t : items) {
+      if (t != null) out.add(t);
+    }
+    return out;
+  }
+
+  /**
+   * The candidate files of {@link #walk}, listed but not read yet (no bytes, no version). Streaming
+   * commands {@link #open} them one at a time so only the files in flight are held in memory.
+   */
+  static List<Entry> plan(List<Path> inputs) {
+    return plan(inputs, null);
+  }
+
+  static List<Entry> plan(List<Path> inputs, Shard shard) {
+    List<Path> found = new ArrayList<>();
+    List<Boolean> explicit = new ArrayList<>();
+    candidates(inputs, found, explicit);
+    List<Entry> out = new ArrayList<>(found.size());
+    for (int i = 0; i < found.size(); i++) out.add(new Entry(found.get(i), explicit.get(i), null, null));
+    return shard != null ? shard.select(out) : out;
+  }
+
+  /** Reads a planned entry; null (and nothing held) when a file found in a directory is not FDML. */
+  static Entry open(Entry planned) {
+    Entry e = read(planned.file);
+    if (planned.explicit || e.version != null) return new Entry(e.file, planned.explicit, e.version, e.bytes);
+    e.release();
+    return null;
+  }
+
+  /** A planned entry with its root peeked, reading no more than that; null as for {@link #open}. */
+  private static Entry peek(Entry planned) {
+    String version = peekVersion(planned.file);
+    return planned.explicit || version != null ? new Entry(planned.file, planned.explicit, version, null) : null;
+  }
+
+  /** A document received in memory rather than read from disk, treated as named explicitly. */
+  static Entry of(Path file, byte[] xml) {
+    FileBytes b = FileBytes.of(file, xml);
+    try (InputStream in = b.stream()) {
+      return new Entry(file, true, peekVersion(in, FileBytes.systemId(file)), b);
+    } catch (IOException e) {
+      return new Entry(file, true, null, b);
+    }
+  }
+
+  private static Entry read(Path file) {
+    FileBytes b;
+    try {
+      b = FileBytes.read(file);
+    } catch (IOException e) {
+      return new Entry(file, false, null, null);
+    }
+    try (InputStream in = b.stream()) {
+      return new Entry(file, false, peekVersion(in, FileBytes.systemId(file)), b);
+    } catch (IOException e) {
+      return new Entry(file, false, null, b);
+    }
+  }
+
+  private static int peekThreads() {
+    return Runtime.getRuntime().availableProcessors();
+  }
+
+  private static void candidates(List<Path> inputs, List<Path> found, List<Boolean> explicit) {
+    Set<Path> seen = new HashSet<>();
+    for (Path p : inputs) {
+      boolean dir = Files.isDirectory(p);
+      List<Path> files = dir ? new ListDirectory(p).invoke() : List.of(p);
+      for (Path f : files) {
+        if (dir && !ParsedDocument.looksLikeXml(f)) continue;
+        if (!seen.add(f.toAbsolutePath().normalize())) continue;
+        found.add(f);
+        explicit.add(!dir);
+      }
+    }
+  }
+
+  /**
+   * Reads up to the root start tag. Returns its {@code @version} ("" if absent) when the root is a
+   * no-namespace {@code fdml} element, otherwise null. A file that is not well-formed before the
+   * root counts as not FDML.
+   */
+  static String peekVersion(Path file) {
+    try (InputStream in = Files.newInputStream(file)) {
+      return peekVersion(in, FileBytes.systemId(file));
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  private static String peekVersion(InputStream in, String systemId) {
+    try {
+      XMLStreamReader r = STAX.get().createXMLStreamReader(systemId, in);
+      try {
+        while (r.hasNext()) {
+          if (r.next() == XMLStreamConstants.START_ELEMENT) {
+            String ns = r.getNamespaceURI();
+            if (!"fdml".equals(r.getLocalName()) || (ns != null && !ns.isEmpty())) return null;
+            String v = r.getAttributeValue(null, "version");
+            return v == null ? "" : v;
+          }
+        }
+        return null;
+      } finally {
+        r.close();
+      }
+    } catch (XMLStreamException e) {
+      return null;
+    }
+  }
+
+  /** Regular files under one directory, in {@link Files#walk} order; subdirectories run as forked tasks. */
+  private static final class ListDirectory extends RecursiveTask<List<Path>> {
+    private static final long serialVersionUID = 1L;
+    private final Path dir;
+
+    ListDirectory(Path dir) {
+      this.dir = dir;
+    }
+
+    @Override
+    protected List<Path> compute() {
+      List<Object> slots = new ArrayList<>();
+      try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir)) {
+        for (Path p : ds) {
+          if (Files.isDirectory(p, LinkOption.NOFOLLOW_LINKS)) {
+            ListDirectory sub = new ListDirectory(p);
+            sub.fork();
+            slots.add(sub);
+          } else if (Files.isRegularFile(p)) {
+            slots.add(p);
+          }
+        }
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+      List<Path> out = new ArrayList<>();
+      for (Object s : slots) {
+        if (s instanceof ListDirectory sub) out.addAll(sub.join());
+        else out.add((Path) s);
+      }
+      return out;
+    }
+  }
+}
@@ -0,0 +1,360 @@
+package org.fdml.cli;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@code fdml daemon}: runs CLI invocations forwarded over a Unix domain socket in one warm JVM.
+ *
+ * {@code bin/fdml} connects when the socket exists and sends its working directory and argv; the
+ * daemon runs {@link Main#run} with {@code System.out}, {@code System.err} and {@code System.in}
+ * bound to the connection and ends with the exit code, so the caller sees what a fresh JVM would
+ * have printed and returned. Those streams are process-wide, so invocations run one at a time;
+ * each command still fans out over its own {@code --jobs}.
+ *
+ * Java cannot change its working directory, so the daemon only runs invocations made from the
+ * directory it was started in. For those, for commands that never return ({@code serve},
+ * {@code daemon}, {@code doctor --watch}), and once the jar has been rebuilt, it answers
+ * {@link #FALLBACK} and the client starts a JVM of its own; after a rebuild the daemon also exits.
+ *
+ * Wire format, all integers big-endian: the client sends {@code count} then {@code count}
+ * length-prefixed UTF-8 strings (the working directory, then argv). The daemon answers with frames
+ * of one kind byte, a length and a payload: {@code o}/{@code e} carry stdout/stderr bytes,
+ * {@code i} asks for up to the given number of stdin bytes (the client replies with a
+ * length-prefixed chunk, empty at end of input), {@code x} carries the exit code and
+ * {@code f} is {@link #FALLBACK}. Stdin is only read when a command asks for it, so callers looping
+ * over {@code while read} keep their input.
+ */
+final class Daemon {
+  static final Path DEFAULT_SOCKET = Paths.get("target/fdml.sock");
+  static final byte OUT = 'o';
+  static final byte ERR = 'e';
+  static final byte IN = 'i';
+  static final byte EXIT = 'x';
+  static final byte FALLBACK = 'f';
+
+  private final Path socket;
+  private final ServerSocketChannel server;
+  private final Path cwd;
+  private final Path jar;
+  private final long jarModified;
+  private volatile boolean running = true;
+
+  private Daemon(Path socket, ServerSocketChannel server) throws IOException {
+    this.socket = socket;
+    this.server = server;
+    this.cwd = Paths.get("").toAbsolutePath().toRealPath();
+    this.jar = codeLocation();
+    this.jarModified = modified(jar);
+  }
+
+  static int run(String[] args) {
+    Path socket = DEFAULT_SOCKET;
+    boolean stop = false;
+    for (int i = 1; i < args.length; i++) {
+      if ("--socket".equals(args[i]) && i + 1 < args.length) socket = Paths.get(args[++i]);
+      else if ("--stop".equals(args[i])) stop = true;
+      else {
+        System.err.println("daemon: [--socket path] [--stop]");
+        return 4;
+      }
+    }
+    if (stop) return stop(socket);
+
+    Daemon d;
+    try {
+      d = bind(socket);
+    } catch (IOException e) {
+      System.err.println("daemon: cannot listen on " + socket + ": " + e.getMessage());
+      return 4;
+    }
+    Runtime.getRuntime().addShutdownHook(new Thread(d::close));
+    System.err.println("daemon: listening on " + socket + " for " + d.cwd + "; stop with 'fdml daemon --stop'");
+    d.serve();
+    return 0;
+  }
+
+  /**
+   * Warms the engines and listens on {@code socket}. A socket file no daemon answers on is left
+   * over from one that died and is replaced; a live one is an error.
+   */
+  static Daemon bind(Path socket) throws IOException {
+    if (Files.exists(socket)) {
+      if (answers(socket)) throw new IOException("another daemon is already listening");
+      Files.delete(socket);
+    }
+    EngineContext ctx = EngineContext.shared();
+    ctx.xsdValidator();
+    ctx.schematronValidator();
+    ctx.xpaths();
+
+    if (socket.getParent() != null) Files.createDirectories(socket.getParent());
+    ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+    server.bind(UnixDomainSocketAddress.of(socket));
+    return new Daemon(socket, server);
+  }
+
+  /** Accepts and runs invocations one at a time until stopped. */
+  void serve() {
+    while (running) {
+      try (SocketChannel ch = server.accept()) {
+        handle(ch);
+      } catch (IOException e) {
+        if (running) System.err.println("daemon: " + e.getMessage());
+      }
+    }
+  }
+
+  void close() {
+    running = false;
+    try {
+      server.close();
+      Files.deleteIfExists(socket);
+    } catch (IOException ignored) {}
+  }
+
+  private void handle(SocketChannel ch) throws IOException {
+    DataInputStream in = new DataInputStream(Channels.newInputStream(ch));
+    Frames frames = new Frames(new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(ch))));
+    int count;
+    try {
+      count = in.readInt();
+    } catch (EOFException probe) {
+      return;   // a connect-only liveness check
+    }
+    if (count < 1) throw new IOException("empty request");
+    String dir = readString(in);
+    String[] args = new String[count - 1];
+    for (int i = 0; i < args.length; i++) args[i] = readString(in);
+
+    if (args.length >= 2 && "daemon".equals(args[0]) && "--stop".equals(args[1])) {
+      frames.exit(0);
+      close();
+      return;
+    }
+    if (modified(jar) != jarModified) {
+      frames.fallback();
+      System.err.println("daemon: " + jar + " changed; exiting so the next start picks it up");
+      close();
+      return;
+    }
+    if (!sameDir(dir) || !forwardable(args)) {
+      frames.fallback();
+      return;
+    }
+
+    PrintStream out = System.out, err = System.err;
+    InputStream stdin = System.in;
+    Charset cs = Charset.defaultCharset();
+    PrintStream o = new PrintStream(new BufferedOutputStream(frames.stream(OUT)), true, cs);
+    PrintStream e = new PrintStream(new BufferedOutputStream(frames.stream(ERR)), true, cs);
+    int code;
+    System.setOut(o);
+    System.setErr(e);
+    System.setIn(new Stdin(in, frames));
+    try {
+      code = Main.run(args);
+    } catch (RuntimeException | Error t) {
+      t.printStackTrace();
+      code = 4;
+    } finally {
+      o.flush();
+      e.flush();
+      System.setOut(out);
+      System.setErr(err);
+      System.setIn(stdin);
+    }
+    frames.exit(code);
+  }
+
+  private boolean sameDir(String dir) {
+    try {
+      return Paths.get(dir).toRealPath().equals(cwd);
+    } catch (IOException | RuntimeException e) {
+      return false;
+    }
+  }
+
+  /** Commands that return; the others keep a JVM of their own. */
+  static boolean forwardable(String[] args) {
+    if (args.length == 0) return true;
+    if ("serve".equals(args[0]) || "daemon".equals(args[0])) return false;
+    if ("doctor".equals(args[0])) {
+      for (String a : args) if ("--watch".equals(a)) return false;
+    }
+    return true;
+  }
+
+  /**
+   * Forwards one invocation to the daemon on {@code socket}, copying its output to {@code out} and
+   * {@code err}; stdin reads see end of input. Returns the exit code, or -1 when the daemon
+   * answered {@link #FALLBACK}.
+   */
+  static int call(Path socket, List<String> args, OutputStream out, OutputStream err) throws IOException {
+    try (SocketChannel ch = SocketChannel.open(UnixDomainSocketAddress.of(socket))) {
+      DataOutputStream req = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(ch)));
+      List<String> parts = new ArrayList<>();
+      parts.add(Paths.get("").toAbsolutePath().toString());
+      parts.addAll(args);
+      req.writeInt(parts.size());
+      for (String p : parts) writeString(req, p);
+      req.flush();
+
+      DataInputStream in = new DataInputStream(Channels.newInputStream(ch));
+      while (true) {
+        byte kind = in.readByte();
+        byte[] payload = new byte[in.readInt()];
+        in.readFully(payload);
+        switch (kind) {
+          case OUT: out.write(payload); out.flush(); break;
+          case ERR: err.write(payload); err.flush(); break;
+          case IN: req.writeInt(0); req.flush(); break;
+          case EXIT: return ByteBuffer.wrap(payload).getInt();
+          case FALLBACK: return -1;
+          default: throw new IOException("unknown frame '" + (char) kind + "'");
+        }
+      }
+    }
+  }
+
+  private static int stop(Path socket) {
+    if (!Files.exists(socket)) {
+      System.err.println("daemon: none running on " + socket);
+      return 0;
+    }
+    try {
+      call(socket, List.of("daemon", "--stop"), System.out, System.err);
+      System.err.println("daemon: stopped " + socket);
+    } catch (IOException e) {
+      System.err.println("daemon: none running on " + socket + " (" + e.getMessage() + ")");
+    }
+    return 0;
+  }
+
+  private static boolean answers(Path socket) {
+    try {
+      SocketChannel.open(UnixDomainSocketAddress.of(socket)).close();
+      return true;
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  private static Path codeLocation() {
+    try {
+      return Paths.get(Daemon.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+    } catch (Exception e) {
+      return null;
+    }
+  }
+
+  private static long modified(Path p) {
+    try {
+      return p == null ? 0 : Files.getLastModifiedTime(p).toMillis();
+    } catch (IOException e) {
+      return -1;
+    }
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    byte[] b = new byte[in.readInt()];
+    in.readFully(b);
+    return new String(b, StandardCharsets.UTF_8);
+  }
+
+  private static void writeString(DataOutputStream out, String s) throws IOException {
+    byte[] b = s.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(b.length);
+    out.write(b);
+  }
+
+  /** The reply side of one connection; frames from any thread go out whole. */
+  private static final class Frames {
+    private final DataOutputStream out;
+
+    Frames(DataOutputStream out) {
+      this.out = out;
+    }
+
+    synchronized void frame(byte kind, byte[] b, int off, int len) throws IOException {
+      out.writeByte(kind);
+      out.writeInt(len);
+      out.write(b, off, len);
+      out.flush();
+    }
+
+    void exit(int code) throws IOException {
+      frame(EXIT, ByteBuffer.allocate(4).putInt(code).array(), 0, 4);
+    }
+
+    void fallback() throws IOException {
+      frame(FALLBACK, new byte[0], 0, 0);
+    }
+
+    OutputStream stream(byte kind) {
+      return new OutputStream() {
+        @Override
+        public void write(int b) throws IOException {
+          write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+          if (len > 0) frame(kind, b, off, len);
+        }
+      };
+    }
+  }
+
+  /** {@code System.in} for a forwarded command: asks the client for bytes only when read. */
+  private static final class Stdin extends InputStream {
+    private final DataInputStream in;
+    private final Frames frames;
+    private boolean eof;
+
+    Stdin(DataInputStream in, Frames frames) {
+      this.in = in;
+      this.frames = frames;
+    }
+
+    @Override
+    public int read() throws IOException {
+      byte[] b = new byte[1];
+      return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public synchronized int read(byte[] b, int off, int len) throws IOException {
+      if (eof) return -1;
+      if (len == 0) return 0;
+      frames.frame(IN, ByteBuffer.allocate(4).putInt(len).array(), 0, 4);
+      int n = in.readInt();
+      if (n == 0) {
+        eof = true;
+        return -1;
+      }
+      if (n > len) throw new EOFException("client sent more stdin than asked for");
+      in.readFully(b, off, n);
+      return n;
+    }
+  }
+}
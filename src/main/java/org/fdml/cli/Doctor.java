@@ -9,22 +9,111 @@ class Doctor {
     boolean json   = hasFlag(args, "--json");
     boolean strict = hasFlag(args, "--strict");
     boolean explain = hasFlag(args, "--explain");
+    boolean profiling = hasFlag(args, "--profile");
+    SchematronValidator.Engine engine = SchematronValidator.Engine.parse(flagValue(args, "--engine"));
+    if (engine == null) {
+      System.err.println("doctor: --engine expects xslt, java or parity");
+      return 4;
+    }
+    int jobs = Parallel.parseJobs(flagValue(args, "--jobs"));
+    if (jobs < 1) {
+      System.err.println("doctor: --jobs expects a positive integer or 'auto'");
+      return 4;
+    }
+    int top = DoctorProfile.DEFAULT_TOP;
+    if (flagValue(args, "--profile-top") != null) {
+      try {
+        top = Integer.parseInt(flagValue(args, "--profile-top").trim());
+      } catch (NumberFormatException e) {
+        top = -1;
+      }
+      if (top < 0) {
+        System.err.println("doctor: --profile-top expects a non-negative integer");
+        return 4;
+      }
+    }
+    Shard shard = null;
+    if (flagValue(args, "--shard") != null) {
+      shard = Shard.parse(flagValue(args, "--shard"));
+      if (shard == null) {
+        System.err.println("doctor: --shard expects i/n with 1 <= i <= n");
+        return 4;
+      }
+    }
     List<Path> targets = collectNonFlagPaths(args, 1);
     if (targets.isEmpty()) {
-      System.err.println("doctor: provide <file-or-dir> [--json] [--strict] [--explain]");
+      System.err.println("doctor: provide <file-or-dir> [--json|--ndjson] [--strict] [--explain] [--engine xslt|java|parity] [--jobs N|auto] [--cache] [--cache-dir DIR] [--watch] [--profile] [--profile-top N] [--shard i/n]");
       return 4;
     }
 
-    Path schemaPath = Paths.get("schema/fdml.xsd");
-    FdmlValidator v = new FdmlValidator(schemaPath);
-    SchematronValidator s = new SchematronValidator(Paths.get("schematron/fdml-compiled.xsl"));
+    ResultCache cache;
+    try {
+      cache = ResultCache.fromFlags(hasFlag(args, "--cache"), flagValue(args, "--cache-dir"), "doctor engine=" + engine, engine);
+      if (cache != null && profiling) {
+        // Cached files run no stages, so there would be nothing to measure.
+        System.err.println("doctor: --profile ignores the result cache");
+        cache = null;
+      }
+    } catch (java.io.IOException e) {
+      System.err.println("doctor: cannot open the result cache: " + e.getMessage());
+      return 4;
+    }
+
+    EngineContext ctx = EngineContext.shared();
+    FdmlValidator v = ctx.xsdValidator();
+    SchematronValidator s = ctx.schematronValidator().withEngine(engine);
+
+    if (hasFlag(args, "--watch")) {
+      try {
+        return new DoctorWatch(ctx.xpaths(), targets, v, s, jobs).run(json, explain);
+      } catch (java.io.IOException e) {
+        System.err.println("doctor: cannot watch: " + e.getMessage());
+        return 4;
+      }
+    }
+
+    DoctorProfile profile = profiling ? new DoctorProfile() : null;
+    if (hasFlag(args, "--ndjson")) {
+      boolean ok;
+      try {
+        ok = stream(ctx.xpaths(), targets, shard, v, s, jobs, cache, explain, profile, top);
+      } catch (java.io.IOException e) {
+        System.err.println("doctor: cannot write output: " + e.getMessage());
+        return 4;
+      }
+      if (cache != null) cache.report("doctor");
+      if (s.parityMismatches() > 0) return 2;
+      return strict && !ok ? 2 : 0;
+    }
+
+    // Walk once and parse each file at most once; every stage reads the same trees.
+    List<ParsedDocument> docs = ParsedDocument.load(ctx.xpaths(), targets, shard);
+    DoctorStages stages = DoctorStages.run(docs, v, s, jobs, cache, profile);
+    if (cache != null) cache.report("doctor");
+    boolean ok = report(stages, json, explain, profile, top, shard);
 
-    var rX = v.validateCollect(targets);
-    var rS = s.validateCollect(targets);
-    var rL = Linter.lintCollect(targets);
-    var rT = TimingValidator.validateCollect(targets);
+    if (s.parityMismatches() > 0) return 2;
+    if (strict) {
+      if (!ok) return 2;
+    }
+    return 0;
+  }
+
+  /** Prints the summary (or JSON payload) for one run; true when every stage passed. */
+  static boolean report(DoctorStages stages, boolean json, boolean explain) {
+    return report(stages, json, explain, null, 0, null);
+  }
 
-    var rG = GeometryValidator.validateCollect(targets);
+  /**
+   * With a profile, also times explain and reports the profile with its {@code top} slowest files.
+   * With a shard, the JSON payload carries it (see {@link MainJson#withShard}).
+   */
+  static boolean report(DoctorStages stages, boolean json, boolean explain, DoctorProfile profile, int top, Shard shard) {
+    var rX = stages.xsd;
+    var rS = stages.schematron;
+    var rL = stages.lint;
+    var rT = stages.timing;
+    var rG = stages.geometry;
 
     boolean okX = allOkX(rX);
     boolean okS = allOkS(rS);
@@ -32,12 +121,12 @@ class Doctor {
     boolean okT = allOkT(rT);
     boolean okG = allOkG(rG);
 
-    Map<String, String> explainMap = explain
-      ? DoctorExplain.build(rX, rS, rL, rT, rG)
-      : java.util.Collections.emptyMap();
+    Map<String, String> explainMap = !explain ? java.util.Collections.emptyMap()
+      : profile != null ? profile.timeExplain(() -> DoctorExplain.build(rX, rS, rL, rT, rG))
+      : DoctorExplain.build(rX, rS, rL, rT, rG);
 
     if (json) {
-      System.out.println(MainJson.toJsonDoctor(rX, rS, rL, rT, explain ? explainMap : null));
+      System.out.println(MainJson.withShard(MainJson.toJsonDoctor(rX, rS, rL, rT, explain ? explainMap : null, profile, top), shard));
     } else {
       System.out.println("DOCTOR SUMMARY");
       System.out.println("  XSD       : " + (okX ? "OK" : "FAILED"));
@@ -57,20 +146,65 @@ class Doctor {
           }
         }
       }
+      if (profile != null) profile.print(top);
     }
+    return okX && okS && okL && okT && okG;
+  }
 
-    if (strict) {
-      if (!okX || !okS || !okL || !okT || !okG) return 2;
+  /**
+   * {@code --ndjson}: one line per file with its stage objects, written as soon as the file is
+   * checked, then one {@code {"explain":{...}}} and one {@code {"profile":{...}}} line when asked for.
+   */
+  private static boolean stream(XPaths xp, List<Path> targets, Shard shard, FdmlValidator v, SchematronValidator s,
+                                int jobs, ResultCache cache, boolean explain,
+                                DoctorProfile profile, int top) throws java.io.IOException {
+    boolean[] ok = {true};
+    Map<String, String> explainMap = new TreeMap<>();
+    DoctorStages.Stages stages = DoctorStages.stages(v, s, true, cache, profile);
+    try (Ndjson out = Ndjson.open(null)) {
+      Ndjson.documents(targets, shard, jobs, xp, stages::check, (f, r) -> {
+        ok[0] &= (r.xsd == null || r.xsd.ok) && (r.schematron == null || r.schematron.ok)
+            && (r.lint == null || r.lint.ok()) && (r.timing == null || r.timing.ok())
+            && (r.geometry == null || r.geometry.ok);
+        if (explain) explainMap.putAll(DoctorExplain.build(listOf(r.xsd), listOf(r.schematron),
+            listOf(r.lint), listOf(r.timing), listOf(r.geometry)));
+        out.line(sb -> MainJson.doctorFile(sb, f, r));
+      });
+      if (explain) {
+        out.line(sb -> {
+          sb.append("{");
+          MainJson.explainField(sb, explainMap);
+          sb.append("}");
+        });
+      }
+      if (profile != null) {
+        out.line(sb -> {
+          sb.append("{");
+          MainJson.profileField(sb, profile, top);
+          sb.append("}");
+        });
+      }
     }
-    return 0;
+    return ok[0];
+  }
+
+  private static <R> List<R> listOf(R r) {
+    return r != null ? List.of(r) : List.of();
   }
 
   private static boolean hasFlag(String[] a, String f){ for (String s : a) if (f.equals(s)) return true; return false; }
   private static List<Path> collectNonFlagPaths(String[] args, int from) {
     List<Path> t = new ArrayList<>();
-    for (int i = from; i < args.length; i++) if (!args[i].startsWith("--")) t.add(Paths.get(args[i]));
+    for (int i = from; i < args.length; i++) {
+      if (args[i].startsWith("--")) { if ("--engine".equals(args[i]) || "--jobs".equals(args[i]) || "--cache-dir".equals(args[i]) || "--profile-top".equals(args[i]) || "--shard".equals(args[i])) i++; continue; }
+      t.add(Paths.get(args[i]));
+    }
     return t;
   }
+  private static String flagValue(String[] args, String flag) {
+    for (int i = 0; i < args.length - 1; i++) if (flag.equals(args[i])) return args[i+1];
+    return null;
+  }
 
   private static boolean allOkX(java.util.List<FdmlValidator.Result> xs){ for (var r: xs) if(!r.ok) return false; return true; }
   private static boolean allOkS(java.util.List<SchematronValidator.Result> xs){ for (var r: xs) if(!r.ok) return false; return true; }
@@ -0,0 +1,189 @@
+package org.fdml.cli;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * {@code doctor --profile}: wall time, CPU time and allocated bytes per stage and per file.
+ *
+ * Each stage is measured on the thread that runs it, so the numbers hold under {@code --jobs}
+ * too. CPU and allocation come from the JVM's per-thread counters and read as -1 where the JVM
+ * does not offer them. Parse is timed on its own (a plain Saxon build) and XSD then validates in
+ * a separate pass, so a profiled run parses each file twice and takes a little longer overall
+ * than an unprofiled one; explain runs once per report and is timed as one sample.
+ */
+final class DoctorProfile {
+  enum Stage { PARSE, XSD, SCHEMATRON, LINT, TIMING, GEOMETRY, EXPLAIN;
+    String label() { return name().toLowerCase(Locale.ROOT); }
+  }
+
+  static final int DEFAULT_TOP = 10;
+
+  private static final int WALL = 0, CPU = 1, ALLOC = 2;
+  private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+  private static final com.sun.management.ThreadMXBean SUN_THREADS =
+      THREADS instanceof com.sun.management.ThreadMXBean t ? t : null;
+
+  /** Per file, one {wall ns, cpu ns, allocated bytes} row per stage; -1 where the stage did not run. */
+  private final Map<Path, long[][]> files = new ConcurrentHashMap<>();
+  private final long[] explain = {-1, -1, -1};
+  private final boolean cpu;
+  private final boolean alloc;
+
+  DoctorProfile() {
+    cpu = THREADS.isCurrentThreadCpuTimeSupported();
+    if (cpu && !THREADS.isThreadCpuTimeEnabled()) THREADS.setThreadCpuTimeEnabled(true);
+    alloc = SUN_THREADS != null && SUN_THREADS.isThreadAllocatedMemorySupported();
+    if (alloc && !SUN_THREADS.isThreadAllocatedMemoryEnabled()) SUN_THREADS.setThreadAllocatedMemoryEnabled(true);
+  }
+
+  /** Runs one file's stage and records what it cost, unless it returns null (the stage skipped the file). */
+  <T> T time(Path file, Stage stage, Supplier<T> work) {
+    long[] row = new long[3];
+    T out = measure(row, work);
+    if (out != null) files.computeIfAbsent(file, f -> newRows())[stage.ordinal()] = row;
+    return out;
+  }
+
+  /** Runs the report's explain step. */
+  <T> T timeExplain(Supplier<T> work) {
+    return measure(explain, work);
+  }
+
+  private <T> T measure(long[] row, Supplier<T> work) {
+    long c0 = cpu ? THREADS.getCurrentThreadCpuTime() : 0;
+    long a0 = alloc ? SUN_THREADS.getCurrentThreadAllocatedBytes() : 0;
+    long w0 = System.nanoTime();
+    try {
+      return work.get();
+    } finally {
+      row[WALL] = System.nanoTime() - w0;
+      row[CPU] = cpu ? THREADS.getCurrentThreadCpuTime() - c0 : -1;
+      row[ALLOC] = alloc ? SUN_THREADS.getCurrentThreadAllocatedBytes() - a0 : -1;
+    }
+  }
+
+  private static long[][] newRows() {
+    long[][] rows = new long[Stage.values().length][];
+    for (int i = 0; i < rows.length; i++) rows[i] = new long[] {-1, -1, -1};
+    return rows;
+  }
+
+  int fileCount() {
+    return files.size();
+  }
+
+  /** One stage's distribution over the files it ran on. */
+  static final class StageStats {
+    final Stage stage;
+    final int count;
+    /** p50, p95, max and total; rows are wall ns, cpu ns, allocated bytes. */
+    final long[][] values;
+
+    StageStats(Stage stage, int count, long[][] values) {
+      this.stage = stage;
+      this.count = count;
+      this.values = values;
+    }
+  }
+
+  /** A file's total wall time and its per-stage wall times (ns, -1 where a stage did not run). */
+  static final class FileCost {
+    final Path file;
+    final long wallNs;
+    final long[] stageWallNs;
+
+    FileCost(Path file, long wallNs, long[] stageWallNs) {
+      this.file = file;
+      this.wallNs = wallNs;
+      this.stageWallNs = stageWallNs;
+    }
+  }
+
+  List<StageStats> stages() {
+    List<StageStats> out = new ArrayList<>();
+    for (Stage s : Stage.values()) {
+      List<long[]> rows = new ArrayList<>();
+      if (s == Stage.EXPLAIN) {
+        if (explain[WALL] >= 0) rows.add(explain);
+      } else {
+        for (long[][] f : files.values()) if (f[s.ordinal()][WALL] >= 0) rows.add(f[s.ordinal()]);
+      }
+      if (rows.isEmpty()) continue;
+      long[][] values = new long[3][];
+      for (int m = 0; m < 3; m++) values[m] = distribution(rows, m);
+      out.add(new StageStats(s, rows.size(), values));
+    }
+    return out;
+  }
+
+  /** The {@code n} files with the most wall time over all stages, slowest first. */
+  List<FileCost> slowest(int n) {
+    List<FileCost> all = new ArrayList<>(files.size());
+    for (Map.Entry<Path, long[][]> e : files.entrySet()) {
+      long[] wall = new long[Stage.values().length];
+      long total = 0;
+      for (int i = 0; i < wall.length; i++) {
+        wall[i] = e.getValue()[i][WALL];
+        if (wall[i] > 0) total += wall[i];
+      }
+      all.add(new FileCost(e.getKey(), total, wall));
+    }
+    all.sort(Comparator.comparingLong((FileCost c) -> -c.wallNs).thenComparing(c -> c.file.toString()));
+    return all.subList(0, Math.min(n, all.size()));
+  }
+
+  /** p50, p95 (nearest rank), max and total of one measure; -1 throughout if it was not available. */
+  private static long[] distribution(List<long[]> rows, int measure) {
+    long[] v = new long[rows.size()];
+    for (int i = 0; i < v.length; i++) v[i] = rows.get(i)[measure];
+    Arrays.sort(v);
+    if (v[0] < 0) return new long[] {-1, -1, -1, -1};
+    long total = 0;
+    for (long x : v) total += x;
+    return new long[] {rank(v, 50), rank(v, 95), v[v.length - 1], total};
+  }
+
+  private static long rank(long[] sorted, int pct) {
+    int i = (int) Math.ceil(pct / 100.0 * sorted.length) - 1;
+    return sorted[Math.max(0, i)];
+  }
+
+  void print(int top) {
+    System.out.println("PROFILE (" + fileCount() + " file(s); wall ms | cpu ms | alloc KiB as p50/p95/max)");
+    for (StageStats s : stages()) {
+      System.out.printf(Locale.ROOT, "  %-10s n=%-4d wall %s | cpu %s | alloc %s%n", s.stage.label(), s.count,
+          triple(s.values[WALL], 1e6), triple(s.values[CPU], 1e6), triple(s.values[ALLOC], 1024));
+    }
+    List<FileCost> slow = slowest(top);
+    if (slow.isEmpty()) return;
+    System.out.println("SLOWEST FILES");
+    for (FileCost c : slow) {
+      StringBuilder parts = new StringBuilder();
+      for (Stage s : Stage.values()) {
+        if (c.stageWallNs[s.ordinal()] < 0) continue;
+        if (parts.length() > 0) parts.append(", ");
+        parts.append(s.label()).append(' ').append(fmt(c.stageWallNs[s.ordinal()], 1e6));
+      }
+      System.out.printf(Locale.ROOT, "  %8s ms  %s (%s)%n", fmt(c.wallNs, 1e6), c.file, parts);
+    }
+  }
+
+  private static String triple(long[] v, double unit) {
+    if (v[0] < 0) return "n/a";
+    return fmt(v[0], unit) + "/" + fmt(v[1], unit) + "/" + fmt(v[2], unit);
+  }
+
+  static String fmt(long v, double unit) {
+    return String.format(Locale.ROOT, "%.1f", v / unit);
+  }
+}
@@ -0,0 +1,202 @@
+package org.fdml.cli;
+
+import net.sf.saxon.s9api.SaxonApiException;
+import org.fdml.cli.DoctorProfile.Stage;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Runs doctor's five checks as (file × stage) tasks on a fork/join pool.
+ *
+ * Each file's XSD task runs first because it builds the tree in the same SAX pass; as soon as it
+ * is done, that file's Schematron, lint, timing and geometry tasks are forked together, while other
+ * workers are still parsing later files. Results go into per-file slots by input position and are
+ * compacted in input order at the end, so the report does not depend on scheduling. Each file's
+ * tree is dropped as soon as its last stage joins, so at most {@code jobs} trees are alive at once.
+ *
+ * With a {@link ResultCache}, a file whose entry is present skips every stage and is never parsed.
+ * With a {@link DoctorProfile}, each (file × stage) task is timed where it runs.
+ */
+final class DoctorStages {
+  final List<FdmlValidator.Result> xsd;
+  final List<SchematronValidator.Result> schematron;
+  final List<Linter.FileResult> lint;
+  final List<TimingValidator.FileResult> timing;
+  final List<GeometryValidator.Result> geometry;
+  /** Each input file's results, in input order. */
+  final List<ResultCache.Record> records;
+
+  private DoctorStages(ResultCache.Record[] slots) {
+    this.records = List.of(slots);
+    this.xsd = compact(slots, r -> r.xsd);
+    this.schematron = compact(slots, r -> r.schematron);
+    this.lint = compact(slots, r -> r.lint);
+    this.timing = compact(slots, r -> r.timing);
+    this.geometry = compact(slots, r -> r.geometry);
+  }
+
+  /** True when every stage passed for every file. */
+  boolean ok() {
+    for (ResultCache.Record r : records) {
+      if (r.xsd != null && !r.xsd.ok) return false;
+      if (r.schematron != null && !r.schematron.ok) return false;
+      if (r.lint != null && !r.lint.ok()) return false;
+      if (r.timing != null && !r.timing.ok()) return false;
+      if (r.geometry != null && !r.geometry.ok) return false;
+    }
+    return true;
+  }
+
+  /** A report over results gathered elsewhere, e.g. kept from earlier runs in watch mode. */
+  static DoctorStages of(Collection<ResultCache.Record> records) {
+    return new DoctorStages(records.toArray(new ResultCache.Record[0]));
+  }
+
+  static DoctorStages run(List<ParsedDocument> docs, FdmlValidator v, SchematronValidator s, int jobs) {
+    return run(docs, v, s, jobs, null);
+  }
+
+  static DoctorStages run(List<ParsedDocument> docs, FdmlValidator v, SchematronValidator s, int jobs, ResultCache cache) {
+    return run(docs, v, s, jobs, cache, null);
+  }
+
+  /** With a {@link DoctorProfile}, every stage of every file is timed into it. */
+  static DoctorStages run(List<ParsedDocument> docs, FdmlValidator v, SchematronValidator s, int jobs,
+                          ResultCache cache, DoctorProfile profile) {
+    return schedule(docs, new Stages(v, s, true, cache, profile), jobs);
+  }
+
+  /** XSD and Schematron only, as {@code validate-all} reports them. */
+  static DoctorStages validateAll(List<ParsedDocument> docs, FdmlValidator v, SchematronValidator s, int jobs, ResultCache cache) {
+    return schedule(docs, new Stages(v, s, false, cache, null), jobs);
+  }
+
+  private static DoctorStages schedule(List<ParsedDocument> docs, Stages stages, int jobs) {
+    int n = docs.size();
+    ResultCache.Record[] slots = new ResultCache.Record[n];
+
+    if (jobs <= 1 || n <= 1) {
+      for (int i = 0; i < n; i++) slots[i] = checkAndDrop(docs.get(i), stages, false);
+      return new DoctorStages(slots);
+    }
+
+    ForkJoinPool pool = new ForkJoinPool(jobs);
+    try {
+      pool.invoke(new RecursiveAction() {
+        @Override protected void compute() {
+          List<ForkJoinTask<?>> files = new ArrayList<>(n);
+          for (int i = 0; i < n; i++) {
+            int k = i;
+            files.add(ForkJoinTask.adapt(() -> { slots[k] = checkAndDrop(docs.get(k), stages, true); }));
+          }
+          invokeAll(files);
+        }
+      });
+    } finally {
+      pool.shutdownNow();
+    }
+    return new DoctorStages(slots);
+  }
+
+  private static ResultCache.Record checkAndDrop(ParsedDocument d, Stages stages, boolean fork) {
+    try {
+      return stages.check(d, fork);
+    } finally {
+      d.drop();
+    }
+  }
+
+  /** The per-file check behind {@link #run} ({@code all}) or {@link #validateAll}, for streaming one file at a time. */
+  static Stages stages(FdmlValidator v, SchematronValidator s, boolean all, ResultCache cache) {
+    return stages(v, s, all, cache, null);
+  }
+
+  static Stages stages(FdmlValidator v, SchematronValidator s, boolean all, ResultCache cache, DoctorProfile profile) {
+    return new Stages(v, s, all, cache, profile);
+  }
+
+  static final class Stages {
+    final FdmlValidator v;
+    final SchematronValidator s;
+    final boolean all;
+    final ResultCache cache;
+    final DoctorProfile profile;
+
+    private Stages(FdmlValidator v, SchematronValidator s, boolean all, ResultCache cache, DoctorProfile profile) {
+      this.v = v;
+      this.s = s;
+      this.all = all;
+      this.cache = cache;
+      this.profile = profile;
+    }
+
+    ResultCache.Record check(ParsedDocument d) {
+      return check(d, false);
+    }
+
+    /** One file's results, from the cache or by running its stages; {@code fork} runs the post-parse stages as subtasks. */
+    ResultCache.Record check(ParsedDocument d, boolean fork) {
+      String key = cache != null ? cache.key(d) : null;
+      if (key != null) {
+        ResultCache.Record hit = cache.get(key, d.file);
+        if (hit != null) {
+          d.releaseBytes();
+          return hit;
+        }
+      }
+      ResultCache.Record r = new ResultCache.Record();
+      if (profile != null) {
+        d.expectXsd();
+        profile.time(d.file, Stage.PARSE, () -> parse(d));
+      }
+      r.xsd = stage(d, Stage.XSD, () -> v.validateDoc(d));
+      if (!all) {
+        r.schematron = s.validateDoc(d);
+      } else if (fork) {
+        ForkJoinTask.invokeAll(
+          ForkJoinTask.adapt(() -> { r.schematron = stage(d, Stage.SCHEMATRON, () -> s.validateDoc(d)); }),
+          ForkJoinTask.adapt(() -> { r.lint = stage(d, Stage.LINT, () -> Linter.lintDoc(d)); }),
+          ForkJoinTask.adapt(() -> { r.timing = stage(d, Stage.TIMING, () -> TimingValidator.validateDoc(d)); }),
+          ForkJoinTask.adapt(() -> { r.geometry = stage(d, Stage.GEOMETRY, () -> GeometryValidator.validateDoc(d)); }));
+      } else {
+        r.schematron = stage(d, Stage.SCHEMATRON, () -> s.validateDoc(d));
+        r.lint = stage(d, Stage.LINT, () -> Linter.lintDoc(d));
+        r.timing = stage(d, Stage.TIMING, () -> TimingValidator.validateDoc(d));
+        r.geometry = stage(d, Stage.GEOMETRY, () -> GeometryValidator.validateDoc(d));
+      }
+      if (key != null) cache.put(key, r);
+      return r;
+    }
+
+    private <T> T stage(ParsedDocument d, Stage stage, Supplier<T> work) {
+      return profile != null ? profile.time(d.file, stage, work) : work.get();
+    }
+
+    /** Builds the tree on its own so the profile can tell parsing from schema checking. */
+    private static Boolean parse(ParsedDocument d) {
+      try {
+        d.node();
+      } catch (SaxonApiException e) {
+        // Each stage reports the parse error itself.
+      }
+      return Boolean.TRUE;
+    }
+  }
+
+  /** One stage's results in input order, without the files it skipped. */
+  private static <R> List<R> compact(ResultCache.Record[] slots, Function<ResultCache.Record, R> stage) {
+    List<R> out = new ArrayList<>(slots.length);
+    for (ResultCache.Record r : slots) {
+      R x = stage.apply(r);
+      if (x != null) out.add(x);
+    }
+    return out;
+  }
+}
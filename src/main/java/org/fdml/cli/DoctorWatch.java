@@ -0,0 +1,205 @@
+package org.fdml.cli;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * {@code doctor --watch}: checks the targets once, then re-checks files as they are saved.
+ *
+ * The compiled schema, stylesheet and XPaths stay loaded between rounds, so a round costs only the
+ * parse and checks of the files that changed. Events are debounced: after the first one the loop
+ * keeps draining until {@link #DEBOUNCE_MS} pass quietly, so an editor's write-rename-touch burst
+ * is one round. A round re-checks only the changed files: an FDML document never refers to
+ * another, so nothing else can change with them. The summary always covers every file seen so far.
+ */
+final class DoctorWatch {
+  static final long DEBOUNCE_MS = 75;
+
+  private final XPaths xpaths;
+  private final List<Path> targets;
+  private final FdmlValidator v;
+  private final SchematronValidator s;
+  private final int jobs;
+
+  /** Results by absolute path, in the order files were first seen. */
+  private final Map<Path, Checked> files = new LinkedHashMap<>();
+
+  private static final class Checked {
+    final Path file;
+    final ResultCache.Record results;
+
+    Checked(Path file, ResultCache.Record results) {
+      this.file = file;
+      this.results = results;
+    }
+  }
+
+  DoctorWatch(XPaths xpaths, List<Path> targets, FdmlValidator v, SchematronValidator s, int jobs) {
+    this.xpaths = xpaths;
+    this.targets = targets;
+    this.v = v;
+    this.s = s;
+    this.jobs = jobs;
+  }
+
+  /** Checks every target from scratch; returns the files checked. */
+  List<Path> checkAll() {
+    files.clear();
+    return check(ParsedDocument.load(xpaths, targets));
+  }
+
+  /**
+   * Re-checks {@code changed}. Files that no longer exist are dropped, and files found in a
+   * directory target must still have an fdml root. Returns the files checked.
+   */
+  List<Path> recheck(Collection<Path> changed) {
+    Map<Path, Path> todo = new LinkedHashMap<>();
+    for (Path p : changed) todo.putIfAbsent(key(p), p);
+
+    List<Path> existing = new ArrayList<>();
+    for (Map.Entry<Path, Path> e : todo.entrySet()) {
+      if (Files.isRegularFile(e.getValue())) existing.add(e.getValue());
+      else files.remove(e.getKey());
+    }
+    List<ParsedDocument> docs = new ArrayList<>();
+    for (CorpusWalker.Entry e : CorpusWalker.walk(existing)) {
+      if (e.version != null || isFileTarget(e.file)) {
+        docs.add(new ParsedDocument(xpaths, e));
+      } else {
+        e.release();
+        files.remove(key(e.file));
+      }
+    }
+    return check(docs);
+  }
+
+  /** Everything seen so far, in first-seen order. */
+  DoctorStages stages() {
+    List<ResultCache.Record> all = new ArrayList<>(files.size());
+    for (Checked c : files.values()) all.add(c.results);
+    return DoctorStages.of(all);
+  }
+
+  int run(boolean json, boolean explain) throws IOException {
+    checkAll();
+    Doctor.report(stages(), json, explain);
+
+    try (WatchService ws = FileSystems.getDefault().newWatchService()) {
+      Map<WatchKey, Path> dirs = new HashMap<>();
+      for (Path t : targets) {
+        if (Files.isDirectory(t)) registerTree(ws, t, dirs);
+        else register(ws, parentOf(t), dirs);
+      }
+      System.err.printf("doctor: watching %d file(s) in %d director(ies); Ctrl-C to stop%n", files.size(), dirs.size());
+
+      while (true) {
+        WatchKey wk = ws.take();
+        Set<Path> changed = new LinkedHashSet<>();
+        boolean overflow = false;
+        do {
+          overflow |= drain(ws, wk, dirs, changed);
+          wk.reset();
+        } while ((wk = ws.poll(DEBOUNCE_MS, TimeUnit.MILLISECONDS)) != null);
+        if (!overflow && changed.isEmpty()) continue;
+
+        long t0 = System.nanoTime();
+        List<Path> checked = overflow ? checkAll() : recheck(changed);
+        long ms = (System.nanoTime() - t0) / 1_000_000;
+        if (!json) {
+          System.out.printf("WATCH %d file(s) re-checked in %d ms%n", checked.size(), ms);
+          for (Path p : checked) System.out.println("  " + line(files.get(key(p))));
+          for (Path p : changed) if (!Files.exists(p)) System.out.println("  GONE " + p);
+        }
+        Doctor.report(stages(), json, explain);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return 0;
+    }
+  }
+
+  /** Queues relevant paths from one key's events; true on overflow (events were lost). */
+  private boolean drain(WatchService ws, WatchKey key, Map<WatchKey, Path> dirs, Set<Path> changed) throws IOException {
+    Path dir = dirs.get(key);
+    if (dir == null) return false;
+    boolean overflow = false;
+    for (WatchEvent<?> ev : key.pollEvents()) {
+      if (ev.kind() == OVERFLOW) {
+        overflow = true;
+        continue;
+      }
+      Path p = dir.resolve((Path) ev.context());
+      if (ev.kind() == ENTRY_CREATE && Files.isDirectory(p, LinkOption.NOFOLLOW_LINKS) && underDirTarget(p)) {
+        registerTree(ws, p, dirs);
+        try (var walk = Files.walk(p)) {
+          walk.filter(Files::isRegularFile).filter(ParsedDocument::looksLikeXml).forEach(changed::add);
+        }
+      } else if (relevant(p)) {
+        changed.add(p);
+      }
+    }
+    return overflow;
+  }
+
+  private List<Path> check(List<ParsedDocument> docs) {
+    DoctorStages run = DoctorStages.run(docs, v, s, jobs);
+    List<Path> checked = new ArrayList<>(docs.size());
+    for (int i = 0; i < docs.size(); i++) {
+      ParsedDocument d = docs.get(i);
+      files.put(key(d.file), new Checked(d.file, run.records.get(i)));   // keeps a known file's place
+      checked.add(d.file);
+    }
+    return checked;
+  }
+
+  private static String line(Checked c) {
+    ResultCache.Record r = c.results;
+    List<String> problems = new ArrayList<>();
+    if (r.xsd != null && !r.xsd.ok) problems.add("XSD" + (r.xsd.message != null ? " (" + r.xsd.message + ")" : ""));
+    if (r.schematron != null && !r.schematron.ok) problems.add("Schematron " + r.schematron.failures + " failure(s)");
+    if (r.geometry != null && !r.geometry.ok) problems.add("GEO " + r.geometry.issues.size() + " issue(s)");
+    if (r.lint != null && !r.lint.ok()) problems.add("Lint " + r.lint.warnings.size() + " warning(s)");
+    if (r.timing != null && !r.timing.ok()) problems.add("Timing " + r.timing.issues.size() + " issue(s)");
+    return problems.isEmpty() ? "OK   " + c.file : "FAIL " + c.file + ": " + String.join(" | ", problems);
+  }
+
+  private boolean relevant(Path p) {
+    Path key = key(p);
+    return files.containsKey(key) || isFileTarget(p) || (underDirTarget(p) && ParsedDocument.looksLikeXml(p));
+  }
+
+  private boolean isFileTarget(Path p) {
+    Path key = key(p);
+    for (Path t : targets) if (!Files.isDirectory(t) && key(t).equals(key)) return true;
+    return false;
+  }
+
+  private boolean underDirTarget(Path p) {
+    Path key = key(p);
+    for (Path t : targets) if (Files.isDirectory(t) && key.startsWith(key(t))) return true;
+    return false;
+  }
+
+  private static void registerTree(WatchService ws, Path root, Map<WatchKey, Path> dirs) throws IOException {
+    try (var walk = Files.walk(root)) {
+      for (Path d : (Iterable<Path>) walk.filter(Files::isDirectory)::iterator) register(ws, d, dirs);
+    }
+  }
+
+  private static void register(WatchService ws, Path dir, Map<WatchKey, Path> dirs) throws IOException {
+    dirs.put(dir.register(ws, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE), dir);
+  }
+
+  private static Path parentOf(Path p) {
+    Path parent = p.getParent();
+    return parent != null ? parent : Paths.get(".");
+  }
+
+  private static Path key(Path p) {
+    return p.toAbsolutePath().normalize();
+  }
+}
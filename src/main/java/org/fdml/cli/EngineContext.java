@@ -0,0 +1,125 @@
+package org.fdml.cli;
+
+import net.sf.saxon.s9api.*;
+import javax.xml.transform.stream.StreamSource;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Process-wide compiled artifacts: one Saxon {@link Processor} (and its NamePool), the compiled
+ * XPath set, the XSD schema, the compiled Schematron stylesheet and the render stylesheets.
+ *
+ * Every command and batch loop asks this holder instead of building its own, so per-file setup
+ * is paid once per process. Artifacts are compiled on first request and keyed by absolute path;
+ * all of them are safe to use from several threads. Each remembers its source file's mtime and size
+ * and is compiled again when they change, so a long-lived process ({@link Daemon}, {@code serve})
+ * never answers from a schema or stylesheet that has since been edited. The Processor too is only created when first
+ * asked for, so commands that never touch Saxon (XSD-only {@code validate}) do not load it; see
+ * {@link InitTrace}.
+ */
+final class EngineContext {
+  static final Path SCHEMA = Paths.get("schema/fdml.xsd");
+  static final Path SCHEMATRON = Paths.get("schematron/fdml-compiled.xsl");
+
+  private static final class Holder {
+    static final EngineContext SHARED = new EngineContext();
+  }
+
+  private volatile Processor proc;
+  private volatile XPaths xpaths;
+  private final ConcurrentHashMap<Path, Compiled<FdmlValidator>> xsd = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<Path, Compiled<SchematronValidator>> schematron = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<Path, Compiled<XsltExecutable>> stylesheets = new ConcurrentHashMap<>();
+
+  /** An artifact and the mtime and size of the file it was compiled from. */
+  private static final class Compiled<T> {
+    final T value;
+    final long mtime;
+    final long size;
+
+    Compiled(T value, long mtime, long size) {
+      this.value = value;
+      this.mtime = mtime;
+      this.size = size;
+    }
+  }
+
+  private EngineContext() {}
+
+  static EngineContext shared() {
+    return Holder.SHARED;
+  }
+
+  Processor processor() {
+    Processor p = proc;
+    if (p == null) {
+      synchronized (this) {
+        if (proc == null) proc = InitTrace.time("saxon", () -> new Processor(false));
+        p = proc;
+      }
+    }
+    return p;
+  }
+
+  XPaths xpaths() {
+    XPaths x = xpaths;
+    if (x == null) {
+      synchronized (this) {
+        if (xpaths == null) xpaths = new XPaths(processor());
+        x = xpaths;
+      }
+    }
+    return x;
+  }
+
+  FdmlValidator xsdValidator() {
+    return xsdValidator(SCHEMA);
+  }
+
+  FdmlValidator xsdValidator(Path xsdPath) {
+    return cached(xsd, xsdPath, () -> InitTrace.time("xsd " + xsdPath, () -> new FdmlValidator(xsdPath)));
+  }
+
+  SchematronValidator schematronValidator() {
+    return schematronValidator(SCHEMATRON);
+  }
+
+  SchematronValidator schematronValidator(Path compiledXsl) {
+    return cached(schematron, compiledXsl, () ->
+        InitTrace.time("schematron " + compiledXsl, () -> new SchematronValidator(processor(), compiledXsl)));
+  }
+
+  XsltExecutable stylesheet(Path xslPath) {
+    return cached(stylesheets, xslPath, () -> InitTrace.time("xslt " + xslPath, () -> {
+      try {
+        return processor().newXsltCompiler().compile(new StreamSource(xslPath.toFile()));
+      } catch (SaxonApiException e) {
+        throw new RuntimeException("Failed to compile stylesheet: " + xslPath, e);
+      }
+    }));
+  }
+
+  /** The artifact for {@code source}, compiled again if the file's mtime or size has changed since. */
+  private static <T> T cached(ConcurrentHashMap<Path, Compiled<T>> map, Path source, Supplier<T> compile) {
+    long[] stamp = stamp(source);
+    return map.compute(key(source), (p, c) ->
+        c != null && c.mtime == stamp[0] && c.size == stamp[1] ? c : new Compiled<>(compile.get(), stamp[0], stamp[1])).value;
+  }
+
+  /** mtime and size; both -1 when the file cannot be read, which the compile step then reports. */
+  private static long[] stamp(Path p) {
+    try {
+      BasicFileAttributes a = Files.readAttributes(p, BasicFileAttributes.class);
+      return new long[] {a.lastModifiedTime().toMillis(), a.size()};
+    } catch (IOException e) {
+      return new long[] {-1, -1};
+    }
+  }
+
+  private static Path key(Path p) {
+    return p.toAbsolutePath().normalize();
+  }
+}
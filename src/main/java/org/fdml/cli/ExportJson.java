@@ -1,9 +1,7 @@
 package org.fdml.cli;
 
 import net.sf.saxon.s9api.DocumentBuilder;
-import net.sf.saxon.s9api.Processor;
 import net.sf.saxon.s9api.SaxonApiException;
-import net.sf.saxon.s9api.XPathCompiler;
 import net.sf.saxon.s9api.XdmEmptySequence;
 import net.sf.saxon.s9api.XdmItem;
 import net.sf.saxon.s9api.XdmNode;
@@ -16,146 +14,178 @@ import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
+import java.util.function.Consumer;
 
 class ExportJson {
 
   static String export(Path target) {
     try {
-      Processor proc = new Processor(false);
-      DocumentBuilder db = proc.newDocumentBuilder();
-      XPathCompiler xpc = proc.newXPathCompiler();
+      EngineContext ctx = EngineContext.shared();
+      DocumentBuilder db = ctx.processor().newDocumentBuilder();
+      XPaths xp = ctx.xpaths();
 
       if (Files.isDirectory(target)) {
         List<Path> files = expandDirectory(target);
         List<Object> payloads = new ArrayList<>();
-        for (Path f : files) payloads.add(exportOne(f, db, xpc));
+        for (Path f : files) payloads.add(exportOne(f, db.build(new StreamSource(f.toFile())), xp));
         return toJson(payloads);
       }
-      return toJson(exportOne(target, db, xpc));
+      return toJson(exportOne(target, db.build(new StreamSource(target.toFile())), xp));
     } catch (Exception e) {
       throw new RuntimeException("export-json failed: " + e.getMessage(), e);
     }
   }
 
-  private static Map<String, Object> exportOne(Path file, DocumentBuilder db, XPathCompiler xpc) throws Exception {
-    XdmNode doc = db.build(new StreamSource(file.toFile()));
+  /**
+   * {@code --ndjson}: each file's payload as its own line, in the order {@link #export} lists them
+   * for a directory. Files are read one at a time and dropped once their line is written.
+   */
+  static void exportEach(Path target, Consumer<String> line) {
+    try {
+      EngineContext ctx = EngineContext.shared();
+      DocumentBuilder db = ctx.processor().newDocumentBuilder();
+      XPaths xp = ctx.xpaths();
+
+      List<CorpusWalker.Entry> planned = CorpusWalker.plan(List.of(target));
+      planned.sort(Comparator.comparing(e -> e.file.toString()));
+      for (CorpusWalker.Entry p : planned) {
+        CorpusWalker.Entry e = CorpusWalker.open(p);
+        if (e == null) continue;
+        XdmNode doc;
+        try {
+          doc = db.build(e.source());
+        } finally {
+          e.release();
+        }
+        line.accept(toJson(exportOne(e.file, doc, xp)));
+      }
+    } catch (Exception e) {
+      throw new RuntimeException("export-json failed: " + e.getMessage(), e);
+    }
+  }
+
+  /** One already-built document's payload, labelled {@code file}. */
+  static String exportNode(Path file, XdmNode doc) {
+    return toJson(exportOne(file, doc, EngineContext.shared().xpaths()));
+  }
+
+  private static Map<String, Object> exportOne(Path file, XdmNode doc, XPaths xp) {
 
     LinkedHashMap<String, Object> out = new LinkedHashMap<>();
     out.put("file", file.toString());
-    out.put("meta", buildMeta(doc, xpc));
-    out.put("figures", buildFigures(doc, xpc));
-    out.put("topology", buildTopology(doc, xpc));
+    out.put("meta", buildMeta(doc, xp));
+    out.put("figures", buildFigures(doc, xp));
+    out.put("topology", buildTopology(doc, xp));
     return out;
   }
 
-  private static Map<String, Object> buildMeta(XdmNode doc, XPathCompiler xpc) {
+  private static Map<String, Object> buildMeta(XdmNode doc, XPaths xp) {
     LinkedHashMap<String, Object> meta = new LinkedHashMap<>();
-    meta.put("version", str(xpc, "normalize-space(/fdml/@version)", doc));
-    meta.put("title", str(xpc, "normalize-space(/fdml/meta/title)", doc));
-    meta.put("meter", str(xpc, "normalize-space(/fdml/meta/meter/@value)", doc));
-    meta.put("tempoBpm", str(xpc, "normalize-space(/fdml/meta/tempo/@bpm)", doc));
-    meta.put("originCountry", str(xpc, "normalize-space(/fdml/meta/origin/@country)", doc));
-    meta.put("typeGenre", str(xpc, "normalize-space(/fdml/meta/type/@genre)", doc));
-    meta.put("formationText", str(xpc, "normalize-space(/fdml/meta/formation/@text)", doc));
-    meta.put("formationKind", str(xpc, "normalize-space(/fdml/meta/geometry/formation/@kind)", doc));
+    meta.put("version", str(xp, "normalize-space(/fdml/@version)", doc));
+    meta.put("title", str(xp, "normalize-space(/fdml/meta/title)", doc));
+    meta.put("meter", str(xp, "normalize-space(/fdml/meta/meter/@value)", doc));
+    meta.put("tempoBpm", str(xp, "normalize-space(/fdml/meta/tempo/@bpm)", doc));
+    meta.put("originCountry", str(xp, "normalize-space(/fdml/meta/origin/@country)", doc));
+    meta.put("typeGenre", str(xp, "normalize-space(/fdml/meta/type/@genre)", doc));
+    meta.put("formationText", str(xp, "normalize-space(/fdml/meta/formation/@text)", doc));
+    meta.put("formationKind", str(xp, "normalize-space(/fdml/meta/geometry/formation/@kind)", doc));
     return meta;
   }
 
-  private static List<Object> buildFigures(XdmNode doc, XPathCompiler xpc) {
+  private static List<Object> buildFigures(XdmNode doc, XPaths xp) {
     List<Object> figures = new ArrayList<>();
-    XdmValue nodes = eval(xpc, "/fdml/body//figure", doc);
+    XdmValue nodes = eval(xp, "/fdml/body//figure", doc);
     for (XdmItem it : nodes) {
       XdmNode fig = (XdmNode) it;
       LinkedHashMap<String, Object> f = new LinkedHashMap<>();
-      f.put("id", str(xpc, "string(@id)", fig));
-      f.put("name", str(xpc, "string(@name)", fig));
-      f.put("steps", buildSteps(fig, xpc));
+      f.put("id", str(xp, "string(@id)", fig));
+      f.put("name", str(xp, "string(@name)", fig));
+      f.put("steps", buildSteps(fig, xp));
       figures.add(f);
     }
     return figures;
   }
 
-  private static List<Object> buildSteps(XdmNode fig, XPathCompiler xpc) {
+  private static List<Object> buildSteps(XdmNode fig, XPaths xp) {
     List<Object> steps = new ArrayList<>();
-    XdmValue nodes = eval(xpc, ".//step", fig);
+    XdmValue nodes = eval(xp, ".//step", fig);
     for (XdmItem it : nodes) {
       XdmNode step = (XdmNode) it;
       LinkedHashMap<String, Object> s = new LinkedHashMap<>();
-      s.put("who", str(xpc, "string(@who)", step));
-      s.put("action", str(xpc, "string(@action)", step));
-      s.put("beats", str(xpc, "string(@beats)", step));
-      s.put("count", str(xpc, "string(@count)", step));
-      s.put("direction", str(xpc, "string(@direction)", step));
-      s.put("facing", str(xpc, "string(@facing)", step));
-      s.put("startFoot", str(xpc, "string(@startFoot)", step));
-      s.put("endFoot", str(xpc, "string(@endFoot)", step));
-      s.put("text", str(xpc, "normalize-space(string-join(text(), ' '))", step));
-      s.put("primitives", buildPrimitives(step, xpc));
+      s.put("who", str(xp, "string(@who)", step));
+      s.put("action", str(xp, "string(@action)", step));
+      s.put("beats", str(xp, "string(@beats)", step));
+      s.put("count", str(xp, "string(@count)", step));
+      s.put("direction", str(xp, "string(@direction)", step));
+      s.put("facing", str(xp, "string(@facing)", step));
+      s.put("startFoot", str(xp, "string(@startFoot)", step));
+      s.put("endFoot", str(xp, "string(@endFoot)", step));
+      s.put("text", str(xp, "normalize-space(string-join(text(), ' '))", step));
+      s.put("primitives", buildPrimitives(step, xp));
       steps.add(s);
     }
     return steps;
   }
 
-  private static List<Object> buildPrimitives(XdmNode step, XPathCompiler xpc) {
+  private static List<Object> buildPrimitives(XdmNode step, XPaths xp) {
     List<Object> primitives = new ArrayList<>();
-    XdmValue nodes = eval(xpc, "geo/primitive", step);
+    XdmValue nodes = eval(xp, "geo/primitive", step);
     for (XdmItem it : nodes) {
       XdmNode prim = (XdmNode) it;
       LinkedHashMap<String, Object> p = new LinkedHashMap<>();
-      p.put("kind", str(xpc, "string(@kind)", prim));
-      p.put("who", str(xpc, "string(@who)", prim));
-      p.put("frame", str(xpc, "string(@frame)", prim));
-      p.put("dir", str(xpc, "string(@dir)", prim));
-      p.put("a", str(xpc, "string(@a)", prim));
-      p.put("b", str(xpc, "string(@b)", prim));
-      p.put("delta", str(xpc, "string(@delta)", prim));
-      String preserve = str(xpc, "string(@preserveOrder)", prim);
+      p.put("kind", str(xp, "string(@kind)", prim));
+      p.put("who", str(xp, "string(@who)", prim));
+      p.put("frame", str(xp, "string(@frame)", prim));
+      p.put("dir", str(xp, "string(@dir)", prim));
+      p.put("a", str(xp, "string(@a)", prim));
+      p.put("b", str(xp, "string(@b)", prim));
+      p.put("delta", str(xp, "string(@delta)", prim));
+      String preserve = str(xp, "string(@preserveOrder)", prim);
       if (!preserve.isBlank()) p.put("preserveOrder", preserve);
       primitives.add(p);
     }
     return primitives;
   }
 
-  private static Map<String, Object> buildTopology(XdmNode doc, XPathCompiler xpc) {
+  private static Map<String, Object> buildTopology(XdmNode doc, XPaths xp) {
     LinkedHashMap<String, Object> topology = new LinkedHashMap<>();
-    topology.put("circle", buildCircleTopology(doc, xpc));
-    topology.put("line", buildLineTopology(doc, xpc));
-    topology.put("twoLines", buildTwoLinesTopology(doc, xpc));
+    topology.put("circle", buildCircleTopology(doc, xp));
+    topology.put("line", buildLineTopology(doc, xp));
+    topology.put("twoLines", buildTwoLinesTopology(doc, xp));
     return topology;
   }
 
-  private static Map<String, Object> buildCircleTopology(XdmNode doc, XPathCompiler xpc) {
+  private static Map<String, Object> buildCircleTopology(XdmNode doc, XPaths xp) {
     LinkedHashMap<String, Object> circle = new LinkedHashMap<>();
     List<Object> orders = new ArrayList<>();
-    XdmValue nodes = eval(xpc, "/fdml/body/geometry/circle/order", doc);
+    XdmValue nodes = eval(xp, "/fdml/body/geometry/circle/order", doc);
     for (XdmItem it : nodes) {
       XdmNode order = (XdmNode) it;
       LinkedHashMap<String, Object> o = new LinkedHashMap<>();
-      o.put("role", str(xpc, "string(@role)", order));
-      o.put("slots", readSlots(order, xpc));
+      o.put("role", str(xp, "string(@role)", order));
+      o.put("slots", readSlots(order, xp));
       orders.add(o);
     }
     circle.put("orders", orders);
     return circle;
   }
 
-  private static Map<String, Object> buildLineTopology(XdmNode doc, XPathCompiler xpc) {
+  private static Map<String, Object> buildLineTopology(XdmNode doc, XPaths xp) {
     LinkedHashMap<String, Object> line = new LinkedHashMap<>();
     List<Object> lines = new ArrayList<>();
-    XdmValue nodes = eval(xpc, "/fdml/body/geometry/line[@id]", doc);
+    XdmValue nodes = eval(xp, "/fdml/body/geometry/line[@id]", doc);
     for (XdmItem it : nodes) {
       XdmNode lineNode = (XdmNode) it;
       LinkedHashMap<String, Object> l = new LinkedHashMap<>();
-      l.put("id", str(xpc, "string(@id)", lineNode));
+      l.put("id", str(xp, "string(@id)", lineNode));
       List<Object> orders = new ArrayList<>();
-      XdmValue orderNodes = eval(xpc, "order", lineNode);
+      XdmValue orderNodes = eval(xp, "order", lineNode);
       for (XdmItem oit : orderNodes) {
         XdmNode order = (XdmNode) oit;
         LinkedHashMap<String, Object> o = new LinkedHashMap<>();
-        o.put("phase", str(xpc, "string(@phase)", order));
-        o.put("slots", readSlots(order, xpc));
+        o.put("phase", str(xp, "string(@phase)", order));
+        o.put("slots", readSlots(order, xp));
         orders.add(o);
       }
       l.put("orders", orders);
@@ -165,14 +195,14 @@ class ExportJson {
     return line;
   }
 
-  private static Map<String, Object> buildTwoLinesTopology(XdmNode doc, XPathCompiler xpc) {
+  private static Map<String, Object> buildTwoLinesTopology(XdmNode doc, XPaths xp) {
     LinkedHashMap<String, Object> twoLines = new LinkedHashMap<>();
     List<Object> lines = new ArrayList<>();
     twoLines.put("lines", lines);
 
     LinkedHashMap<String, Object> facing = new LinkedHashMap<>();
-    String facingA = str(xpc, "string(/fdml/body/geometry/twoLines/facing[1]/@a)", doc);
-    String facingB = str(xpc, "string(/fdml/body/geometry/twoLines/facing[1]/@b)", doc);
+    String facingA = str(xp, "string(/fdml/body/geometry/twoLines/facing[1]/@a)", doc);
+    String facingB = str(xp, "string(/fdml/body/geometry/twoLines/facing[1]/@b)", doc);
     facing.put("a", facingA);
     facing.put("b", facingB);
     twoLines.put("facing", facing);
@@ -184,21 +214,21 @@ class ExportJson {
 
     LinkedHashMap<String, List<String>> firstOrdersByLine = new LinkedHashMap<>();
 
-    XdmValue lineNodes = eval(xpc, "/fdml/body/geometry/twoLines/line[@id]", doc);
+    XdmValue lineNodes = eval(xp, "/fdml/body/geometry/twoLines/line[@id]", doc);
     for (XdmItem it : lineNodes) {
       XdmNode lineNode = (XdmNode) it;
-      String lineId = str(xpc, "string(@id)", lineNode);
+      String lineId = str(xp, "string(@id)", lineNode);
 
       LinkedHashMap<String, Object> l = new LinkedHashMap<>();
       l.put("id", lineId);
-      l.put("role", str(xpc, "string(@role)", lineNode));
+      l.put("role", str(xp, "string(@role)", lineNode));
 
       List<Object> orders = new ArrayList<>();
-      XdmValue orderNodes = eval(xpc, "order", lineNode);
+      XdmValue orderNodes = eval(xp, "order", lineNode);
       for (XdmItem oit : orderNodes) {
         XdmNode order = (XdmNode) oit;
         LinkedHashMap<String, Object> o = new LinkedHashMap<>();
-        o.put("slots", readSlots(order, xpc));
+        o.put("slots", readSlots(order, xp));
         orders.add(o);
       }
       l.put("orders", orders);
@@ -266,9 +296,9 @@ class ExportJson {
     }
   }
 
-  private static List<String> readSlots(XdmNode orderNode, XPathCompiler xpc) {
+  private static List<String> readSlots(XdmNode orderNode, XPaths xp) {
     List<String> out = new ArrayList<>();
-    XdmValue slots = eval(xpc, "slot/@who", orderNode);
+    XdmValue slots = eval(xp, "slot/@who", orderNode);
     for (XdmItem it : slots) {
       String who = it.getStringValue();
       if (who != null && !who.isBlank()) out.add(who);
@@ -277,34 +307,18 @@ class ExportJson {
   }
 
   private static List<Path> expandDirectory(Path root) {
-    List<Path> out = new ArrayList<>();
-    try {
-      Files.walk(root).filter(Files::isRegularFile).forEach(out::add);
-    } catch (Exception e) {
-      throw new RuntimeException(e);
-    }
-    out.removeIf(p -> !looksLikeXml(p));
+    List<Path> out = new ArrayList<>(CorpusWalker.files(List.of(root)));
     out.sort(Comparator.comparing(Path::toString));
     return out;
   }
 
-  private static boolean looksLikeXml(Path p) {
-    String n = p.getFileName().toString().toLowerCase(Locale.ROOT);
-    return n.endsWith(".xml") || n.endsWith(".fdml") || n.endsWith(".fdml.xml");
-  }
-
-  private static String str(XPathCompiler xpc, String expr, XdmNode node) {
-    try {
-      XdmItem i = xpc.evaluateSingle(expr, node);
-      return i == null ? "" : i.getStringValue();
-    } catch (SaxonApiException e) {
-      return "";
-    }
+  private static String str(XPaths xp, String expr, XdmNode node) {
+    return xp.string(expr, node);
   }
 
-  private static XdmValue eval(XPathCompiler xpc, String expr, XdmNode node) {
+  private static XdmValue eval(XPaths xp, String expr, XdmNode node) {
     try {
-      return xpc.evaluate(expr, node);
+      return xp.evaluate(expr, node);
     } catch (SaxonApiException e) {
       return XdmEmptySequence.getInstance();
     }
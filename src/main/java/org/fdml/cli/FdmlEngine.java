@@ -0,0 +1,317 @@
+package org.fdml.cli;
+
+import net.sf.saxon.s9api.SaxonApiException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * The CLI's checks and exports as a Java API, for ingest and for applications that embed FDML.
+ *
+ * One instance wraps the process-wide {@link EngineContext}, so the schema, the compiled
+ * Schematron, the XPaths and the stylesheets are compiled once, on first use, and shared by
+ * every caller. All methods are safe to call from several threads at once; nothing is printed
+ * and nothing exits. Checks return {@link Check}s (or a {@link DoctorReport}) instead of exit
+ * codes; exports return the JSON or HTML the matching command writes.
+ *
+ * A single document is a {@link Document}: a file, or bytes or a stream labelled with a name.
+ * The {@code List<Path>} overloads take files and directories like the CLI does and return one
+ * result per FDML file found, in the CLI's order. Schema and stylesheet paths resolve against the
+ * working directory, as for the CLI.
+ */
+public final class FdmlEngine {
+  private static final FdmlEngine SHARED = new FdmlEngine(EngineContext.shared());
+  static final Path CARD_XSL = Paths.get("xslt/fdml-to-card.xsl");
+
+  private final EngineContext ctx;
+
+  private FdmlEngine(EngineContext ctx) {
+    this.ctx = ctx;
+  }
+
+  /** The process-wide instance. */
+  public static FdmlEngine shared() {
+    return SHARED;
+  }
+
+  // ---- checks ----
+
+  /** XSD validation, as {@code fdml validate}. */
+  public Check validate(Document d) {
+    return xsd(ctx.xsdValidator().validateEntry(d.entry()));
+  }
+
+  public List<Check> validate(List<Path> inputs) {
+    return map(ctx.xsdValidator().validateCollect(inputs, 1), FdmlEngine::xsd);
+  }
+
+  /** Schematron rules, as {@code fdml validate-sch}. */
+  public Check schematron(Document d) {
+    return schematron(ctx.schematronValidator().validateEntry(d.entry()));
+  }
+
+  public List<Check> schematron(List<Path> inputs) {
+    return map(ctx.schematronValidator().validateCollect(inputs, 1), FdmlEngine::schematron);
+  }
+
+  /** Meter and figure-length warnings, as {@code fdml lint}. */
+  public Check lint(Document d) {
+    return lint(Linter.lintDoc(parsed(d)));
+  }
+
+  public List<Check> lint(List<Path> inputs) {
+    return map(Linter.lintDocs(load(inputs)), FdmlEngine::lint);
+  }
+
+  /** Meter and beat-count checks, the timing stage of {@code fdml doctor}. */
+  public Check timing(Document d) {
+    return timing(TimingValidator.validateOne(parsed(d)));
+  }
+
+  public List<Check> timing(List<Path> inputs) {
+    return map(TimingValidator.validateDocs(load(inputs)), FdmlEngine::timing);
+  }
+
+  /** Formation and movement checks, as {@code fdml validate-geo}. */
+  public Check geometry(Document d) {
+    return geometry(GeometryValidator.validateOne(parsed(d)));
+  }
+
+  public List<Check> geometry(List<Path> inputs) {
+    return map(GeometryValidator.validateDocs(load(inputs)), FdmlEngine::geometry);
+  }
+
+  /** All five checks from one parse, as {@code fdml doctor}. */
+  public DoctorReport doctor(Document d) {
+    List<DoctorReport> rs = doctorDocs(List.of(parsed(d)));
+    assert rs.size() == 1 : "a document is explicit, so every stage runs whatever its name";
+    return rs.get(0);
+  }
+
+  public List<DoctorReport> doctor(List<Path> inputs) {
+    return doctorDocs(load(inputs));
+  }
+
+  private List<DoctorReport> doctorDocs(List<ParsedDocument> docs) {
+    DoctorStages st = DoctorStages.run(docs, ctx.xsdValidator(), ctx.schematronValidator(), 1);
+    List<DoctorReport> out = new ArrayList<>();
+    for (ResultCache.Record r : st.records) {
+      if (r == null || r.xsd == null) continue;
+      out.add(new DoctorReport(r.xsd.file, xsd(r.xsd),
+          r.schematron == null ? null : schematron(r.schematron),
+          r.lint == null ? null : lint(r.lint),
+          r.timing == null ? null : timing(r.timing),
+          r.geometry == null ? null : geometry(r.geometry)));
+    }
+    return out;
+  }
+
+  // ---- exports ----
+
+  /** The {@code fdml index} JSON for the given files and directories. */
+  public String index(List<Path> inputs) {
+    return Indexer.buildIndex(inputs);
+  }
+
+  /** One document's {@code fdml index} item. */
+  public String index(Document d) {
+    return Indexer.item(d.entry());
+  }
+
+  /** The {@code fdml export-json} JSON for one file or a directory. */
+  public String exportJson(Path target) {
+    return ExportJson.export(target);
+  }
+
+  public String exportJson(Document d) {
+    CorpusWalker.Entry e = d.entry();
+    try {
+      return ExportJson.exportNode(e.file, ctx.processor().newDocumentBuilder().build(e.source()));
+    } catch (SaxonApiException ex) {
+      throw new RuntimeException("Failed to parse " + e.file + ": " + ex.getMessage(), ex);
+    } finally {
+      e.release();
+    }
+  }
+
+  /** The HTML card {@code fdml render} writes. */
+  public void render(Document d, OutputStream out) {
+    CorpusWalker.Entry e = d.entry();
+    try {
+      Renderer.render(e.source(), CARD_XSL, out);
+    } catch (SaxonApiException ex) {
+      throw new RuntimeException("Failed to render " + e.file + ": " + ex.getMessage(), ex);
+    } finally {
+      e.release();
+    }
+  }
+
+  public String render(Document d) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    render(d, out);
+    return out.toString(StandardCharsets.UTF_8);
+  }
+
+  // ---- inputs and results ----
+
+  /** One FDML document: a file, or bytes labelled with the file name to report. */
+  public static final class Document {
+    private final Path file;
+    private final byte[] xml;   // null: read the file
+
+    private Document(Path file, byte[] xml) {
+      this.file = file;
+      this.xml = xml;
+    }
+
+    public static Document of(Path file) {
+      return new Document(file, null);
+    }
+
+    /** {@code xml} must not be changed while the document is in use. */
+    public static Document of(String name, byte[] xml) {
+      return new Document(Paths.get(name), xml);
+    }
+
+    /** Reads {@code in} to the end; the caller closes it. */
+    public static Document of(String name, InputStream in) throws IOException {
+      return new Document(Paths.get(name), in.readAllBytes());
+    }
+
+    public Path file() {
+      return file;
+    }
+
+    CorpusWalker.Entry entry() {
+      try {
+        return CorpusWalker.of(file, xml != null ? xml : Files.readAllBytes(file));
+      } catch (IOException e) {
+        throw new UncheckedIOException("Failed to read " + file, e);
+      }
+    }
+  }
+
+  /** One problem a check found. {@code location} is a line/column, XPath or figure id, or null. */
+  public static final class Finding {
+    public final String code;
+    public final String message;
+    public final String location;
+
+    Finding(String code, String message, String location) {
+      this.code = code;
+      this.message = message;
+      this.location = location;
+    }
+
+    @Override
+    public String toString() {
+      return "[" + code + "] " + (location == null ? "" : location + ": ") + message;
+    }
+  }
+
+  /** One file's outcome for one check. */
+  public static final class Check {
+    public final Path file;
+    public final boolean ok;
+    public final List<Finding> findings;
+
+    Check(Path file, boolean ok, List<Finding> findings) {
+      this.file = file;
+      this.ok = ok;
+      this.findings = Collections.unmodifiableList(findings);
+    }
+  }
+
+  /** One file's doctor stages; a stage is null when it could not run (the file did not parse). */
+  public static final class DoctorReport {
+    public final Path file;
+    public final Check xsd;
+    public final Check schematron;
+    public final Check lint;
+    public final Check timing;
+    public final Check geometry;
+
+    DoctorReport(Path file, Check xsd, Check schematron, Check lint, Check timing, Check geometry) {
+      this.file = file;
+      this.xsd = xsd;
+      this.schematron = schematron;
+      this.lint = lint;
+      this.timing = timing;
+      this.geometry = geometry;
+    }
+
+    /** True when every stage that ran passed, as {@code doctor --strict} decides. */
+    public boolean ok() {
+      for (Check c : new Check[] {xsd, schematron, lint, timing, geometry}) {
+        if (c != null && !c.ok) return false;
+      }
+      return true;
+    }
+  }
+
+  // ---- internals ----
+
+  private ParsedDocument parsed(Document d) {
+    return new ParsedDocument(ctx.xpaths(), d.entry());
+  }
+
+  private List<ParsedDocument> load(List<Path> inputs) {
+    return ParsedDocument.load(ctx.xpaths(), inputs);
+  }
+
+  private static <R> List<Check> map(List<R> rs, Function<R, Check> fn) {
+    List<Check> out = new ArrayList<>(rs.size());
+    for (R r : rs) if (r != null) out.add(fn.apply(r));
+    return out;
+  }
+
+  private static Check xsd(FdmlValidator.Result r) {
+    List<Finding> fs = new ArrayList<>();
+    if (!r.ok) {
+      String at = r.line == null ? null : "line " + r.line + (r.column == null ? "" : ", column " + r.column);
+      fs.add(new Finding("xsd", r.message, at));
+    }
+    return new Check(r.file, r.ok, fs);
+  }
+
+  private static Check schematron(SchematronValidator.Result r) {
+    List<Finding> fs = new ArrayList<>();
+    for (int i = 0; i < r.messages.size(); i++) {
+      fs.add(new Finding("schematron", r.messages.get(i), i < r.locations.size() ? r.locations.get(i) : null));
+    }
+    return new Check(r.file, r.ok, fs);
+  }
+
+  private static Check lint(Linter.FileResult r) {
+    List<Finding> fs = new ArrayList<>();
+    for (Linter.Warning w : r.warnings) fs.add(new Finding(w.code, w.message, figure(w.figureId)));
+    return new Check(r.file, r.ok(), fs);
+  }
+
+  private static Check timing(TimingValidator.FileResult r) {
+    List<Finding> fs = new ArrayList<>();
+    for (TimingValidator.Issue i : r.issues) fs.add(new Finding(i.code, i.message, figure(i.figureId)));
+    return new Check(r.file, r.ok(), fs);
+  }
+
+  private static Check geometry(GeometryValidator.Result r) {
+    List<Finding> fs = new ArrayList<>();
+    for (GeometryValidator.Issue i : r.issues) fs.add(new Finding(i.code, i.message, null));
+    return new Check(r.file, r.ok, fs);
+  }
+
+  private static String figure(String id) {
+    return id == null ? null : "figure " + id;
+  }
+}
@@ -28,6 +28,9 @@ class FdmlValidator {
   }
 
   private final Schema schema;
+  // Schema is thread-safe but Validator is not: each worker thread keeps and reuses its own.
+  private final ThreadLocal<Validator> validators;
+  private final ThreadLocal<ValidatorHandler> handlers;
 
   FdmlValidator(Path xsdPath) {
     try {
@@ -36,52 +39,115 @@ class FdmlValidator {
     } catch (SAXException e) {
       throw new RuntimeException("Failed to load schema: " + xsdPath, e);
     }
+    this.validators = ThreadLocal.withInitial(schema::newValidator);
+    this.handlers = ThreadLocal.withInitial(schema::newValidatorHandler);
   }
 
   List<Result> validateCollect(List<Path> inputs) {
-    List<Path> files = expandAll(inputs);
-    List<Result> out = new ArrayList<>();
-    for (Path f : files) out.add(validateOne(f));
-    return out;
+    return validateCollect(inputs, 1);
+  }
+
+  /** Validates on up to {@code jobs} threads; the result list is in input order either way. */
+  List<Result> validateCollect(List<Path> inputs, int jobs) {
+    return validateCollect(inputs, jobs, null);
+  }
+
+  /** Only the files of {@code shard} (all when null). */
+  List<Result> validateCollect(List<Path> inputs, int jobs, Shard shard) {
+    return CorpusWalker.map(inputs, shard, jobs, this::validateEntry);
+  }
+
+  List<Result> validateDocs(List<ParsedDocument> docs) {
+    return validateDocs(docs, 1);
+  }
+
+  /**
+   * Validates already-loaded documents. A document whose tree is not built yet is parsed once,
+   * with the schema check and Saxon's tree builder on the same SAX stream (see {@link ParsedDocument#xsd}).
+   */
+  List<Result> validateDocs(List<ParsedDocument> docs, int jobs) {
+    List<ParsedDocument> xml = new ArrayList<>();
+    for (ParsedDocument d : docs) {
+      if (accepts(d)) xml.add(d);
+    }
+    return Parallel.map(xml, jobs, d -> d.xsd(this));
+  }
+
+  /** One loaded document's result, or null when it was found in a directory and does not look like XML. */
+  Result validateDoc(ParsedDocument d) {
+    return accepts(d) ? d.xsd(this) : null;
+  }
+
+  private boolean accepts(ParsedDocument d) {
+    return d.explicit || looksLikeXml(d.file);
   }
 
   boolean validatePaths(List<Path> inputs) {
-    List<Result> results = validateCollect(inputs);
-    boolean allOk = true;
+    return validatePaths(inputs, 1);
+  }
+
+  boolean validatePaths(List<Path> inputs, int jobs) {
+    return validatePaths(inputs, jobs, null);
+  }
+
+  boolean validatePaths(List<Path> inputs, int jobs, Shard shard) {
+    List<Result> results = validateCollect(inputs, jobs, shard);
+    printResults(results);
+    return results.stream().allMatch(r -> r.ok);
+  }
+
+  void printResults(List<Result> results) {
     for (Result r : results) {
       if (r.ok) System.out.println("OK  : " + r.file);
       else System.out.println("FAIL: " + r.file + (r.message != null ? " : " + r.message : ""));
-      allOk &= r.ok;
     }
     System.out.printf("Validated %d file(s).%n", results.size());
-    return allOk;
   }
 
-  private Result validateOne(Path f) {
+  Result validateOne(Path f) {
+    return validate(f, new StreamSource(f.toFile()));
+  }
+
+  /** Validates bytes already in memory; the caller keeps its reference. */
+  Result validateBytes(Path f, FileBytes b) {
+    return validate(f, b.source());
+  }
+
+  Result validateEntry(CorpusWalker.Entry e) {
     try {
-      Validator v = schema.newValidator();
-      v.validate(new StreamSource(f.toFile()));
+      return validate(e.file, e.source());
+    } finally {
+      e.release();
+    }
+  }
+
+  private Result validate(Path f, StreamSource src) {
+    Validator v = validators.get();
+    try {
+      v.validate(src);
       return new Result(f, true, null, null, null);
-    } catch (SAXParseException e) {
-      String msg = String.format("(line %d, col %d): %s", e.getLineNumber(), e.getColumnNumber(), e.getMessage());
-      return new Result(f, false, msg, e.getLineNumber(), e.getColumnNumber());
     } catch (SAXException | IOException e) {
-      return new Result(f, false, e.getMessage(), null, null);
+      return failure(f, e);
+    } finally {
+      v.reset();
     }
   }
 
-  private List<Path> expandAll(List<Path> inputs) {
-    List<Path> files = new ArrayList<>();
-    for (Path p : inputs) {
-      if (Files.isDirectory(p)) {
-        try {
-          Files.walk(p).filter(Files::isRegularFile).filter(this::looksLikeXml).forEach(files::add);
-        } catch (IOException e) { throw new RuntimeException(e); }
-      } else {
-        files.add(p);
-      }
+  /** This thread's handler for validating a SAX stream; see {@link #discardHandler} after a failed parse. */
+  ValidatorHandler handler() {
+    return handlers.get();
+  }
+
+  void discardHandler() {
+    handlers.remove();
+  }
+
+  static Result failure(Path f, Exception e) {
+    if (e instanceof SAXParseException pe) {
+      String msg = String.format("(line %d, col %d): %s", pe.getLineNumber(), pe.getColumnNumber(), pe.getMessage());
+      return new Result(f, false, msg, pe.getLineNumber(), pe.getColumnNumber());
     }
-    return files;
+    return new Result(f, false, e.getMessage(), null, null);
   }
 
   private boolean looksLikeXml(Path p) {
@@ -0,0 +1,151 @@
+package org.fdml.cli;
+
+import javax.xml.transform.stream.StreamSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The bytes of one input file, read once per run and shared by every stage that needs them.
+ *
+ * Files up to {@link #MAP_THRESHOLD} are read into a pooled heap array; larger ones are mapped
+ * with {@link FileChannel#map}, so only the pages a stage touches are faulted in. The root peek,
+ * the XSD pass and the tree build all stream from the same buffer. The buffer is reference
+ * counted: the creator holds one reference, {@link #retain} adds one per extra holder, and the
+ * last {@link #release} hands a pooled array back for the next file.
+ */
+final class FileBytes {
+  static final int MAP_THRESHOLD = 1 << 20;
+
+  private static final int MIN_CLASS = 12;                 // 4 KiB
+  private static final int MAX_CLASS = 20;                 // 1 MiB, same as MAP_THRESHOLD
+  private static final int POOLED_PER_CLASS = 32;
+  private static final List<ArrayBlockingQueue<byte[]>> POOL = new ArrayList<>();
+  static {
+    for (int c = MIN_CLASS; c <= MAX_CLASS; c++) POOL.add(new ArrayBlockingQueue<>(POOLED_PER_CLASS));
+  }
+
+  final Path file;
+  private final ByteBuffer buf;
+  private final byte[] pooled;
+  private final AtomicInteger refs = new AtomicInteger(1);
+
+  private FileBytes(Path file, ByteBuffer buf, byte[] pooled) {
+    this.file = file;
+    this.buf = buf;
+    this.pooled = pooled;
+  }
+
+  static FileBytes read(Path file) throws IOException {
+    try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+      long size = ch.size();
+      if (size > MAP_THRESHOLD) {
+        if (size > Integer.MAX_VALUE) throw new IOException("File too large: " + file);
+        return new FileBytes(file, ch.map(FileChannel.MapMode.READ_ONLY, 0, size), null);
+      }
+      byte[] arr = borrow((int) size);
+      ByteBuffer dst = ByteBuffer.wrap(arr, 0, (int) size);
+      while (dst.hasRemaining() && ch.read(dst) >= 0) { }
+      return new FileBytes(file, ByteBuffer.wrap(arr, 0, dst.position()), arr);
+    }
+  }
+
+  /** Bytes that did not come from disk (a posted document), labelled with {@code file}; not pooled. */
+  static FileBytes of(Path file, byte[] data) {
+    return new FileBytes(file, ByteBuffer.wrap(data), null);
+  }
+
+  int size() {
+    return buf.remaining();
+  }
+
+  /** A fresh stream over the whole file; streams are independent and may be read concurrently. */
+  InputStream stream() {
+    if (refs.get() <= 0) throw new IllegalStateException("Bytes already released: " + file);
+    return new BufferStream(buf.duplicate());
+  }
+
+  /** A parser source over these bytes, with the same system id a {@code StreamSource(File)} would carry. */
+  StreamSource source() {
+    return new StreamSource(stream(), systemId(file));
+  }
+
+  /** SHA-256 of the whole file. */
+  byte[] sha256() {
+    if (refs.get() <= 0) throw new IllegalStateException("Bytes already released: " + file);
+    MessageDigest md = sha256Digest();
+    md.update(buf.duplicate());
+    return md.digest();
+  }
+
+  static MessageDigest sha256Digest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  static String systemId(Path file) {
+    return file.toFile().toURI().toASCIIString();
+  }
+
+  FileBytes retain() {
+    if (refs.getAndIncrement() <= 0) throw new IllegalStateException("Bytes already released: " + file);
+    return this;
+  }
+
+  void release() {
+    int left = refs.decrementAndGet();
+    if (left < 0) throw new IllegalStateException("Bytes released twice: " + file);
+    if (left == 0 && pooled != null) giveBack(pooled);
+  }
+
+  private static int sizeClass(int size) {
+    int c = 32 - Integer.numberOfLeadingZeros(Math.max(size - 1, 1));
+    return Math.max(c, MIN_CLASS);
+  }
+
+  private static byte[] borrow(int size) {
+    int c = sizeClass(size);
+    byte[] b = POOL.get(c - MIN_CLASS).poll();
+    return b != null ? b : new byte[1 << c];
+  }
+
+  private static void giveBack(byte[] b) {
+    int c = sizeClass(b.length);
+    if (b.length == 1 << c) POOL.get(c - MIN_CLASS).offer(b);
+  }
+
+  private static final class BufferStream extends InputStream {
+    private final ByteBuffer b;
+
+    BufferStream(ByteBuffer b) {
+      this.b = b;
+    }
+
+    @Override public int read() {
+      return b.hasRemaining() ? b.get() & 0xff : -1;
+    }
+
+    @Override public int read(byte[] dst, int off, int len) {
+      if (len == 0) return 0;
+      if (!b.hasRemaining()) return -1;
+      int n = Math.min(len, b.remaining());
+      b.get(dst, off, n);
+      return n;
+    }
+
+    @Override public int available() {
+      return b.remaining();
+    }
+  }
+}
@@ -2,7 +2,6 @@ package org.fdml.cli;
 
 import net.sf.saxon.s9api.*;
 
-import javax.xml.transform.stream.StreamSource;
 import java.nio.file.*;
 import java.util.*;
 
@@ -40,17 +39,34 @@ class GeometryValidator {
   }
 
   static List<Result> validateCollect(List<Path> inputs) {
-    List<Path> files = expandAll(inputs);
+    return validateCollect(inputs, null);
+  }
+
+  /** Only the files of {@code shard} (all when null). */
+  static List<Result> validateCollect(List<Path> inputs, Shard shard) {
+    return validateDocs(ParsedDocument.load(EngineContext.shared().xpaths(), inputs, shard));
+  }
+
+  static List<Result> validateDocs(List<ParsedDocument> docs) {
     List<Result> out = new ArrayList<>();
-    for (Path f : files) {
-      if (!looksLikeXml(f)) continue;
-      out.add(validateOne(f));
+    for (ParsedDocument d : docs) {
+      Result r = validateDoc(d);
+      if (r != null) out.add(r);
     }
     return out;
   }
 
+  /** One loaded document's result, or null when its name does not look like XML. */
+  static Result validateDoc(ParsedDocument d) {
+    return looksLikeXml(d.file) ? validateOne(d) : null;
+  }
+
   static boolean validatePaths(List<Path> inputs) {
-    List<Result> results = validateCollect(inputs);
+    return validatePaths(inputs, null);
+  }
+
+  static boolean validatePaths(List<Path> inputs, Shard shard) {
+    List<Result> results = validateCollect(inputs, shard);
     boolean allOk = true;
     for (Result r : results) {
       if (r.ok) System.out.println("GEO OK  : " + r.file);
@@ -65,33 +81,36 @@ class GeometryValidator {
   }
 
   static Result validateOne(Path f) {
+    return validateOne(new ParsedDocument(EngineContext.shared().xpaths(), f, true));
+  }
+
+  static Result validateOne(ParsedDocument pd) {
+    Path f = pd.file;
     List<Issue> issues = new ArrayList<>();
 
     try {
-      Processor proc = new Processor(false);
-      DocumentBuilder db = proc.newDocumentBuilder();
-      XdmNode doc = db.build(new StreamSource(f.toFile()));
-      XPathCompiler xpc = proc.newXPathCompiler();
+      XdmNode doc = pd.node();
+      XPaths xp = pd.xpaths();
 
-      String version = str(xpc, "string(/fdml/@version)", doc);
+      String version = str(xp, "string(/fdml/@version)", doc);
       if (!"1.2".equals(version)) {
         // Not a v1.2 file; geometry validation is a no-op and passes.
         return new Result(f, true, issues);
       }
 
-      String formationKind = str(xpc, "string(/fdml/meta/geometry/formation/@kind)", doc);
+      String formationKind = str(xp, "string(/fdml/meta/geometry/formation/@kind)", doc);
       if (formationKind.isEmpty()) {
         issues.add(new Issue("missing_formation_kind", "meta/geometry/formation/@kind is required for fdml version=1.2"));
       }
 
       // Roles
       Set<String> roles = new HashSet<>();
-      XdmValue roleIds = xpc.evaluate("/fdml/meta/geometry/roles/role/@id", doc);
+      XdmValue roleIds = xp.evaluate("/fdml/meta/geometry/roles/role/@id", doc);
       for (XdmItem it : roleIds) roles.add(it.getStringValue());
       boolean hasRoles = !roles.isEmpty();
 
       // Validate primitive kinds exist and collect flags
-      XdmValue prims = xpc.evaluate("//step/geo/primitive", doc);
+      XdmValue prims = xp.evaluate("//step/geo/primitive", doc);
       boolean hasCrossingPrimitive = false;
       boolean hasPreserveOrder = false;
 
@@ -109,17 +128,17 @@ class GeometryValidator {
 
       for (XdmItem it : prims) {
         XdmNode p = (XdmNode) it;
-        String kind = str(xpc, "string(@kind)", p);
+        String kind = str(xp, "string(@kind)", p);
         if (kind.isEmpty()) {
           issues.add(new Issue("missing_primitive_kind", "geo/primitive is missing @kind"));
         }
 
-        String who = str(xpc, "string(@who)", p);
+        String who = str(xp, "string(@who)", p);
         if (hasRoles && !who.isEmpty() && !roles.contains(who)) {
           issues.add(new Issue("unknown_role", "geo/primitive/@who='" + who + "' is not declared in meta/geometry/roles"));
         }
 
-        String preserve = str(xpc, "string(@preserveOrder)", p);
+        String preserve = str(xp, "string(@preserveOrder)", p);
         if (!preserve.isEmpty() && ("true".equals(preserve) || "1".equals(preserve))) {
           hasPreserveOrder = true;
         }
@@ -129,9 +148,9 @@ class GeometryValidator {
         }
 
         // Ontology Batch 4C: direction must be disambiguated by explicit frame.
-        String dir = str(xpc, "string(@dir)", p);
+        String dir = str(xp, "string(@dir)", p);
         if (dir != null && !dir.isBlank()) {
-          String frame = str(xpc, "string(@frame)", p);
+          String frame = str(xp, "string(@frame)", p);
           if (frame == null || frame.isBlank()) {
             issues.add(new Issue(
               "missing_primitive_frame",
@@ -157,7 +176,7 @@ class GeometryValidator {
 
         // A) circle: detect travel direction ambiguity
         // Scan all primitive @dir (and also @axis if present) for cw/ccw markers.
-        String axis = str(xpc, "string(@axis)", p);
+        String axis = str(xp, "string(@axis)", p);
         String dirAxis = ((dir == null ? "" : dir) + " " + axis).toLowerCase(Locale.ROOT);
         if (isCcw(dirAxis)) sawCounterClockwiseTravel = true;
         if (isCw(dirAxis)) sawClockwiseTravel = true;
@@ -170,7 +189,7 @@ class GeometryValidator {
 
         if ("progress".equals(kind)) {
           sawProgress = true;
-          String delta = str(xpc, "string(@delta)", p);
+          String delta = str(xp, "string(@delta)", p);
           if (delta == null || delta.isBlank() || parseInt(delta.trim()) == null) sawProgressMissingDelta = true;
         }
 
@@ -203,13 +222,13 @@ class GeometryValidator {
         double minSep = sep;
         double maxSep = sep;
 
-        XdmValue steps = xpc.evaluate("//step", doc);
+        XdmValue steps = xp.evaluate("//step", doc);
         for (XdmItem it : steps) {
           XdmNode step = (XdmNode) it;
-          double beats = dbl(xpc, "number(@beats)", step);
+          double beats = dbl(xp, "number(@beats)", step);
 
-          boolean stepHasApproach = bool(xpc, "exists(geo/primitive[@kind='approach'])", step);
-          boolean stepHasRetreat = bool(xpc, "exists(geo/primitive[@kind='retreat'])", step);
+          boolean stepHasApproach = bool(xp, "exists(geo/primitive[@kind='approach'])", step);
+          boolean stepHasRetreat = bool(xp, "exists(geo/primitive[@kind='retreat'])", step);
 
           if (stepHasApproach) sep -= 0.12 * (beats / 2.0);
           if (stepHasRetreat) sep += 0.12 * (beats / 2.0);
@@ -231,15 +250,15 @@ class GeometryValidator {
         double totalDx = 0.0;
         boolean sawTravelDir = false;
 
-        XdmValue steps = xpc.evaluate("//step", doc);
+        XdmValue steps = xp.evaluate("//step", doc);
         for (XdmItem it : steps) {
           XdmNode step = (XdmNode) it;
-          double beats = dbl(xpc, "number(@beats)", step);
+          double beats = dbl(xp, "number(@beats)", step);
 
-          XdmValue stepPrims = xpc.evaluate("geo/primitive", step);
+          XdmValue stepPrims = xp.evaluate("geo/primitive", step);
           for (XdmItem pit : stepPrims) {
             XdmNode p = (XdmNode) pit;
-            String dir = str(xpc, "string(@dir)", p).toLowerCase(Locale.ROOT);
+            String dir = str(xp, "string(@dir)", p).toLowerCase(Locale.ROOT);
             if (dir.contains("right") || isCw(dir)) {
               sawTravelDir = true;
               totalDx += 0.10 * (beats / 4.0);
@@ -260,7 +279,7 @@ class GeometryValidator {
 
       // If roles declared, also validate step/@who references a role.
       if (hasRoles) {
-        XdmValue whos = xpc.evaluate("//step/@who", doc);
+        XdmValue whos = xp.evaluate("//step/@who", doc);
         for (XdmItem it : whos) {
           String who = it.getStringValue();
           if (!who.isEmpty() && !roles.contains(who)) {
@@ -269,7 +288,7 @@ class GeometryValidator {
         }
 
         // body/geometry circle/order role reference
-        XdmValue circleRole = xpc.evaluate("/fdml/body/geometry/circle/order/@role", doc);
+        XdmValue circleRole = xp.evaluate("/fdml/body/geometry/circle/order/@role", doc);
         for (XdmItem it : circleRole) {
           String r = it.getStringValue();
           if (!r.isEmpty() && !roles.contains(r)) {
@@ -288,7 +307,7 @@ class GeometryValidator {
 
       // Ontology Batch 1: twoLinesFacing should declare which roles/lines face each other.
       if ("twoLinesFacing".equals(formationKind)) {
-        boolean hasFacing = bool(xpc, "exists(/fdml/body/geometry/twoLines/facing)", doc);
+        boolean hasFacing = bool(xp, "exists(/fdml/body/geometry/twoLines/facing)", doc);
         if (!hasFacing) {
           issues.add(new Issue(
             "missing_two_lines_facing",
@@ -303,11 +322,11 @@ class GeometryValidator {
         Map<String, Map<String, Integer>> lineSlotIndex = new HashMap<>();
         boolean hasBlankInOrder = false;
 
-        XdmValue twoLineNodes = xpc.evaluate("/fdml/body/geometry/twoLines/line[@id]", doc);
+        XdmValue twoLineNodes = xp.evaluate("/fdml/body/geometry/twoLines/line[@id]", doc);
         for (XdmItem lit : twoLineNodes) {
           XdmNode lineNode = (XdmNode) lit;
-          String lineId = str(xpc, "string(@id)", lineNode);
-          XdmValue orderWho = xpc.evaluate("order[1]/slot/@who", lineNode);
+          String lineId = str(xp, "string(@id)", lineNode);
+          XdmValue orderWho = xp.evaluate("order[1]/slot/@who", lineNode);
           if (orderWho == null || orderWho.size() == 0) continue;
 
           List<String> slots = new ArrayList<>();
@@ -336,8 +355,8 @@ class GeometryValidator {
         Map<String, String> inferredOpposite = new HashMap<>();
         List<String> orderLineIds = new ArrayList<>(twoLineOrders.keySet());
         if (orderLineIds.size() >= 2) {
-          String facingA = str(xpc, "string(/fdml/body/geometry/twoLines/facing[1]/@a)", doc);
-          String facingB = str(xpc, "string(/fdml/body/geometry/twoLines/facing[1]/@b)", doc);
+          String facingA = str(xp, "string(/fdml/body/geometry/twoLines/facing[1]/@a)", doc);
+          String facingB = str(xp, "string(/fdml/body/geometry/twoLines/facing[1]/@b)", doc);
 
           String lineA = null;
           String lineB = null;
@@ -372,8 +391,8 @@ class GeometryValidator {
         if (!twoLineOrders.isEmpty()) {
           for (XdmItem pit : prims) {
             XdmNode p = (XdmNode) pit;
-            String a = str(xpc, "string(@a)", p);
-            String b = str(xpc, "string(@b)", p);
+            String a = str(xp, "string(@a)", p);
+            String b = str(xp, "string(@b)", p);
 
             if (a != null && !a.isBlank() && !orderedDancers.contains(a.trim())) {
               issues.add(new Issue(
@@ -388,8 +407,8 @@ class GeometryValidator {
               ));
             }
 
-            String kind = str(xpc, "string(@kind)", p);
-            String frame = str(xpc, "string(@frame)", p);
+            String kind = str(xp, "string(@kind)", p);
+            String frame = str(xp, "string(@frame)", p);
             if ("swapPlaces".equals(kind) && "opposite".equals(frame) && a != null && b != null && !a.isBlank() && !b.isBlank()) {
               String aa = a.trim();
               String bb = b.trim();
@@ -430,7 +449,7 @@ class GeometryValidator {
       }
 
       // Ontology Batch 2: hold integrity.
-      String holdKind = str(xpc, "string(/fdml/meta/geometry/hold/@kind)", doc);
+      String holdKind = str(xp, "string(/fdml/meta/geometry/hold/@kind)", doc);
       if (holdKind != null && !holdKind.isBlank() && !"none".equals(holdKind) && sawReleaseHold) {
         issues.add(new Issue(
           "hold_broken",
@@ -440,35 +459,35 @@ class GeometryValidator {
 
       // Ontology Batch 4A: line progression requires explicit line order slots and progress delta.
       if ("line".equals(formationKind) && sawProgress) {
-        XdmValue lineNodes = xpc.evaluate("/fdml/body/geometry/line[@id]", doc);
+        XdmValue lineNodes = xp.evaluate("/fdml/body/geometry/line[@id]", doc);
         boolean hasAnyLineSlots = false;
         boolean checkedAnyLineOrder = false;
 
         for (XdmItem lit : lineNodes) {
           XdmNode lineNode = (XdmNode) lit;
-          String lineId = str(xpc, "string(@id)", lineNode);
-          XdmValue orderNodes = xpc.evaluate("order", lineNode);
+          String lineId = str(xp, "string(@id)", lineNode);
+          XdmValue orderNodes = xp.evaluate("order", lineNode);
           if (orderNodes == null || orderNodes.size() == 0) continue;
 
           List<XdmNode> orders = new ArrayList<>();
           for (XdmItem oit : orderNodes) orders.add((XdmNode) oit);
           checkedAnyLineOrder = true;
 
-          XdmNode initialOrderNode = selectInitialOrder(orders, xpc);
-          List<String> currentOrder = readOrderSlots(initialOrderNode, xpc);
+          XdmNode initialOrderNode = selectInitialOrder(orders, xp);
+          List<String> currentOrder = readOrderSlots(initialOrderNode, xp);
           if (!currentOrder.isEmpty()) hasAnyLineSlots = true;
 
-          XdmNode expectedOrderNode = selectExpectedAfterOrder(orders, xpc);
-          List<String> expectedOrder = readOrderSlots(expectedOrderNode, xpc);
+          XdmNode expectedOrderNode = selectExpectedAfterOrder(orders, xp);
+          List<String> expectedOrder = readOrderSlots(expectedOrderNode, xp);
 
           if (currentOrder.isEmpty()) continue;
 
           for (XdmItem pit : prims) {
             XdmNode p = (XdmNode) pit;
-            String kind = str(xpc, "string(@kind)", p);
+            String kind = str(xp, "string(@kind)", p);
             if (!"progress".equals(kind)) continue;
 
-            String deltaRaw = str(xpc, "string(@delta)", p);
+            String deltaRaw = str(xp, "string(@delta)", p);
             Integer delta = parseInt(deltaRaw);
             if (delta == null) continue; // Already reported as progress_missing_delta.
             currentOrder = rotateForward(currentOrder, delta);
@@ -483,7 +502,7 @@ class GeometryValidator {
         }
 
         if (!checkedAnyLineOrder) {
-          XdmValue lineSlots = xpc.evaluate("/fdml/body/geometry/line/order/slot/@who", doc);
+          XdmValue lineSlots = xp.evaluate("/fdml/body/geometry/line/order/slot/@who", doc);
           for (XdmItem it : lineSlots) {
             String who = it.getStringValue();
             if (who != null && !who.isBlank()) {
@@ -509,24 +528,24 @@ class GeometryValidator {
       }
 
       // Ontology Batch 2: twirl primitives must contain both halves (cw + ccw) within each figure.
-      XdmValue figs = xpc.evaluate("/fdml/body//figure", doc);
+      XdmValue figs = xp.evaluate("/fdml/body//figure", doc);
       for (XdmItem fit : figs) {
         XdmNode fig = (XdmNode) fit;
-        String figId = str(xpc, "string(@id)", fig);
+        String figId = str(xp, "string(@id)", fig);
 
         boolean figSawTwirl = false;
         boolean figSawCw = false;
         boolean figSawCcw = false;
 
-        XdmValue figPrims = xpc.evaluate(".//step/geo/primitive", fig);
+        XdmValue figPrims = xp.evaluate(".//step/geo/primitive", fig);
         for (XdmItem pit : figPrims) {
           XdmNode p = (XdmNode) pit;
-          String k = str(xpc, "string(@kind)", p);
+          String k = str(xp, "string(@kind)", p);
           if (k == null) k = "";
           if (!"twirl".equals(k.toLowerCase(Locale.ROOT))) continue;
 
           figSawTwirl = true;
-          String dir = str(xpc, "string(@dir)", p);
+          String dir = str(xp, "string(@dir)", p);
           if (isCw(dir)) figSawCw = true;
           if (isCcw(dir)) figSawCcw = true;
         }
@@ -541,11 +560,11 @@ class GeometryValidator {
 
       // Ontology Batch 1: couple formation with womanSide should declare canonical partner roles + pairing.
       if ("couple".equals(formationKind)) {
-        String womanSide = str(xpc, "string(/fdml/meta/geometry/formation/@womanSide)", doc);
+        String womanSide = str(xp, "string(/fdml/meta/geometry/formation/@womanSide)", doc);
         if (womanSide != null && !womanSide.isBlank()) {
           boolean hasMan = roles.contains("man");
           boolean hasWoman = roles.contains("woman");
-          boolean hasPartnerPair = bool(xpc,
+          boolean hasPartnerPair = bool(xp,
             "exists(/fdml/body/geometry/couples/pair[(@a='man' and @b='woman') or (@a='woman' and @b='man')])",
             doc
           );
@@ -565,12 +584,12 @@ class GeometryValidator {
             if (!sideState.isEmpty()) {
               for (XdmItem it : prims) {
                 XdmNode p = (XdmNode) it;
-                String kind = str(xpc, "string(@kind)", p);
+                String kind = str(xp, "string(@kind)", p);
                 if (kind == null) kind = "";
                 String k = kind.toLowerCase(Locale.ROOT);
 
-                String a = str(xpc, "string(@a)", p);
-                String b = str(xpc, "string(@b)", p);
+                String a = str(xp, "string(@a)", p);
+                String b = str(xp, "string(@b)", p);
                 boolean isManWomanPair = ("man".equals(a) && "woman".equals(b)) || ("woman".equals(a) && "man".equals(b));
 
                 if ("swapplaces".equals(k) && isManWomanPair) {
@@ -579,7 +598,7 @@ class GeometryValidator {
                 }
 
                 if ("relpos".equals(k) && isManWomanPair) {
-                  String relation = str(xpc, "string(@relation)", p);
+                  String relation = str(xp, "string(@relation)", p);
                   if (relation == null) relation = "";
 
                   String assertedSide = "";
@@ -594,7 +613,7 @@ class GeometryValidator {
                   if (!assertedSide.isEmpty()) {
                     sawRelposEvidence = true;
                     if (!assertedSide.equals(sideState)) {
-                      String figId = str(xpc, "string(ancestor::figure[1]/@id)", p);
+                      String figId = str(xp, "string(ancestor::figure[1]/@id)", p);
                       issues.add(new Issue(
                         "relpos_contradiction",
                         "figure" + (figId.isEmpty() ? "" : " '" + figId + "'")
@@ -618,7 +637,7 @@ class GeometryValidator {
 
       // Circle order preservation (true / explicit role order slots)
       if ("circle".equals(formationKind) && hasPreserveOrder) {
-        XdmValue slots = xpc.evaluate("/fdml/body/geometry/circle/order/slot/@who", doc);
+        XdmValue slots = xp.evaluate("/fdml/body/geometry/circle/order/slot/@who", doc);
         List<String> initialOrder = new ArrayList<>();
         for (XdmItem it : slots) {
           String who = it.getStringValue();
@@ -636,12 +655,12 @@ class GeometryValidator {
           // Scan primitives in document order and apply swapPlaces(a,b) to the order list.
           for (XdmItem it : prims) {
             XdmNode p = (XdmNode) it;
-            String kind = str(xpc, "string(@kind)", p);
+            String kind = str(xp, "string(@kind)", p);
             if (kind == null) kind = "";
             String k = kind.toLowerCase(Locale.ROOT);
             if ("swapplaces".equals(k)) {
-              String a = str(xpc, "string(@a)", p);
-              String b = str(xpc, "string(@b)", p);
+              String a = str(xp, "string(@a)", p);
+              String b = str(xp, "string(@b)", p);
               if (a != null && b != null && !a.isBlank() && !b.isBlank()) {
                 int ia = working.indexOf(a);
                 int ib = working.indexOf(b);
@@ -670,18 +689,13 @@ class GeometryValidator {
     return new Result(f, ok, issues);
   }
 
-  private static String str(XPathCompiler xpc, String expr, XdmNode node) {
-    try {
-      XdmItem i = xpc.evaluateSingle(expr, node);
-      return i == null ? "" : i.getStringValue();
-    } catch (SaxonApiException e) {
-      return "";
-    }
+  private static String str(XPaths xp, String expr, XdmNode node) {
+    return xp.string(expr, node);
   }
 
-  private static boolean bool(XPathCompiler xpc, String expr, XdmNode node) {
+  private static boolean bool(XPaths xp, String expr, XdmNode node) {
     try {
-      XdmItem i = xpc.evaluateSingle(expr, node);
+      XdmItem i = xp.evaluateSingle(expr, node);
       if (i == null) return false;
       String v = i.getStringValue();
       // Saxon represents xs:boolean as "true"/"false".
@@ -691,9 +705,9 @@ class GeometryValidator {
     }
   }
 
-  private static double dbl(XPathCompiler xpc, String expr, XdmNode node) {
+  private static double dbl(XPaths xp, String expr, XdmNode node) {
     try {
-      XdmItem i = xpc.evaluateSingle(expr, node);
+      XdmItem i = xp.evaluateSingle(expr, node);
       if (i == null) return 0.0;
       String v = i.getStringValue();
       if (v == null || v.isBlank()) return 0.0;
@@ -743,29 +757,29 @@ class GeometryValidator {
     }
   }
 
-  private static XdmNode selectInitialOrder(List<XdmNode> orders, XPathCompiler xpc) {
+  private static XdmNode selectInitialOrder(List<XdmNode> orders, XPaths xp) {
     if (orders == null || orders.isEmpty()) return null;
     for (XdmNode o : orders) {
-      String phase = str(xpc, "string(@phase)", o);
+      String phase = str(xp, "string(@phase)", o);
       if ("initial".equalsIgnoreCase(phase)) return o;
     }
     return orders.get(0);
   }
 
-  private static XdmNode selectExpectedAfterOrder(List<XdmNode> orders, XPathCompiler xpc) {
+  private static XdmNode selectExpectedAfterOrder(List<XdmNode> orders, XPaths xp) {
     if (orders == null || orders.isEmpty()) return null;
     for (XdmNode o : orders) {
-      String phase = str(xpc, "string(@phase)", o);
+      String phase = str(xp, "string(@phase)", o);
       if ("after".equalsIgnoreCase(phase)) return o;
     }
     if (orders.size() >= 2) return orders.get(orders.size() - 1);
     return null;
   }
 
-  private static List<String> readOrderSlots(XdmNode orderNode, XPathCompiler xpc) {
+  private static List<String> readOrderSlots(XdmNode orderNode, XPaths xp) {
     List<String> out = new ArrayList<>();
     if (orderNode == null) return out;
-    XdmValue slots = eval(xpc, "slot/@who", orderNode);
+    XdmValue slots = eval(xp, "slot/@who", orderNode);
     for (XdmItem it : slots) {
       String who = it.getStringValue();
       if (who != null && !who.isBlank()) out.add(who);
@@ -785,9 +799,9 @@ class GeometryValidator {
     return out;
   }
 
-  private static XdmValue eval(XPathCompiler xpc, String expr, XdmNode node) {
+  private static XdmValue eval(XPaths xp, String expr, XdmNode node) {
     try {
-      return xpc.evaluate(expr, node);
+      return xp.evaluate(expr, node);
     } catch (SaxonApiException e) {
       return XdmEmptySequence.getInstance();
     }
@@ -797,17 +811,4 @@ class GeometryValidator {
     String n = p.getFileName().toString().toLowerCase(Locale.ROOT);
     return n.endsWith(".xml") || n.endsWith(".fdml") || n.endsWith(".fdml.xml");
   }
-
-  private static List<Path> expandAll(List<Path> inputs) {
-    List<Path> out = new ArrayList<>();
-    for (Path p : inputs) {
-      try {
-        if (Files.isDirectory(p)) Files.walk(p).filter(Files::isRegularFile).forEach(out::add);
-        else out.add(p);
-      } catch (Exception e) {
-        throw new RuntimeException(e);
-      }
-    }
-    return out;
-  }
 }
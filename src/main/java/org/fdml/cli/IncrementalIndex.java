@@ -0,0 +1,238 @@
+package org.fdml.cli;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * {@code fdml index --incremental}: rebuilds the index from the previous one, re-extracting only
+ * the files that are new or changed.
+ *
+ * Next to the index, {@code <out>.state} records each file's mtime, size and SHA-256, a digest of
+ * the source manifests, the SHA-256 of the index it goes with, and the tool build. A file whose
+ * mtime and size match keeps its previous item without being read; one whose bytes still hash the
+ * same keeps it too. When the manifests change, items with a {@code sourceId} are re-extracted, as
+ * their {@code sourceTitle} and {@code sourceCategory} come from the manifests. Files no longer
+ * found are dropped. A missing or unreadable sidecar, a new build, or an index that was rewritten
+ * without it all mean a full rebuild, so the result is always what a plain run would write.
+ */
+final class IncrementalIndex {
+  private static final int MAGIC = 0x46444d49;     // "FDMI"
+  private static final int FORMAT = 1;
+
+  /** What a run did, for the stderr summary. */
+  static final class Stats {
+    int extracted;
+    int unchanged;
+    int dropped;
+  }
+
+  private static final class FileState {
+    final long mtime;
+    final long size;
+    final byte[] sha256;
+
+    FileState(long mtime, long size, byte[] sha256) {
+      this.mtime = mtime;
+      this.size = size;
+      this.sha256 = sha256;
+    }
+  }
+
+  private static final class State {
+    byte[] manifests;
+    byte[] index;
+    final Map<String, FileState> files = new LinkedHashMap<>();
+  }
+
+  /** One item from the previous index, as written. */
+  private static final class Previous {
+    final String raw;
+    final boolean sourced;
+
+    Previous(String raw, boolean sourced) {
+      this.raw = raw;
+      this.sourced = sourced;
+    }
+  }
+
+  /** One file's item for this run and the state to record for it (null: do not record). */
+  private static final class Outcome {
+    final String file;
+    final String raw;
+    final FileState state;
+    final boolean extracted;
+
+    Outcome(Path file, String raw, FileState state, boolean extracted) {
+      this.file = file.toString();
+      this.raw = raw;
+      this.state = state;
+      this.extracted = extracted;
+    }
+  }
+
+  private IncrementalIndex() {}
+
+  static Path sidecar(Path out) {
+    return out.resolveSibling(out.getFileName() + ".state");
+  }
+
+  /**
+   * Writes the index for {@code inputs} to {@code out} (and to {@code echo}, piece by piece) and
+   * updates the sidecar.
+   */
+  static Stats write(List<Path> inputs, int jobs, Path out, Consumer<String> echo) throws IOException {
+    Path side = sidecar(out);
+    String tool = ResultCache.toolVersion();
+    byte[] manifests = Indexer.manifestDigest();
+    State prev = load(side, tool);
+    Map<String, Previous> items = prev == null ? Map.of() : previousItems(out, prev.index);
+    boolean manifestsChanged = prev == null || !Arrays.equals(prev.manifests, manifests);
+
+    Stats stats = new Stats();
+    State next = new State();
+    next.manifests = manifests;
+    MessageDigest md = FileBytes.sha256Digest();
+    if (out.getParent() != null) Files.createDirectories(out.getParent());
+    Path tmp = out.resolveSibling(out.getFileName() + ".tmp");
+    try {
+      try (Writer file = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+        Consumer<String> sink = chunk -> {
+          echo.accept(chunk);
+          md.update(chunk.getBytes(StandardCharsets.UTF_8));
+          try { file.write(chunk); } catch (IOException e) { throw new UncheckedIOException(e); }
+        };
+        Map<String, FileState> seen = prev == null ? Map.of() : prev.files;
+        int[] kept = {0};
+        sink.accept("{\"items\":[");
+        Parallel.forEachOrdered(CorpusWalker.files(inputs), jobs, f -> {
+          Previous p = items.get(f.toString());
+          FileState s = seen.get(f.toString());
+          boolean reusable = p != null && s != null && !(manifestsChanged && p.sourced);
+          return outcome(f, reusable ? p : null, reusable ? s : null);
+        }, o -> {
+          sink.accept(stats.extracted + stats.unchanged > 0 ? "," + o.raw : o.raw);
+          if (o.extracted) stats.extracted++;
+          else stats.unchanged++;
+          if (o.state != null) next.files.put(o.file, o.state);
+          if (items.containsKey(o.file)) kept[0]++;
+        });
+        sink.accept("]}");
+        stats.dropped = items.size() - kept[0];
+      }
+      next.index = md.digest();
+      Files.move(tmp, out, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+    save(side, tool, next);
+    return stats;
+  }
+
+  /** Reuses {@code p} when the file still has the recorded mtime and size, or the same bytes. */
+  private static Outcome outcome(Path f, Previous p, FileState s) {
+    BasicFileAttributes a;
+    try {
+      a = Files.readAttributes(f, BasicFileAttributes.class);
+    } catch (IOException e) {
+      return new Outcome(f, Indexer.item(new CorpusWalker.Entry(f, true, null, null)), null, true);
+    }
+    long mtime = a.lastModifiedTime().toMillis();
+    if (p != null && s.mtime == mtime && s.size == a.size()) return new Outcome(f, p.raw, s, false);
+
+    FileBytes b;
+    try {
+      b = FileBytes.read(f);
+    } catch (IOException e) {
+      return new Outcome(f, Indexer.item(new CorpusWalker.Entry(f, true, null, null)), null, true);
+    }
+    byte[] sha = b.sha256();
+    FileState now = new FileState(mtime, a.size(), sha);
+    if (p != null && Arrays.equals(sha, s.sha256)) {
+      b.release();
+      return new Outcome(f, p.raw, now, false);
+    }
+    return new Outcome(f, Indexer.item(new CorpusWalker.Entry(f, true, null, b)), now, true);
+  }
+
+  /** The previous index's items by file, or none when it is missing or not the one the sidecar saw. */
+  private static Map<String, Previous> previousItems(Path out, byte[] expected) {
+    Map<String, Previous> items = new HashMap<>();
+    try {
+      byte[] raw = Files.readAllBytes(out);
+      if (!Arrays.equals(FileBytes.sha256Digest().digest(raw), expected)) return items;
+      String json = new String(raw, StandardCharsets.UTF_8);
+      for (MergeResults.Member top : MergeResults.members(json)) {
+        if (!"items".equals(top.key)) continue;
+        for (String item : MergeResults.elements(top.raw)) {
+          String file = null;
+          boolean sourced = false;
+          for (MergeResults.Member m : MergeResults.members(item)) {
+            if ("file".equals(m.key)) file = (String) JsonMini.parse(m.raw);
+            else if ("sourceId".equals(m.key)) sourced = true;
+          }
+          if (file != null) items.put(file, new Previous(item, sourced));
+        }
+      }
+    } catch (IOException | RuntimeException e) {
+      items.clear();
+    }
+    return items;
+  }
+
+  private static State load(Path side, String tool) {
+    if (!Files.isRegularFile(side)) return null;
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(side)))) {
+      if (in.readInt() != MAGIC || in.readInt() != FORMAT || !tool.equals(in.readUTF())) return null;
+      State s = new State();
+      s.manifests = readHash(in);
+      s.index = readHash(in);
+      int n = in.readInt();
+      for (int i = 0; i < n; i++) {
+        String file = in.readUTF();
+        s.files.put(file, new FileState(in.readLong(), in.readLong(), readHash(in)));
+      }
+      return s;
+    } catch (IOException | RuntimeException e) {
+      // Truncated or from an incompatible build: rebuild everything.
+      return null;
+    }
+  }
+
+  private static void save(Path side, String tool, State s) throws IOException {
+    Path tmp = side.resolveSibling(side.getFileName() + ".tmp");
+    try {
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT);
+        out.writeUTF(tool);
+        out.write(s.manifests);
+        out.write(s.index);
+        out.writeInt(s.files.size());
+        for (Map.Entry<String, FileState> e : s.files.entrySet()) {
+          out.writeUTF(e.getKey());
+          out.writeLong(e.getValue().mtime);
+          out.writeLong(e.getValue().size);
+          out.write(e.getValue().sha256);
+        }
+      }
+      Files.move(tmp, side, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+  }
+
+  private static byte[] readHash(DataInputStream in) throws IOException {
+    byte[] b = new byte[32];
+    in.readFully(b);
+    return b;
+  }
+}
@@ -1,10 +1,14 @@
 package org.fdml.cli;
 
 import net.sf.saxon.s9api.*;
+import javax.xml.transform.Source;
 import javax.xml.transform.stream.StreamSource;
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import java.security.MessageDigest;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -36,7 +40,11 @@ class Indexer {
       Paths.get("analysis/sources/non_wikipedia_public_domain_manifest.json"),
       Paths.get("out/acquired_sources/merged_manifest.json")
   );
-  private static final Map<String, SourceMeta> SOURCE_META_BY_ID = loadSourceMetaById();
+
+  /** The manifests are read on first lookup, not whenever Indexer is touched. */
+  private static final class SourceManifests {
+    static final Map<String, SourceMeta> BY_ID = InitTrace.time("source-manifests", Indexer::loadSourceMetaById);
+  }
 
   private static final class SourceMeta {
     final String id;
@@ -77,89 +85,207 @@ class Indexer {
   }
 
   static String buildIndex(List<Path> inputs) {
+    StringBuilder sb = new StringBuilder();
+    writeIndex(inputs, 1, sb::append);
+    return sb.toString();
+  }
+
+  /**
+   * Streams the index JSON to {@code out} a piece at a time, in file order. {@code jobs} workers
+   * parse files and extract {@link Item}s; only the items in the {@link Parallel#forEachOrdered}
+   * window are held at once, so memory does not grow with the corpus.
+   */
+  static void writeIndex(List<Path> inputs, int jobs, Consumer<String> out) {
+    writeIndex(inputs, jobs, out, null);
+  }
+
+  /**
+   * As above, also adding each parsed file to {@code search}, in file order. Notes and step text
+   * are only extracted when {@code search} is given.
+   */
+  static void writeIndex(List<Path> inputs, int jobs, Consumer<String> out, SearchIndex.Builder search) {
     try {
-      Processor proc = new Processor(false);
-      DocumentBuilder db = proc.newDocumentBuilder();
-      XPathCompiler xpc = proc.newXPathCompiler();
+      EngineContext ctx = EngineContext.shared();
+      XPaths xp = ctx.xpaths();
+      List<Path> files = CorpusWalker.files(inputs);
+      StringBuilder sb = new StringBuilder();
+      out.accept("{\"items\":[");
+      int[] written = {0};
+      Parallel.forEachOrdered(files, jobs,
+          f -> Item.extract(f, new StreamSource(f.toFile()), ctx.processor().newDocumentBuilder(), xp, search != null),
+          item -> {
+            sb.setLength(0);
+            if (written[0]++ > 0) sb.append(",");
+            item.appendTo(sb);
+            out.accept(sb.toString());
+            if (search != null && item.error == null) search.add(item.file, item.title, item.notes, item.actions);
+          });
+      out.accept("]}");
+    } catch (Exception e) {
+      throw new RuntimeException("Indexing failed: " + e.getMessage(), e);
+    }
+  }
 
-      List<Path> files = expandAll(inputs);
+  /** One file's index item as a JSON object, the same one {@link #buildIndex} puts in "items". */
+  static String item(CorpusWalker.Entry e) {
+    try {
+      EngineContext ctx = EngineContext.shared();
       StringBuilder sb = new StringBuilder();
-      sb.append("{\"items\":[");
-      for (int i = 0; i < files.size(); i++) {
-        Path f = files.get(i);
-
-        // Parse XML; keep going even if one file is bad
-        XdmNode doc;
-        try {
-          doc = db.build(new StreamSource(f.toFile()));
-        } catch (SaxonApiException e) {
-          sb.append("{\"file\":\"").append(esc(f.toString()))
-            .append("\",\"error\":\"").append(esc(e.getMessage())).append("\"}");
-          if (i < files.size() - 1) sb.append(",");
-          continue;
-        }
+      Item.extract(e.file, e.source(), ctx.processor().newDocumentBuilder(), ctx.xpaths(), false).appendTo(sb);
+      return sb.toString();
+    } catch (Exception ex) {
+      throw new RuntimeException("Indexing failed: " + ex.getMessage(), ex);
+    } finally {
+      e.release();
+    }
+  }
 
-        String title = evalString(xpc, doc, "normalize-space(/fdml/meta/title)");
-        String email = evalString(xpc, doc, "normalize-space(/fdml/meta/author/@email)");
-        String version = evalString(xpc, doc, "normalize-space(/fdml/@version)");
-        String meter = evalString(xpc, doc, "normalize-space(/fdml/meta/meter/@value)");
-        String tempoBpm = evalString(xpc, doc, "normalize-space(/fdml/meta/tempo/@bpm)");
-        String genre = evalString(xpc, doc, "normalize-space(/fdml/meta/type/@genre)");
-        String formationText = evalString(xpc, doc, "normalize-space(/fdml/meta/formation/@text)");
-        String formationKind = evalString(xpc, doc, "normalize-space(/fdml/meta/geometry/formation/@kind)");
-        String originCountry = evalString(xpc, doc, "normalize-space(/fdml/meta/origin/@country)");
-        boolean hasGeometry = evalBoolean(xpc, doc, "boolean(/fdml/meta/geometry)");
-        String notesMeta = evalString(xpc, doc, "normalize-space(/fdml/body/section[@type='notes'][1]/p[1])");
-        String sourceId = firstNonEmpty(extractToken(notesMeta, SOURCE_ID_PATTERN), inferSourceIdFromPath(f));
-        SourceMeta sourceMeta = isEmpty(sourceId) ? null : SOURCE_META_BY_ID.get(sourceId);
-        String sourceTitle = firstNonEmpty(
-            extractToken(notesMeta, SOURCE_TITLE_PATTERN),
-            sourceMeta == null ? "" : sourceMeta.title
-        );
-        String sourceCategory = sourceMeta == null ? "" : sourceMeta.category;
-        List<String> stepActions = evalStringList(xpc, doc, "/fdml/body/figure/step/@action/string()");
-        DescriptionProfile fullDescription = computeDescriptionProfile(stepActions);
-
-        XdmValue secVals = eval(xpc, doc, "/fdml/body/section/@id/string()");
-        List<String> sections = new ArrayList<>();
-        if (secVals != null) for (XdmItem it : secVals) sections.add(it.getStringValue());
-
-        sb.append("{\"file\":\"").append(esc(f.toString())).append("\"");
-        if (!isEmpty(title)) sb.append(",\"title\":\"").append(esc(title)).append("\"");
-        if (!isEmpty(email)) sb.append(",\"authorEmail\":\"").append(esc(email)).append("\"");
-        sb.append(",\"version\":\"").append(esc(version)).append("\"");
-        sb.append(",\"meter\":\"").append(esc(meter)).append("\"");
-        sb.append(",\"tempoBpm\":\"").append(esc(tempoBpm)).append("\"");
-        sb.append(",\"genre\":\"").append(esc(genre)).append("\"");
-        sb.append(",\"formationText\":\"").append(esc(formationText)).append("\"");
-        sb.append(",\"formationKind\":\"").append(esc(formationKind)).append("\"");
-        sb.append(",\"originCountry\":\"").append(esc(originCountry)).append("\"");
-        if (!isEmpty(sourceId)) sb.append(",\"sourceId\":\"").append(esc(sourceId)).append("\"");
-        if (!isEmpty(sourceTitle)) sb.append(",\"sourceTitle\":\"").append(esc(sourceTitle)).append("\"");
-        if (!isEmpty(sourceCategory)) sb.append(",\"sourceCategory\":\"").append(esc(sourceCategory)).append("\"");
-        sb.append(",\"fullDescriptionTier\":\"").append(esc(fullDescription.tier)).append("\"");
-        sb.append(",\"fullDescriptionStrict\":").append(fullDescription.strict);
-        sb.append(",\"fullDescriptionRelaxed\":").append(fullDescription.relaxed);
-        sb.append(",\"fullDescriptionSteps\":").append(fullDescription.steps);
-        sb.append(",\"fullDescriptionNonPlaceholderSteps\":").append(fullDescription.nonPlaceholderSteps);
-        sb.append(",\"fullDescriptionDanceLexemeSteps\":").append(fullDescription.danceLexemeSteps);
-        sb.append(",\"fullDescriptionUniqueNonPlaceholderSteps\":").append(fullDescription.uniqueNonPlaceholderSteps);
-        sb.append(",\"hasGeometry\":").append(hasGeometry);
-        sb.append(",\"sections\":[");
-        for (int j = 0; j < sections.size(); j++) {
-          sb.append("\"").append(esc(sections.get(j))).append("\"");
-          if (j < sections.size() - 1) sb.append(",");
-        }
-        sb.append("]}");
-        if (i < files.size() - 1) sb.append(",");
+  /** What the index keeps of one file: its facets, or the parse error. The tree is dropped. */
+  static final class Item {
+    final String file;
+    final String error;   // non-null: the file did not parse and nothing else is set
+    final String title;
+    final String email;
+    final String version;
+    final String meter;
+    final String tempoBpm;
+    final String genre;
+    final String formationText;
+    final String formationKind;
+    final String originCountry;
+    final String sourceId;
+    final String sourceTitle;
+    final String sourceCategory;
+    final DescriptionProfile fullDescription;
+    final boolean hasGeometry;
+    final String[] sections;
+    /**
+     * Full text for {@link SearchIndex}, every step wherever it is nested; not in the index JSON,
+     * and null unless extracted {@code withText}.
+     */
+    final String notes;
+    final String[] actions;
+
+    private Item(String file, String error, String title, String email, String version, String meter,
+                 String tempoBpm, String genre, String formationText, String formationKind,
+                 String originCountry, String sourceId, String sourceTitle, String sourceCategory,
+                 DescriptionProfile fullDescription, boolean hasGeometry, String[] sections,
+                 String notes, String[] actions) {
+      this.file = file;
+      this.error = error;
+      this.title = title;
+      this.email = email;
+      this.version = version;
+      this.meter = meter;
+      this.tempoBpm = tempoBpm;
+      this.genre = genre;
+      this.formationText = formationText;
+      this.formationKind = formationKind;
+      this.originCountry = originCountry;
+      this.sourceId = sourceId;
+      this.sourceTitle = sourceTitle;
+      this.sourceCategory = sourceCategory;
+      this.fullDescription = fullDescription;
+      this.hasGeometry = hasGeometry;
+      this.sections = sections;
+      this.notes = notes;
+      this.actions = actions;
+    }
+
+    static Item extract(Path f, Source src, DocumentBuilder db, XPaths xp, boolean withText) {
+      // Parse XML; keep going even if one file is bad
+      XdmNode doc;
+      try {
+        doc = db.build(src);
+      } catch (SaxonApiException e) {
+        return new Item(f.toString(), e.getMessage(), null, null, null, null, null, null, null, null,
+            null, null, null, null, null, false, null, null, null);
+      }
+
+      String notesMeta = evalString(xp, doc, "normalize-space(/fdml/body/section[@type='notes'][1]/p[1])");
+      String sourceId = firstNonEmpty(extractToken(notesMeta, SOURCE_ID_PATTERN), inferSourceIdFromPath(f));
+      SourceMeta sourceMeta = isEmpty(sourceId) ? null : SourceManifests.BY_ID.get(sourceId);
+      String sourceTitle = firstNonEmpty(
+          extractToken(notesMeta, SOURCE_TITLE_PATTERN),
+          sourceMeta == null ? "" : sourceMeta.title
+      );
+      List<String> stepActions = evalStringList(xp, doc, "/fdml/body/figure/step/@action/string()");
+
+      XdmValue secVals = eval(xp, doc, "/fdml/body/section/@id/string()");
+      List<String> sections = new ArrayList<>();
+      if (secVals != null) for (XdmItem it : secVals) sections.add(it.getStringValue());
+
+      return new Item(f.toString(), null,
+          evalString(xp, doc, "normalize-space(/fdml/meta/title)"),
+          evalString(xp, doc, "normalize-space(/fdml/meta/author/@email)"),
+          evalString(xp, doc, "normalize-space(/fdml/@version)"),
+          evalString(xp, doc, "normalize-space(/fdml/meta/meter/@value)"),
+          evalString(xp, doc, "normalize-space(/fdml/meta/tempo/@bpm)"),
+          evalString(xp, doc, "normalize-space(/fdml/meta/type/@genre)"),
+          evalString(xp, doc, "normalize-space(/fdml/meta/formation/@text)"),
+          evalString(xp, doc, "normalize-space(/fdml/meta/geometry/formation/@kind)"),
+          evalString(xp, doc, "normalize-space(/fdml/meta/origin/@country)"),
+          sourceId,
+          sourceTitle,
+          sourceMeta == null ? "" : sourceMeta.category,
+          computeDescriptionProfile(stepActions),
+          evalBoolean(xp, doc, "boolean(/fdml/meta/geometry)"),
+          sections.toArray(new String[0]),
+          withText ? evalString(xp, doc, "normalize-space(string-join(/fdml/body/section[@type='notes']//text(), ' '))") : null,
+          withText ? evalStringList(xp, doc, "/fdml/body//step/@action/string()").toArray(new String[0]) : null);
+    }
+
+    void appendTo(StringBuilder sb) {
+      if (error != null) {
+        sb.append("{\"file\":\"").append(esc(file))
+          .append("\",\"error\":\"").append(esc(error)).append("\"}");
+        return;
+      }
+      sb.append("{\"file\":\"").append(esc(file)).append("\"");
+      if (!isEmpty(title)) sb.append(",\"title\":\"").append(esc(title)).append("\"");
+      if (!isEmpty(email)) sb.append(",\"authorEmail\":\"").append(esc(email)).append("\"");
+      sb.append(",\"version\":\"").append(esc(version)).append("\"");
+      sb.append(",\"meter\":\"").append(esc(meter)).append("\"");
+      sb.append(",\"tempoBpm\":\"").append(esc(tempoBpm)).append("\"");
+      sb.append(",\"genre\":\"").append(esc(genre)).append("\"");
+      sb.append(",\"formationText\":\"").append(esc(formationText)).append("\"");
+      sb.append(",\"formationKind\":\"").append(esc(formationKind)).append("\"");
+      sb.append(",\"originCountry\":\"").append(esc(originCountry)).append("\"");
+      if (!isEmpty(sourceId)) sb.append(",\"sourceId\":\"").append(esc(sourceId)).append("\"");
+      if (!isEmpty(sourceTitle)) sb.append(",\"sourceTitle\":\"").append(esc(sourceTitle)).append("\"");
+      if (!isEmpty(sourceCategory)) sb.append(",\"sourceCategory\":\"").append(esc(sourceCategory)).append("\"");
+      sb.append(",\"fullDescriptionTier\":\"").append(esc(fullDescription.tier)).append("\"");
+      sb.append(",\"fullDescriptionStrict\":").append(fullDescription.strict);
+      sb.append(",\"fullDescriptionRelaxed\":").append(fullDescription.relaxed);
+      sb.append(",\"fullDescriptionSteps\":").append(fullDescription.steps);
+      sb.append(",\"fullDescriptionNonPlaceholderSteps\":").append(fullDescription.nonPlaceholderSteps);
+      sb.append(",\"fullDescriptionDanceLexemeSteps\":").append(fullDescription.danceLexemeSteps);
+      sb.append(",\"fullDescriptionUniqueNonPlaceholderSteps\":").append(fullDescription.uniqueNonPlaceholderSteps);
+      sb.append(",\"hasGeometry\":").append(hasGeometry);
+      sb.append(",\"sections\":[");
+      for (int j = 0; j < sections.length; j++) {
+        sb.append("\"").append(esc(sections[j])).append("\"");
+        if (j < sections.length - 1) sb.append(",");
       }
       sb.append("]}");
-      return sb.toString();
-    } catch (Exception e) {
-      throw new RuntimeException("Indexing failed: " + e.getMessage(), e);
     }
   }
 
+  /** SHA-256 over the source manifests (and which of them exist), for {@link IncrementalIndex}. */
+  static byte[] manifestDigest() throws IOException {
+    MessageDigest md = FileBytes.sha256Digest();
+    for (Path p : SOURCE_MANIFEST_PATHS) {
+      md.update(p.toString().getBytes(StandardCharsets.UTF_8));
+      if (Files.isRegularFile(p)) {
+        md.update((byte) 1);
+        md.update(Files.readAllBytes(p));
+      } else {
+        md.update((byte) 0);
+      }
+    }
+    return md.digest();
+  }
+
   private static Map<String, SourceMeta> loadSourceMetaById() {
     Map<String, SourceMeta> out = new HashMap<>();
     for (Path manifestPath : SOURCE_MANIFEST_PATHS) {
@@ -281,23 +407,18 @@ class Indexer {
     return s == null ? "" : s.trim();
   }
 
-  private static XdmValue eval(XPathCompiler xpc, XdmNode doc, String expr) {
-    try { return xpc.evaluate(expr, doc); }
+  private static XdmValue eval(XPaths xp, XdmNode doc, String expr) {
+    try { return xp.evaluate(expr, doc); }
     catch (SaxonApiException e) { return null; }
   }
 
-  private static String evalString(XPathCompiler xpc, XdmNode doc, String expr) {
-    try {
-      XdmItem item = xpc.evaluateSingle(expr, doc); // safe, no checked XPathException downstream
-      return item == null ? "" : item.getStringValue();
-    } catch (SaxonApiException e) {
-      return "";
-    }
+  private static String evalString(XPaths xp, XdmNode doc, String expr) {
+    return xp.string(expr, doc);
   }
 
-  private static List<String> evalStringList(XPathCompiler xpc, XdmNode doc, String expr) {
+  private static List<String> evalStringList(XPaths xp, XdmNode doc, String expr) {
     List<String> out = new ArrayList<>();
-    XdmValue val = eval(xpc, doc, expr);
+    XdmValue val = eval(xp, doc, expr);
     if (val == null) return out;
     for (XdmItem item : val) {
       if (item == null) continue;
@@ -307,9 +428,9 @@ class Indexer {
     return out;
   }
 
-  private static boolean evalBoolean(XPathCompiler xpc, XdmNode doc, String expr) {
+  private static boolean evalBoolean(XPaths xp, XdmNode doc, String expr) {
     try {
-      XdmItem item = xpc.evaluateSingle(expr, doc);
+      XdmItem item = xp.evaluateSingle(expr, doc);
       if (item == null) return false;
       return "true".equalsIgnoreCase(item.getStringValue()) || "1".equals(item.getStringValue());
     } catch (SaxonApiException e) {
@@ -317,17 +438,6 @@ class Indexer {
     }
   }
 
-  private static List<Path> expandAll(List<Path> inputs) {
-    List<Path> out = new ArrayList<>();
-    for (Path p : inputs) {
-      try {
-        if (Files.isDirectory(p)) Files.walk(p).filter(Files::isRegularFile).forEach(out::add);
-        else out.add(p);
-      } catch (Exception e) { throw new RuntimeException(e); }
-    }
-    return out;
-  }
-
   private static boolean isEmpty(String s) { return s == null || s.trim().isEmpty(); }
   private static String esc(String s) { return s.replace("\\","\\\\").replace("\"","\\\"").replace("\n","\\n").replace("\r",""); }
 }
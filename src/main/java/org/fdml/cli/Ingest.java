@@ -458,27 +458,13 @@ class Ingest {
 
   private static DoctorStatus doctorStrictStatus(Path fdmlPath) {
     DoctorStatus s = emptyDoctorStatus();
-    List<Path> targets = List.of(fdmlPath);
-
-    FdmlValidator v = new FdmlValidator(Paths.get("schema/fdml.xsd"));
-    SchematronValidator sch = new SchematronValidator(Paths.get("schematron/fdml-compiled.xsl"));
-    var rX = v.validateCollect(targets);
-    var rS = sch.validateCollect(targets);
-    var rL = Linter.lintCollect(targets);
-    var rT = TimingValidator.validateCollect(targets);
-    var rG = GeometryValidator.validateCollect(targets);
-
-    s.xsdOk = true;
-    for (var r : rX) if (!r.ok) { s.xsdOk = false; break; }
-    s.schematronOk = true;
-    for (var r : rS) if (!r.ok) { s.schematronOk = false; break; }
-    s.lintOk = true;
-    for (var r : rL) if (!r.ok()) { s.lintOk = false; break; }
-    s.timingOk = true;
-    for (var r : rT) if (!r.ok()) { s.timingOk = false; break; }
-    s.geometryOk = true;
-    for (var r : rG) if (!r.ok) { s.geometryOk = false; break; }
-    s.strictOk = s.xsdOk && s.schematronOk && s.lintOk && s.timingOk && s.geometryOk;
+    FdmlEngine.DoctorReport r = FdmlEngine.shared().doctor(FdmlEngine.Document.of(fdmlPath));
+    s.xsdOk = r.xsd.ok;
+    s.schematronOk = r.schematron == null || r.schematron.ok;
+    s.lintOk = r.lint == null || r.lint.ok;
+    s.timingOk = r.timing == null || r.timing.ok;
+    s.geometryOk = r.geometry == null || r.geometry.ok;
+    s.strictOk = r.ok();
     return s;
   }
 
@@ -13,10 +13,10 @@ class Init {
     "v12-couple"
   );
 
-  static void run(String[] args) {
+  static int run(String[] args) {
     if (args.length < 2) {
       System.err.println("init: provide <output-file> [--title T] [--dance D] [--meter M/N] [--tempo BPM] [--figure-id f-...] [--figure-name NAME] [--formation FORM] [--profile " + String.join("|", SUPPORTED_PROFILES) + "]");
-      System.exit(4);
+      return 4;
     }
     Path out = Paths.get(args[1]);
     Map<String,String> kv = parseFlags(args, 2);
@@ -53,8 +53,7 @@ class Init {
           break;
         default:
           System.err.println("init: unsupported --profile '" + profile + "'. Supported: " + String.join(", ", SUPPORTED_PROFILES));
-          System.exit(4);
-          return;
+          return 4;
       }
     }
 
@@ -62,9 +61,10 @@ class Init {
       Files.createDirectories(out.getParent() == null ? Paths.get(".") : out.getParent());
       Files.writeString(out, xml, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
       System.out.println("Created: " + out);
+      return 0;
     } catch (Exception e) {
       e.printStackTrace();
-      System.exit(4);
+      return 4;
     }
   }
 
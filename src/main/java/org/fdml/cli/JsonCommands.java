@@ -0,0 +1,92 @@
+package org.fdml.cli;
+
+import net.sf.saxon.s9api.SaxonApiException;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * The {@code --json} payloads of the read-only commands, for callers that keep one JVM and its
+ * warm engines: {@link Serve} and {@link Batch}.
+ *
+ * A command runs over files and directories or over one document given in memory, always with
+ * one worker, since these callers run many commands side by side instead. Payloads are exactly
+ * what the CLI prints for {@code --json} (without {@code --shard}).
+ */
+final class JsonCommands {
+  static final List<String> NAMES = List.of(
+      "validate", "validate-sch", "validate-all", "validate-geo", "lint", "doctor", "export-json", "index");
+
+  /** A payload and whether every check passed; {@code ok} is null for commands that do not check. */
+  static final class Result {
+    final String payload;
+    final Boolean ok;
+
+    Result(String payload, Boolean ok) {
+      this.payload = payload;
+      this.ok = ok;
+    }
+  }
+
+  private JsonCommands() {}
+
+  /**
+   * Runs {@code cmd} over {@code paths}, or over {@code doc} when it is not null. Returns null for
+   * a command not in {@link #NAMES}; throws {@link IllegalArgumentException} for inputs the
+   * command cannot take.
+   */
+  static Result run(String cmd, List<Path> paths, CorpusWalker.Entry doc, boolean explain) throws SaxonApiException {
+    EngineContext ctx = EngineContext.shared();
+    switch (cmd) {
+      case "validate": {
+        FdmlValidator v = ctx.xsdValidator();
+        List<FdmlValidator.Result> rs = doc != null ? List.of(v.validateEntry(doc)) : v.validateCollect(paths, 1);
+        return new Result(MainJson.toJsonValidate(rs), rs.stream().allMatch(r -> r.ok));
+      }
+      case "validate-sch": {
+        SchematronValidator s = ctx.schematronValidator();
+        List<SchematronValidator.Result> rs = doc != null ? List.of(s.validateEntry(doc)) : s.validateCollect(paths, 1);
+        return new Result(MainJson.toJsonValidateSch(rs), rs.stream().allMatch(r -> r.ok));
+      }
+      case "validate-all": {
+        DoctorStages st = DoctorStages.validateAll(docs(doc, paths), ctx.xsdValidator(), ctx.schematronValidator(), 1, null);
+        return new Result(MainJson.toJsonValidateAll(st.xsd, st.schematron), st.ok());
+      }
+      case "validate-geo": {
+        List<GeometryValidator.Result> rs = GeometryValidator.validateDocs(docs(doc, paths));
+        return new Result(MainJson.toJsonValidateGeo(rs), rs.stream().allMatch(r -> r.ok));
+      }
+      case "lint": {
+        List<Linter.FileResult> rs = Linter.lintDocs(docs(doc, paths));
+        return new Result(MainJson.toJsonLint(rs), rs.stream().allMatch(Linter.FileResult::ok));
+      }
+      case "doctor": {
+        DoctorStages st = DoctorStages.run(docs(doc, paths), ctx.xsdValidator(), ctx.schematronValidator(), 1);
+        var ex = explain ? DoctorExplain.build(st.xsd, st.schematron, st.lint, st.timing, st.geometry) : null;
+        return new Result(MainJson.toJsonDoctor(st.xsd, st.schematron, st.lint, st.timing, ex), st.ok());
+      }
+      case "export-json": {
+        if (doc == null) return new Result(ExportJson.export(onePath(cmd, paths)), null);
+        try {
+          return new Result(ExportJson.exportNode(doc.file, ctx.processor().newDocumentBuilder().build(doc.source())), null);
+        } finally {
+          doc.release();
+        }
+      }
+      case "index":
+        return new Result(doc != null ? "{\"items\":[" + Indexer.item(doc) + "]}" : Indexer.buildIndex(paths), null);
+      default:
+        return null;
+    }
+  }
+
+  private static List<ParsedDocument> docs(CorpusWalker.Entry doc, List<Path> paths) {
+    XPaths xp = EngineContext.shared().xpaths();
+    return doc != null ? List.of(new ParsedDocument(xp, doc)) : ParsedDocument.load(xp, paths);
+  }
+
+  private static Path onePath(String cmd, List<Path> paths) {
+    if (paths.size() != 1) throw new IllegalArgumentException(cmd + " takes exactly one path");
+    return paths.get(0);
+  }
+}
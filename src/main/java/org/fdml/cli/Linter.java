@@ -1,7 +1,6 @@
 package org.fdml.cli;
 
 import net.sf.saxon.s9api.*;
-import javax.xml.transform.stream.StreamSource;
 import java.nio.file.*;
 import java.util.*;
 
@@ -27,79 +26,72 @@ class Linter {
   }
 
   static List<FileResult> lintCollect(List<Path> inputs) {
-    List<Path> files = expandAll(inputs);
-    List<FileResult> out = new ArrayList<>();
-    try {
-      Processor proc = new Processor(false);
-      DocumentBuilder db = proc.newDocumentBuilder();
-      XPathCompiler xpc = proc.newXPathCompiler();
-
-      for (Path f : files) {
-        FileResult r = new FileResult(f);
-        XdmNode doc;
-        try {
-          doc = db.build(new StreamSource(f.toFile()));
-        } catch (SaxonApiException e) {
-          r.warnings.add(new Warning("parse_error", null, null, 0, null, e.getMessage()));
-          out.add(r);
-          continue;
-        }
-
-        String meter = string(xpc, "normalize-space(/fdml/meta/meter/@value)", doc);
-        Integer num = parseMeterNumerator(meter);
-
-        XdmValue figures = eval(xpc, "/fdml/body/figure", doc);
-        for (XdmItem it : figures) {
-          XdmNode fig = (XdmNode) it;
-          String figId = string(xpc, "string(@id)", fig);
-          long beats = roundToLong(evalNumber(xpc, "number(sum(./step/@beats))", fig));
-          if (num != null && num > 0) {
-            long rem = beats % num;
-            if (rem != 0) {
-              double bars = (num == 0) ? 0.0 : (beats * 1.0 / num);
-              r.warnings.add(new Warning(
-                "off_meter",
-                figId == null || figId.isEmpty() ? "(no-id)" : figId,
-                meter,
-                beats,
-                String.format(java.util.Locale.ROOT, "%.2f", bars),
-                "total beats not divisible by meter numerator"
-              ));
-            }
-          }
-        }
+    return lintCollect(inputs, null);
+  }
 
-        if (meter == null || meter.isEmpty()) {
-          r.warnings.add(new Warning("missing_meter", null, null, 0, null, "meta/meter/@value is missing"));
-        }
+  /** Only the files of {@code shard} (all when null). */
+  static List<FileResult> lintCollect(List<Path> inputs, Shard shard) {
+    return lintDocs(ParsedDocument.load(EngineContext.shared().xpaths(), inputs, shard));
+  }
 
-        out.add(r);
-      }
+  static List<FileResult> lintDocs(List<ParsedDocument> docs) {
+    List<FileResult> out = new ArrayList<>();
+    try {
+      for (ParsedDocument d : docs) out.add(lintDoc(d));
     } catch (Exception e) {
       throw new RuntimeException(e);
     }
     return out;
   }
 
-  private static List<Path> expandAll(List<Path> inputs) {
-    List<Path> out = new ArrayList<>();
-    for (Path p : inputs) {
-      try {
-        if (Files.isDirectory(p)) Files.walk(p).filter(Files::isRegularFile).forEach(out::add);
-        else out.add(p);
-      } catch (Exception e) { throw new RuntimeException(e); }
+  /** Lints one loaded document; every document gets a result. */
+  static FileResult lintDoc(ParsedDocument d) {
+    FileResult r = new FileResult(d.file);
+    XdmNode doc;
+    try {
+      doc = d.node();
+    } catch (SaxonApiException e) {
+      r.warnings.add(new Warning("parse_error", null, null, 0, null, e.getMessage()));
+      return r;
     }
-    return out;
+    XPaths xp = d.xpaths();
+
+    String meter = string(xp, "normalize-space(/fdml/meta/meter/@value)", doc);
+    Integer num = parseMeterNumerator(meter);
+
+    XdmValue figures = eval(xp, "/fdml/body/figure", doc);
+    for (XdmItem it : figures) {
+      XdmNode fig = (XdmNode) it;
+      String figId = string(xp, "string(@id)", fig);
+      long beats = roundToLong(evalNumber(xp, "number(sum(./step/@beats))", fig));
+      if (num != null && num > 0) {
+        long rem = beats % num;
+        if (rem != 0) {
+          double bars = (num == 0) ? 0.0 : (beats * 1.0 / num);
+          r.warnings.add(new Warning(
+            "off_meter",
+            figId == null || figId.isEmpty() ? "(no-id)" : figId,
+            meter,
+            beats,
+            String.format(java.util.Locale.ROOT, "%.2f", bars),
+            "total beats not divisible by meter numerator"
+          ));
+        }
+      }
+    }
+
+    if (meter == null || meter.isEmpty()) {
+      r.warnings.add(new Warning("missing_meter", null, null, 0, null, "meta/meter/@value is missing"));
+    }
+    return r;
   }
 
-  private static String string(XPathCompiler xpc, String expr, XdmNode node) {
-    try { XdmItem i = xpc.evaluateSingle(expr, node); return i == null ? "" : i.getStringValue(); }
-    catch (SaxonApiException e) { return ""; }
+  private static String string(XPaths xp, String expr, XdmNode node) {
+    return xp.string(expr, node);
   }
 
-  private static double evalNumber(XPathCompiler xpc, String expr, XdmNode node) {
-    try { XdmItem i = xpc.evaluateSingle(expr, node); return i == null ? Double.NaN : Double.parseDouble(i.getStringValue()); }
-    catch (Exception e) { return Double.NaN; }
+  private static double evalNumber(XPaths xp, String expr, XdmNode node) {
+    return xp.number(expr, node);
   }
 
   private static long roundToLong(double d) {
@@ -115,13 +107,8 @@ class Linter {
     catch (NumberFormatException e) { return null; }
   }
 
-  private static XdmValue eval(XPathCompiler xpc, String expr, XdmNode node) {
-    try { return xpc.evaluate(expr, node); }
-    catch (SaxonApiException e) { return XdmEmptySequence.getInstance(); }
-  }
-
-  private static XdmValue eval(XPathCompiler xpc, XdmNode node, String expr) {
-    try { return xpc.evaluate(expr, node); }
+  private static XdmValue eval(XPaths xp, String expr, XdmNode node) {
+    try { return xp.evaluate(expr, node); }
     catch (SaxonApiException e) { return XdmEmptySequence.getInstance(); }
   }
 }
@@ -1,5 +1,8 @@
 package org.fdml.cli;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.nio.file.*;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
@@ -11,72 +14,125 @@ public class Main {
   private static final int EXIT_IO_ERR = 4;
 
   public static void main(String[] args) {
-    if (args.length < 1) { usage(); System.exit(EXIT_IO_ERR); }
+    System.exit(run(args));
+  }
+
+  /**
+   * Runs one command and returns its exit code, writing through {@code System.out} and
+   * {@code System.err}; {@link Daemon} calls this for each forwarded invocation.
+   */
+  static int run(String[] args) {
+    if (args.length < 1) { usage(); return EXIT_IO_ERR; }
     String cmd = args[0];
     if ("--help".equals(cmd) || "-h".equals(cmd)) {
       usage();
-      System.exit(EXIT_OK);
+      return EXIT_OK;
     }
     try {
       switch (cmd) {
         case "validate": {
           boolean json = hasFlag(args, "--json");
           String jsonOut = flagValue(args, "--json-out");
+          int jobs = jobsFlag(args, "validate");
           List<Path> targets = collectNonFlagPaths(args, 1);
-          if (targets.isEmpty()) { System.err.println("validate: provide at least one file or directory"); System.exit(EXIT_IO_ERR); }
-          Path schemaPath = Paths.get("schema/fdml.xsd");
-          FdmlValidator v = new FdmlValidator(schemaPath);
+          if (targets.isEmpty()) { System.err.println("validate: provide at least one file or directory"); return EXIT_IO_ERR; }
+          Shard shard = shardFlag(args, "validate");
+          FdmlValidator v = EngineContext.shared().xsdValidator();
+          if (hasFlag(args, "--ndjson")) {
+            boolean[] ok = {true};
+            try (Ndjson out = Ndjson.open(jsonOut)) {
+              Ndjson.entries(targets, shard, jobs, v::validateEntry, r -> {
+                ok[0] &= r.ok;
+                out.line(sb -> MainJson.xsd(sb, r));
+              });
+            }
+            return ok[0] ? EXIT_OK : EXIT_VALIDATION_ERR;
+          }
           if (json || jsonOut != null) {
-            var r = v.validateCollect(targets);
-            String payload = toJsonValidate(r);
+            var r = v.validateCollect(targets, jobs, shard);
+            String payload = MainJson.withShard(MainJson.toJsonValidate(r), shard);
             System.out.println(payload);
             if (jsonOut != null) Files.writeString(Paths.get(jsonOut), payload, StandardCharsets.UTF_8);
-            System.exit(allOk(r) ? EXIT_OK : EXIT_VALIDATION_ERR);
+            return allOk(r) ? EXIT_OK : EXIT_VALIDATION_ERR;
           } else {
-            boolean ok = v.validatePaths(targets);
-            System.exit(ok ? EXIT_OK : EXIT_VALIDATION_ERR);
+            boolean ok = v.validatePaths(targets, jobs, shard);
+            return ok ? EXIT_OK : EXIT_VALIDATION_ERR;
           }
         }
 
         case "validate-sch": {
           boolean json = hasFlag(args, "--json");
           String jsonOut = flagValue(args, "--json-out");
+          int jobs = jobsFlag(args, "validate-sch");
+          int maxFailures = maxFailuresFlag(args, "validate-sch");
+          SchematronValidator.Engine engine = engineFlag(args, "validate-sch");
           List<Path> targets = collectNonFlagPaths(args, 1);
-          if (targets.isEmpty()) { System.err.println("validate-sch: provide at least one file or directory"); System.exit(EXIT_IO_ERR); }
-          Path schXsl = Paths.get("schematron/fdml-compiled.xsl");
-          SchematronValidator sch = new SchematronValidator(schXsl);
+          if (targets.isEmpty()) { System.err.println("validate-sch: provide at least one file or directory"); return EXIT_IO_ERR; }
+          Shard shard = shardFlag(args, "validate-sch");
+          SchematronValidator sch = EngineContext.shared().schematronValidator().withMaxFailures(maxFailures).withEngine(engine);
+          if (hasFlag(args, "--ndjson")) {
+            boolean[] ok = {true};
+            try (Ndjson out = Ndjson.open(jsonOut)) {
+              Ndjson.entries(targets, shard, jobs, sch::validateEntry, r -> {
+                ok[0] &= r.ok;
+                out.line(sb -> MainJson.schematron(sb, r));
+              });
+            }
+            return ok[0] && sch.parityMismatches() == 0 ? EXIT_OK : EXIT_VALIDATION_ERR;
+          }
           if (json || jsonOut != null) {
-            var r = sch.validateCollect(targets);
-            String payload = toJsonValidateSch(r);
+            var r = sch.validateCollect(targets, jobs, shard);
+            String payload = MainJson.withShard(MainJson.toJsonValidateSch(r), shard);
             System.out.println(payload);
             if (jsonOut != null) Files.writeString(Paths.get(jsonOut), payload, StandardCharsets.UTF_8);
-            System.exit(allOkSch(r) ? EXIT_OK : EXIT_VALIDATION_ERR);
+            return allOkSch(r) && sch.parityMismatches() == 0 ? EXIT_OK : EXIT_VALIDATION_ERR;
           } else {
-            boolean ok = sch.validatePaths(targets);
-            System.exit(ok ? EXIT_OK : EXIT_VALIDATION_ERR);
+            boolean ok = sch.validatePaths(targets, jobs, shard);
+            return ok && sch.parityMismatches() == 0 ? EXIT_OK : EXIT_VALIDATION_ERR;
           }
         }
 
         case "validate-all": {
           boolean json = hasFlag(args, "--json");
           String jsonOut = flagValue(args, "--json-out");
+          int jobs = jobsFlag(args, "validate-all");
+          int maxFailures = maxFailuresFlag(args, "validate-all");
+          SchematronValidator.Engine engine = engineFlag(args, "validate-all");
           List<Path> targets = collectNonFlagPaths(args, 1);
-          if (targets.isEmpty()) { System.err.println("validate-all: provide at least one file or directory"); System.exit(EXIT_IO_ERR); }
-          Path schemaPath = Paths.get("schema/fdml.xsd");
-          FdmlValidator v = new FdmlValidator(schemaPath);
-          Path schXsl = Paths.get("schematron/fdml-compiled.xsl");
-          SchematronValidator sch = new SchematronValidator(schXsl);
+          if (targets.isEmpty()) { System.err.println("validate-all: provide at least one file or directory"); return EXIT_IO_ERR; }
+          Shard shard = shardFlag(args, "validate-all");
+          ResultCache cache = ResultCache.fromFlags(hasFlag(args, "--cache"), flagValue(args, "--cache-dir"),
+              "validate-all engine=" + engine + " max-failures=" + maxFailures, engine);
+          EngineContext ctx = EngineContext.shared();
+          FdmlValidator v = ctx.xsdValidator();
+          SchematronValidator sch = ctx.schematronValidator().withMaxFailures(maxFailures).withEngine(engine);
+          if (hasFlag(args, "--ndjson")) {
+            boolean[] ok = {true};
+            DoctorStages.Stages st = DoctorStages.stages(v, sch, false, cache);
+            try (Ndjson out = Ndjson.open(jsonOut)) {
+              Ndjson.documents(targets, shard, jobs, ctx.xpaths(), st::check, (f, r) -> {
+                ok[0] &= (r.xsd == null || r.xsd.ok) && (r.schematron == null || r.schematron.ok);
+                out.line(sb -> MainJson.validateAllFile(sb, f, r));
+              });
+            }
+            if (cache != null) cache.report("validate-all");
+            return ok[0] && sch.parityMismatches() == 0 ? EXIT_OK : EXIT_VALIDATION_ERR;
+          }
+          // One parse per file: the XSD pass builds the tree that Schematron then runs on.
+          List<ParsedDocument> docs = ParsedDocument.load(ctx.xpaths(), targets, shard);
+          DoctorStages stages = DoctorStages.validateAll(docs, v, sch, jobs, cache);
+          if (cache != null) cache.report("validate-all");
+          var r1 = stages.xsd;
+          var r2 = stages.schematron;
           if (json || jsonOut != null) {
-            var r1 = v.validateCollect(targets);
-            var r2 = sch.validateCollect(targets);
-            String payload = toJsonValidateAll(r1, r2);
+            String payload = MainJson.withShard(MainJson.toJsonValidateAll(r1, r2), shard);
             System.out.println(payload);
             if (jsonOut != null) Files.writeString(Paths.get(jsonOut), payload, StandardCharsets.UTF_8);
-            System.exit(allOk(r1) && allOkSch(r2) ? EXIT_OK : EXIT_VALIDATION_ERR);
+            return allOk(r1) && allOkSch(r2) && sch.parityMismatches() == 0 ? EXIT_OK : EXIT_VALIDATION_ERR;
           } else {
-            boolean ok1 = v.validatePaths(targets);
-            boolean ok2 = sch.validatePaths(targets);
-            System.exit(ok1 && ok2 ? EXIT_OK : EXIT_VALIDATION_ERR);
+            v.printResults(r1);
+            sch.printResults(r2);
+            return allOk(r1) && allOkSch(r2) && sch.parityMismatches() == 0 ? EXIT_OK : EXIT_VALIDATION_ERR;
           }
         }
 
@@ -84,19 +140,30 @@ public class Main {
           boolean json = hasFlag(args, "--json");
           String jsonOut = flagValue(args, "--json-out");
           List<Path> targets = collectNonFlagPaths(args, 1);
-          if (targets.isEmpty()) { System.err.println("validate-geo: provide at least one file or directory"); System.exit(EXIT_IO_ERR); }
+          if (targets.isEmpty()) { System.err.println("validate-geo: provide at least one file or directory"); return EXIT_IO_ERR; }
+          Shard shard = shardFlag(args, "validate-geo");
+          if (hasFlag(args, "--ndjson")) {
+            boolean[] ok = {true};
+            try (Ndjson out = Ndjson.open(jsonOut)) {
+              Ndjson.documents(targets, shard, 1, EngineContext.shared().xpaths(), GeometryValidator::validateDoc, (f, r) -> {
+                ok[0] &= r.ok;
+                out.line(sb -> MainJson.geometry(sb, r));
+              });
+            }
+            return ok[0] ? EXIT_OK : EXIT_VALIDATION_ERR;
+          }
 
-          var rs = GeometryValidator.validateCollect(targets);
+          var rs = GeometryValidator.validateCollect(targets, shard);
           if (json || jsonOut != null) {
-            String payload = MainJson.toJsonValidateGeo(rs);
+            String payload = MainJson.withShard(MainJson.toJsonValidateGeo(rs), shard);
             System.out.println(payload);
             if (jsonOut != null) Files.writeString(Paths.get(jsonOut), payload, StandardCharsets.UTF_8);
           } else {
-            boolean ok = GeometryValidator.validatePaths(targets);
-            if (!ok) System.exit(EXIT_VALIDATION_ERR);
+            boolean ok = GeometryValidator.validatePaths(targets, shard);
+            if (!ok) return EXIT_VALIDATION_ERR;
           }
           boolean allOk = true; for (var r : rs) if (!r.ok) { allOk = false; break; }
-          System.exit(allOk ? EXIT_OK : EXIT_VALIDATION_ERR);
+          return allOk ? EXIT_OK : EXIT_VALIDATION_ERR;
         }
 
         case "render": {
@@ -106,11 +173,11 @@ public class Main {
             if ("--out".equals(args[i]) && i + 1 < args.length) out = Paths.get(args[++i]);
             else rest.add(args[i]);
           }
-          if (rest.isEmpty()) { System.err.println("render: provide <fdml-file> [--out path]"); System.exit(EXIT_IO_ERR); }
+          if (rest.isEmpty()) { System.err.println("render: provide <fdml-file> [--out path]"); return EXIT_IO_ERR; }
           Path in  = Paths.get(rest.get(0));
           Path xsl = Paths.get("xslt/fdml-to-card.xsl");
           Renderer.render(in, xsl, out);
-          System.exit(EXIT_OK);
+          return EXIT_OK;
         }
 
         case "export-pdf": {
@@ -120,40 +187,86 @@ public class Main {
             if ("--out".equals(args[i]) && i + 1 < args.length) out = Paths.get(args[++i]);
             else rest.add(args[i]);
           }
-          if (rest.isEmpty()) { System.err.println("export-pdf: provide <fdml-file> [--out out.pdf]"); System.exit(EXIT_IO_ERR); }
+          if (rest.isEmpty()) { System.err.println("export-pdf: provide <fdml-file> [--out out.pdf]"); return EXIT_IO_ERR; }
           Path in  = Paths.get(rest.get(0));
           Path xsl = Paths.get("xslt/fdml-to-xhtml.xsl");
           Path examplesDir = Paths.get("docs/examples");
           PdfExporter.export(in, xsl, examplesDir, out);
-          System.exit(EXIT_OK);
+          return EXIT_OK;
         }
 
         case "index": {
           List<String> rest = new ArrayList<>();
           Path out = Paths.get("out/index.json");
+          String ndjsonOut = null;
+          boolean ndjson = false;
+          int jobs = 1;
+          boolean incremental = false;
+          boolean search = false;
           for (int i = 1; i < args.length; i++) {
-            if ("--out".equals(args[i]) && i + 1 < args.length) out = Paths.get(args[++i]);
+            if ("--out".equals(args[i]) && i + 1 < args.length) { out = Paths.get(args[++i]); ndjsonOut = args[i]; }
+            else if ("--ndjson".equals(args[i])) ndjson = true;
+            else if ("--jobs".equals(args[i]) && i + 1 < args.length) jobs = Parallel.parseJobs(args[++i]);
+            else if ("--incremental".equals(args[i])) incremental = true;
+            else if ("--search".equals(args[i])) search = true;
             else rest.add(args[i]);
           }
-          if (rest.isEmpty()) { System.err.println("index: provide <file-or-dir> [more...] [--out path]"); System.exit(EXIT_IO_ERR); }
+          if (rest.isEmpty() || jobs < 1 || (ndjson && incremental) || (search && (ndjson || incremental))) {
+            System.err.println("index: provide <file-or-dir> [more...] [--out path] [--jobs N|auto] [--search | --incremental | --ndjson]");
+            return EXIT_IO_ERR;
+          }
           List<Path> targets = new ArrayList<>();
           for (String r : rest) targets.add(Paths.get(r));
-          String payload = Indexer.buildIndex(targets);
-          System.out.println(payload);
+          if (ndjson) {
+            try (Ndjson lines = Ndjson.open(ndjsonOut)) {
+              Ndjson.entries(targets, jobs, Indexer::item, lines::line);
+            }
+            return EXIT_OK;
+          }
+          if (incremental) {
+            IncrementalIndex.Stats st = IncrementalIndex.write(targets, jobs, out, System.out::print);
+            System.out.println();
+            System.err.printf("index: %d extracted, %d unchanged, %d dropped (%s)%n",
+                st.extracted, st.unchanged, st.dropped, IncrementalIndex.sidecar(out));
+            return EXIT_OK;
+          }
           try { Files.createDirectories(out.getParent()); } catch (Exception ignored) {}
-          Files.writeString(out, payload, StandardCharsets.UTF_8);
-          System.exit(EXIT_OK);
+          SearchIndex.Builder words = search ? new SearchIndex.Builder() : null;
+          // Streamed to a sibling and moved into place, so a failed run leaves the old index whole.
+          Path tmp = out.resolveSibling(out.getFileName() + ".tmp");
+          try {
+            try (Writer file = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+              Indexer.writeIndex(targets, jobs, chunk -> {
+                System.out.print(chunk);
+                try { file.write(chunk); } catch (IOException e) { throw new UncheckedIOException(e); }
+              }, words);
+            }
+            Files.move(tmp, out, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+          } finally {
+            Files.deleteIfExists(tmp);
+          }
+          System.out.println();
+          if (words != null) words.write(SearchIndex.besides(out));
+          return EXIT_OK;
         }
 
         case "export-json": {
           List<String> rest = new ArrayList<>();
           Path out = null;
+          boolean ndjson = false;
           for (int i = 1; i < args.length; i++) {
             if ("--out".equals(args[i]) && i + 1 < args.length) out = Paths.get(args[++i]);
+            else if ("--ndjson".equals(args[i])) ndjson = true;
             else rest.add(args[i]);
           }
-          if (rest.size() != 1) { System.err.println("export-json: provide exactly one <file-or-dir> [--out out.json]"); System.exit(EXIT_IO_ERR); }
+          if (rest.size() != 1) { System.err.println("export-json: provide exactly one <file-or-dir> [--out out.json]"); return EXIT_IO_ERR; }
           Path target = Paths.get(rest.get(0));
+          if (ndjson) {
+            try (Ndjson lines = Ndjson.open(out != null ? out.toString() : null)) {
+              ExportJson.exportEach(target, lines::line);
+            }
+            return EXIT_OK;
+          }
           String payload = ExportJson.export(target);
           System.out.println(payload);
           if (out != null) {
@@ -163,7 +276,7 @@ public class Main {
             } catch (Exception ignored) {}
             Files.writeString(out, payload, StandardCharsets.UTF_8);
           }
-          System.exit(EXIT_OK);
+          return EXIT_OK;
         }
 
         case "lint": {
@@ -171,10 +284,21 @@ public class Main {
           String jsonOut = flagValue(args, "--json-out");
           boolean strict = hasFlag(args, "--strict");
           List<Path> targets = collectNonFlagPaths(args, 1);
-          if (targets.isEmpty()) { System.err.println("lint: provide at least one file or directory"); System.exit(EXIT_IO_ERR); }
-          var rs = Linter.lintCollect(targets);
+          if (targets.isEmpty()) { System.err.println("lint: provide at least one file or directory"); return EXIT_IO_ERR; }
+          Shard shard = shardFlag(args, "lint");
+          if (hasFlag(args, "--ndjson")) {
+            boolean[] anyWarn = {false};
+            try (Ndjson out = Ndjson.open(jsonOut)) {
+              Ndjson.documents(targets, shard, 1, EngineContext.shared().xpaths(), Linter::lintDoc, (f, r) -> {
+                anyWarn[0] |= !r.ok();
+                out.line(sb -> MainJson.lint(sb, r));
+              });
+            }
+            return strict && anyWarn[0] ? EXIT_VALIDATION_ERR : EXIT_OK;
+          }
+          var rs = Linter.lintCollect(targets, shard);
           if (json || jsonOut != null) {
-            String payload = toJsonLint(rs);
+            String payload = MainJson.withShard(MainJson.toJsonLint(rs), shard);
             System.out.println(payload);
             if (jsonOut != null) Files.writeString(Paths.get(jsonOut), payload, StandardCharsets.UTF_8);
           } else {
@@ -193,21 +317,28 @@ public class Main {
             }
           }
           boolean anyWarn = false; for (var r : rs) if (!r.ok()) { anyWarn = true; break; }
-          if (strict && anyWarn) System.exit(EXIT_VALIDATION_ERR);
-          System.exit(EXIT_OK);
+          if (strict && anyWarn) return EXIT_VALIDATION_ERR;
+          return EXIT_OK;
         }
 
-        case "init": { Init.run(args); System.exit(EXIT_OK); }
-        case "ingest": { int code = Ingest.run(args); System.exit(code); }
-        case "ingest-batch": { int code = Ingest.runBatch(args); System.exit(code); }
-        case "ingest-promote": { int code = IngestPromote.run(args); System.exit(code); }
-        case "doctor": { int code = Doctor.run(args); System.exit(code); }
+        case "init": return Init.run(args);
+        case "ingest": return Ingest.run(args);
+        case "ingest-batch": return Ingest.runBatch(args);
+        case "ingest-promote": return IngestPromote.run(args);
+        case "doctor": return Doctor.run(args);
+        case "merge-results": return MergeResults.run(args);
+        case "batch": return Batch.run(args);
+        case "search": return Search.run(args);
+        case "serve": return Serve.run(args);
+        case "daemon": return Daemon.run(args);
 
-        default: { usage(); System.exit(EXIT_IO_ERR); }
+        default: { usage(); return EXIT_IO_ERR; }
       }
+    } catch (UsageError e) {
+      return EXIT_IO_ERR;
     } catch (Exception e) {
       e.printStackTrace();
-      System.exit(EXIT_IO_ERR);
+      return EXIT_IO_ERR;
     }
   }
 
@@ -215,20 +346,62 @@ public class Main {
     for (String a : args) if (flag.equals(a)) return true;
     return false;
   }
+  private static Shard shardFlag(String[] args, String cmd) {
+    String raw = flagValue(args, "--shard");
+    if (raw == null) return null;
+    Shard shard = Shard.parse(raw);
+    if (shard == null) {
+      System.err.println(cmd + ": --shard expects i/n with 1 <= i <= n");
+      throw new UsageError();
+    }
+    return shard;
+  }
+
   private static String flagValue(String[] args, String flag) {
     for (int i = 0; i < args.length - 1; i++) if (flag.equals(args[i])) return args[i+1];
     return null;
   }
+  private static int jobsFlag(String[] args, String cmd) {
+    int jobs = Parallel.parseJobs(flagValue(args, "--jobs"));
+    if (jobs < 1) {
+      System.err.println(cmd + ": --jobs expects a positive integer or 'auto'");
+      throw new UsageError();
+    }
+    return jobs;
+  }
+  private static SchematronValidator.Engine engineFlag(String[] args, String cmd) {
+    SchematronValidator.Engine e = SchematronValidator.Engine.parse(flagValue(args, "--engine"));
+    if (e == null) {
+      System.err.println(cmd + ": --engine expects xslt, java or parity");
+      throw new UsageError();
+    }
+    return e;
+  }
+  private static int maxFailuresFlag(String[] args, String cmd) {
+    String raw = flagValue(args, "--max-failures");
+    if (raw == null) return 0;
+    try {
+      int n = Integer.parseInt(raw.trim());
+      if (n > 0) return n;
+    } catch (NumberFormatException ignored) {}
+    System.err.println(cmd + ": --max-failures expects a positive integer");
+    throw new UsageError();
+  }
   private static List<Path> collectNonFlagPaths(String[] args, int from) {
     List<Path> t = new ArrayList<>();
     for (int i = from; i < args.length; i++) {
       String a = args[i];
-      if (a.startsWith("--")) { if ("--out".equals(a) || "--json-out".equals(a)) i++; continue; }
+      if (a.startsWith("--")) { if ("--out".equals(a) || "--json-out".equals(a) || "--jobs".equals(a) || "--max-failures".equals(a) || "--engine".equals(a) || "--cache-dir".equals(a) || "--shard".equals(a)) i++; continue; }
       t.add(Paths.get(a));
     }
     return t;
   }
 
+  /** A bad flag value, already reported on stderr. */
+  private static final class UsageError extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+  }
+
   // ---- helpers restored ----
   private static boolean allOk(java.util.List<FdmlValidator.Result> xs) {
     for (var r : xs) if (!r.ok) return false; return true;
@@ -236,117 +409,27 @@ public class Main {
   private static boolean allOkSch(java.util.List<SchematronValidator.Result> xs) {
     for (var r : xs) if (!r.ok) return false; return true;
   }
-  private static String esc(String s) {
-    if (s == null) return null;
-    return s.replace("\\","\\\\").replace("\"","\\\"").replace("\n","\\n").replace("\r","");
-  }
-  private static String toJsonValidate(java.util.List<FdmlValidator.Result> rs) {
-    StringBuilder sb = new StringBuilder();
-    sb.append("{\"command\":\"validate\",\"results\":[");
-    for (int i=0;i<rs.size();i++) {
-      var r = rs.get(i);
-      sb.append("{\"file\":\"").append(esc(r.file.toString())).append("\",\"ok\":").append(r.ok);
-      if (!r.ok) {
-        if (r.message != null) sb.append(",\"error\":\"").append(esc(r.message)).append("\"");
-        if (r.line != null) sb.append(",\"line\":").append(r.line);
-        if (r.column != null) sb.append(",\"column\":").append(r.column);
-      }
-      sb.append("}");
-      if (i < rs.size()-1) sb.append(",");
-    }
-    sb.append("]}");
-    return sb.toString();
-  }
-  private static String toJsonValidateSch(java.util.List<SchematronValidator.Result> rs) {
-    StringBuilder sb = new StringBuilder();
-    sb.append("{\"command\":\"validate-sch\",\"results\":[");
-    for (int i=0;i<rs.size();i++) {
-      var r = rs.get(i);
-      sb.append("{\"file\":\"").append(esc(r.file.toString())).append("\",\"ok\":").append(r.ok)
-        .append(",\"failures\":").append(r.failures).append(",\"messages\":[");
-      for (int j=0;j<r.messages.size();j++) {
-        sb.append("\"").append(esc(r.messages.get(j))).append("\"");
-        if (j<r.messages.size()-1) sb.append(",");
-      }
-      sb.append("]}");
-      if (i < rs.size()-1) sb.append(",");
-    }
-    sb.append("]}");
-    return sb.toString();
-  }
-  private static String toJsonValidateAll(java.util.List<FdmlValidator.Result> r1,
-                                          java.util.List<SchematronValidator.Result> r2) {
-    StringBuilder sb = new StringBuilder();
-    sb.append("{\"command\":\"validate-all\",\"xsd\":");
-    StringBuilder sb1 = new StringBuilder(); sb1.append("[");
-    for (int i=0;i<r1.size();i++) {
-      var r = r1.get(i);
-      sb1.append("{\"file\":\"").append(esc(r.file.toString())).append("\",\"ok\":").append(r.ok);
-      if (!r.ok) {
-        if (r.message != null) sb1.append(",\"error\":\"").append(esc(r.message)).append("\"");
-        if (r.line != null) sb1.append(",\"line\":").append(r.line);
-        if (r.column != null) sb1.append(",\"column\":").append(r.column);
-      }
-      sb1.append("}");
-      if (i < r1.size()-1) sb1.append(",");
-    }
-    sb1.append("]");
-    sb.append(sb1).append(",\"schematron\":");
-    StringBuilder sb2 = new StringBuilder(); sb2.append("[");
-    for (int i=0;i<r2.size();i++) {
-      var r = r2.get(i);
-      sb2.append("{\"file\":\"").append(esc(r.file.toString())).append("\",\"ok\":").append(r.ok)
-         .append(",\"failures\":").append(r.failures).append(",\"messages\":[");
-      for (int j=0;j<r.messages.size();j++) {
-        sb2.append("\"").append(esc(r.messages.get(j))).append("\"");
-        if (j<r.messages.size()-1) sb2.append(",");
-      }
-      sb2.append("]}");
-      if (i < r2.size()-1) sb2.append(",");
-    }
-    sb2.append("]");
-    sb.append(sb2).append("}");
-    return sb.toString();
-  }
-  private static String toJsonLint(java.util.List<Linter.FileResult> rs) {
-    StringBuilder sb = new StringBuilder();
-    sb.append("{\"command\":\"lint\",\"results\":[");
-    for (int i=0;i<rs.size();i++) {
-      var r = rs.get(i);
-      sb.append("{\"file\":\"").append(esc(r.file.toString())).append("\",\"ok\":").append(r.ok()).append(",\"warnings\":[");
-      for (int j=0;j<r.warnings.size();j++) {
-        var w = r.warnings.get(j);
-        sb.append("{\"code\":\"").append(esc(w.code)).append("\"");
-        if (w.figureId != null) sb.append(",\"figure\":\"").append(esc(w.figureId)).append("\"");
-        if (w.meter != null) sb.append(",\"meter\":\"").append(esc(w.meter)).append("\"");
-        if (w.bars != null) sb.append(",\"bars\":\"").append(esc(w.bars)).append("\"");
-        if (w.message != null) sb.append(",\"message\":\"").append(esc(w.message)).append("\"");
-        sb.append(",\"beats\":").append(w.beats).append("}");
-        if (j<r.warnings.size()-1) sb.append(",");
-      }
-      sb.append("]}");
-      if (i<rs.size()-1) sb.append(",");
-    }
-    sb.append("]}");
-    return sb.toString();
-  }
-
   private static void usage() {
     System.out.println("FDML CLI");
     System.out.println("Usage:");
-    System.out.println("  validate <path> [...] [--json] [--json-out file]");
-    System.out.println("  validate-sch <path> [...] [--json] [--json-out file]");
-    System.out.println("  validate-all <path> [...] [--json] [--json-out file]");
-    System.out.println("  validate-geo <path> [...] [--json] [--json-out file]");
+    System.out.println("  validate <path> [...] [--json|--ndjson] [--json-out file] [--jobs N|auto] [--shard i/n]");
+    System.out.println("  validate-sch <path> [...] [--json|--ndjson] [--json-out file] [--jobs N|auto] [--max-failures N] [--engine xslt|java|parity] [--shard i/n]");
+    System.out.println("  validate-all <path> [...] [--json|--ndjson] [--json-out file] [--jobs N|auto] [--max-failures N] [--engine xslt|java|parity] [--cache] [--cache-dir DIR] [--shard i/n]");
+    System.out.println("  validate-geo <path> [...] [--json|--ndjson] [--json-out file] [--shard i/n]");
     System.out.println("  render <fdml-file> [--out out.html]");
     System.out.println("  export-pdf <fdml-file> [--out out.pdf]");
-    System.out.println("  index  <path> [...] [--out out.json]");
-    System.out.println("  export-json <file-or-dir> [--out out.json]");
-    System.out.println("  lint   <path> [...] [--json] [--json-out file] [--strict]");
+    System.out.println("  index  <path> [...] [--out out.json] [--jobs N|auto] [--search | --incremental | --ndjson]");
+    System.out.println("  search \"query\" [--index out/search.idx] [--top N] [--json]");
+    System.out.println("  export-json <file-or-dir> [--out out.json] [--ndjson]");
+    System.out.println("  lint   <path> [...] [--json|--ndjson] [--json-out file] [--strict] [--shard i/n]");
     System.out.println("  init   <output-file> [--title T] [--dance D] [--meter M/N] [--tempo BPM] [--figure-id f-...] [--figure-name NAME] [--formation FORM] [--profile v1-basic|v12-circle|v12-line|v12-twoLinesFacing|v12-couple]");
     System.out.println("  ingest --source <path.txt> --out <out.fdml.xml> [--title T] [--meter M] [--tempo BPM] [--profile v1-basic|v12-circle|v12-line|v12-twoLinesFacing|v12-couple] [--provenance-out file.json] [--enable-enrichment] [--env-file .env] [--enrichment-report file.json]");
     System.out.println("  ingest-batch --source-dir <dir> --out-dir <dir> [--title-prefix T] [--meter M] [--tempo BPM] [--profile v1-basic|v12-circle|v12-line|v12-twoLinesFacing|v12-couple] [--enable-enrichment] [--env-file .env] [--index-out out.json]");
     System.out.println("  ingest-promote --index <ingest-batch-index.json> --dest <dir> [--quarantine-dir <dir>] [--quarantine-out quarantine.json]");
-    System.out.println("  doctor <path> [...] [--json] [--strict] [--explain]");
+    System.out.println("  doctor <path> [...] [--json|--ndjson] [--strict] [--explain] [--engine xslt|java|parity] [--jobs N|auto] [--cache] [--cache-dir DIR] [--watch] [--profile] [--profile-top N] [--shard i/n]");
+    System.out.println("  merge-results <shard.json> [...] [--out file]");
+    System.out.println("  batch  [--jobs N|auto] [--out file] < jobs.ndjson");
+    System.out.println("  serve  [--host 127.0.0.1] [--port 7878] [--threads N|auto]");
+    System.out.println("  daemon [--socket target/fdml.sock] [--stop]");
   }
 }
@@ -1,81 +1,280 @@
 package org.fdml.cli;
 
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * JSON payloads for the {@code --json} commands, built from per-record writers so the
+ * {@code --ndjson} mode (one record per line, see {@link Ndjson}) emits exactly the objects that
+ * sit in the full payload's arrays.
+ */
 class MainJson {
   static String esc(String s){ if(s==null)return null; return s.replace("\\","\\\\").replace("\"","\\\"").replace("\n","\\n").replace("\r",""); }
 
-  static String toJsonValidateGeo(java.util.List<GeometryValidator.Result> rs) {
+  static String toJsonValidate(List<FdmlValidator.Result> rs) {
     StringBuilder sb = new StringBuilder();
-    sb.append("{\"command\":\"validate-geo\",\"results\":[");
-    for (int i = 0; i < rs.size(); i++) {
-      var r = rs.get(i);
-      sb.append("{\"file\":\"").append(esc(r.file.toString())).append("\",\"ok\":").append(r.ok).append(",\"issues\":[");
-      for (int j = 0; j < r.issues.size(); j++) {
-        var is = r.issues.get(j);
-        sb.append("{\"code\":\"").append(esc(is.code)).append("\",\"message\":\"").append(esc(is.message)).append("\"}");
-        if (j < r.issues.size() - 1) sb.append(",");
-      }
-      sb.append("]}");
-      if (i < rs.size() - 1) sb.append(",");
-    }
-    sb.append("]}");
+    sb.append("{\"command\":\"validate\",\"results\":");
+    array(sb, rs, MainJson::xsd);
+    sb.append("}");
+    return sb.toString();
+  }
+
+  static String toJsonValidateSch(List<SchematronValidator.Result> rs) {
+    StringBuilder sb = new StringBuilder();
+    sb.append("{\"command\":\"validate-sch\",\"results\":");
+    array(sb, rs, MainJson::schematron);
+    sb.append("}");
+    return sb.toString();
+  }
+
+  static String toJsonValidateAll(List<FdmlValidator.Result> r1, List<SchematronValidator.Result> r2) {
+    StringBuilder sb = new StringBuilder();
+    sb.append("{\"command\":\"validate-all\",\"xsd\":");
+    array(sb, r1, MainJson::xsd);
+    sb.append(",\"schematron\":");
+    array(sb, r2, MainJson::schematron);
+    sb.append("}");
+    return sb.toString();
+  }
+
+  static String toJsonLint(List<Linter.FileResult> rs) {
+    StringBuilder sb = new StringBuilder();
+    sb.append("{\"command\":\"lint\",\"results\":");
+    array(sb, rs, MainJson::lint);
+    sb.append("}");
     return sb.toString();
   }
 
-  static String toJsonDoctor(java.util.List<FdmlValidator.Result> rX,
-                             java.util.List<SchematronValidator.Result> rS,
-                             java.util.List<Linter.FileResult> rL,
-                             java.util.List<TimingValidator.FileResult> rT,
+  static String toJsonValidateGeo(List<GeometryValidator.Result> rs) {
+    StringBuilder sb = new StringBuilder();
+    sb.append("{\"command\":\"validate-geo\",\"results\":");
+    array(sb, rs, MainJson::geometry);
+    sb.append("}");
+    return sb.toString();
+  }
+
+  static String toJsonDoctor(List<FdmlValidator.Result> rX,
+                             List<SchematronValidator.Result> rS,
+                             List<Linter.FileResult> rL,
+                             List<TimingValidator.FileResult> rT,
                              java.util.Map<String, String> explain){
+    return toJsonDoctor(rX, rS, rL, rT, explain, null, 0);
+  }
+
+  /** With a profile, adds its {@code "profile"} object listing the {@code top} slowest files. */
+  static String toJsonDoctor(List<FdmlValidator.Result> rX,
+                             List<SchematronValidator.Result> rS,
+                             List<Linter.FileResult> rL,
+                             List<TimingValidator.FileResult> rT,
+                             java.util.Map<String, String> explain,
+                             DoctorProfile profile, int top){
     StringBuilder sb=new StringBuilder();
-    sb.append("{\"command\":\"doctor\",\"xsd\":[");
-    for(int i=0;i<rX.size();i++){ var r=rX.get(i);
-      sb.append("{\"file\":\"").append(esc(r.file.toString())).append("\",\"ok\":").append(r.ok);
-      if(!r.ok && r.message!=null) sb.append(",\"error\":\"").append(esc(r.message)).append("\"");
-      sb.append("}"); if(i<rX.size()-1) sb.append(",");
+    sb.append("{\"command\":\"doctor\",\"xsd\":");
+    array(sb, rX, (b, r) -> object(b, r.file, () -> xsdFields(b, r, false)));
+    sb.append(",\"schematron\":");
+    array(sb, rS, (b, r) -> object(b, r.file, () -> schematronFields(b, r, false)));
+    sb.append(",\"lint\":");
+    array(sb, rL, (b, r) -> object(b, r.file, () -> lintFields(b, r, true)));
+    sb.append(",\"timing\":");
+    array(sb, rT, (b, r) -> object(b, r.file, () -> timingFields(b, r)));
+    if (explain != null) {
+      sb.append(",");
+      explainField(sb, explain);
     }
-    sb.append("],\"schematron\":[");
-    for(int i=0;i<rS.size();i++){ var r=rS.get(i);
-      sb.append("{\"file\":\"").append(esc(r.file.toString())).append("\",\"ok\":").append(r.ok)
-        .append(",\"failures\":").append(r.failures).append(",\"messages\":[");
-      for(int j=0;j<r.messages.size();j++){ sb.append("\"").append(esc(r.messages.get(j))).append("\""); if(j<r.messages.size()-1) sb.append(","); }
-      sb.append("]}"); if(i<rS.size()-1) sb.append(",");
+    if (profile != null) {
+      sb.append(",");
+      profileField(sb, profile, top);
     }
-    sb.append("],\"lint\":[");
-    for(int i=0;i<rL.size();i++){ var fr=rL.get(i);
-      sb.append("{\"file\":\"").append(esc(fr.file.toString())).append("\",\"ok\":").append(fr.ok()).append(",\"warnings\":[");
-      for(int j=0;j<fr.warnings.size();j++){ var w=fr.warnings.get(j);
-        sb.append("{\"code\":\"").append(esc(w.code)).append("\",\"beats\":").append(w.beats);
-        if(w.figureId!=null) sb.append(",\"figure\":\"").append(esc(w.figureId)).append("\"");
-        if(w.meter!=null) sb.append(",\"meter\":\"").append(esc(w.meter)).append("\"");
-        if(w.bars!=null) sb.append(",\"bars\":\"").append(esc(w.bars)).append("\"");
-        if(w.message!=null) sb.append(",\"message\":\"").append(esc(w.message)).append("\"");
-        sb.append("}"); if(j<fr.warnings.size()-1) sb.append(",");
-      }
-      sb.append("]}"); if(i<rL.size()-1) sb.append(",");
+    sb.append("}");
+    return sb.toString();
+  }
+
+  /**
+   * A shard's report: the payload with a trailing {@code "shard"} object giving each of the shard's
+   * files its position in the unsharded order, for {@link MergeResults}. Unchanged when not sharded.
+   */
+  static String withShard(String payload, Shard shard) {
+    if (shard == null) return payload;
+    StringBuilder sb = new StringBuilder(payload.length() + 64 * shard.positions.size());
+    sb.append(payload, 0, payload.length() - 1);
+    sb.append(",\"shard\":{\"index\":").append(shard.index).append(",\"count\":").append(shard.count).append(",\"files\":{");
+    int i = 0;
+    for (var e : shard.positions.entrySet()) {
+      if (i++ > 0) sb.append(",");
+      sb.append("\"").append(esc(e.getKey())).append("\":").append(e.getValue());
+    }
+    sb.append("}}}");
+    return sb.toString();
+  }
+
+  // ---- one record per file ----
+
+  static void xsd(StringBuilder sb, FdmlValidator.Result r) {
+    object(sb, r.file, () -> xsdFields(sb, r, true));
+  }
+
+  static void schematron(StringBuilder sb, SchematronValidator.Result r) {
+    object(sb, r.file, () -> schematronFields(sb, r, true));
+  }
+
+  static void lint(StringBuilder sb, Linter.FileResult r) {
+    object(sb, r.file, () -> lintFields(sb, r, false));
+  }
+
+  static void geometry(StringBuilder sb, GeometryValidator.Result r) {
+    object(sb, r.file, () -> geometryFields(sb, r));
+  }
+
+  /** A file's doctor record: one nested object per stage that checked it, as in the doctor payload. */
+  static void doctorFile(StringBuilder sb, Path file, ResultCache.Record r) {
+    sb.append("{\"file\":\"").append(esc(file.toString())).append("\"");
+    if (r.xsd != null) { sb.append(",\"xsd\":{"); xsdFields(sb, r.xsd, false); sb.append("}"); }
+    if (r.schematron != null) { sb.append(",\"schematron\":{"); schematronFields(sb, r.schematron, false); sb.append("}"); }
+    if (r.lint != null) { sb.append(",\"lint\":{"); lintFields(sb, r.lint, true); sb.append("}"); }
+    if (r.timing != null) { sb.append(",\"timing\":{"); timingFields(sb, r.timing); sb.append("}"); }
+    if (r.geometry != null) { sb.append(",\"geometry\":{"); geometryFields(sb, r.geometry); sb.append("}"); }
+    sb.append("}");
+  }
+
+  /** A file's validate-all record: its xsd and schematron objects, as in the validate-all payload. */
+  static void validateAllFile(StringBuilder sb, Path file, ResultCache.Record r) {
+    sb.append("{\"file\":\"").append(esc(file.toString())).append("\"");
+    if (r.xsd != null) { sb.append(",\"xsd\":{"); xsdFields(sb, r.xsd, true); sb.append("}"); }
+    if (r.schematron != null) { sb.append(",\"schematron\":{"); schematronFields(sb, r.schematron, true); sb.append("}"); }
+    sb.append("}");
+  }
+
+  static void explainField(StringBuilder sb, java.util.Map<String, String> explain) {
+    sb.append("\"explain\":{");
+    int i = 0;
+    for (var e : explain.entrySet()) {
+      if (i++ > 0) sb.append(",");
+      sb.append("\"").append(esc(e.getKey())).append("\":\"").append(esc(e.getValue())).append("\"");
     }
-    sb.append("],\"timing\":[");
-    for(int i=0;i<rT.size();i++){ var tr=rT.get(i);
-      sb.append("{\"file\":\"").append(esc(tr.file.toString())).append("\",\"ok\":").append(tr.ok()).append(",\"issues\":[");
-      for(int j=0;j<tr.issues.size();j++){ var is=tr.issues.get(j);
-        sb.append("{\"code\":\"").append(esc(is.code)).append("\",\"beats\":").append(is.beats);
-        if(is.figureId!=null) sb.append(",\"figure\":\"").append(esc(is.figureId)).append("\"");
-        if(is.meter!=null) sb.append(",\"meter\":\"").append(esc(is.meter)).append("\"");
-        if(is.message!=null) sb.append(",\"message\":\"").append(esc(is.message)).append("\"");
-        sb.append("}"); if(j<tr.issues.size()-1) sb.append(",");
+    sb.append("}");
+  }
+
+  /** Times in ms (3 decimals), allocation in bytes; null where the JVM could not measure. */
+  static void profileField(StringBuilder sb, DoctorProfile profile, int top) {
+    sb.append("\"profile\":{\"files\":").append(profile.fileCount()).append(",\"stages\":{");
+    int i = 0;
+    for (DoctorProfile.StageStats st : profile.stages()) {
+      if (i++ > 0) sb.append(",");
+      sb.append("\"").append(st.stage.label()).append("\":{\"count\":").append(st.count);
+      distribution(sb, "wallMs", st.values[0], true);
+      distribution(sb, "cpuMs", st.values[1], true);
+      distribution(sb, "allocBytes", st.values[2], false);
+      sb.append("}");
+    }
+    sb.append("},\"slowest\":");
+    array(sb, profile.slowest(top), (b, c) -> {
+      b.append("{\"file\":\"").append(esc(c.file.toString())).append("\",\"wallMs\":").append(ms(c.wallNs)).append(",\"stages\":{");
+      int j = 0;
+      for (DoctorProfile.Stage st : DoctorProfile.Stage.values()) {
+        long ns = c.stageWallNs[st.ordinal()];
+        if (ns < 0) continue;
+        if (j++ > 0) b.append(",");
+        b.append("\"").append(st.label()).append("\":").append(ms(ns));
       }
-      sb.append("]}"); if(i<rT.size()-1) sb.append(",");
+      b.append("}}");
+    });
+    sb.append("}");
+  }
+
+  private static void distribution(StringBuilder sb, String name, long[] v, boolean nanos) {
+    String[] keys = {"p50", "p95", "max", "total"};
+    sb.append(",\"").append(name).append("\":{");
+    for (int k = 0; k < keys.length; k++) {
+      if (k > 0) sb.append(",");
+      sb.append("\"").append(keys[k]).append("\":");
+      if (v[k] < 0) sb.append("null");
+      else sb.append(nanos ? ms(v[k]) : Long.toString(v[k]));
+    }
+    sb.append("}");
+  }
+
+  private static String ms(long nanos) {
+    return String.format(java.util.Locale.ROOT, "%.3f", nanos / 1e6);
+  }
+
+  // ---- fields after "file" ----
+
+  /** {@code positions} adds line/column, as validate and validate-all report them. */
+  private static void xsdFields(StringBuilder sb, FdmlValidator.Result r, boolean positions) {
+    sb.append("\"ok\":").append(r.ok);
+    if (!r.ok) {
+      if (r.message != null) sb.append(",\"error\":\"").append(esc(r.message)).append("\"");
+      if (positions && r.line != null) sb.append(",\"line\":").append(r.line);
+      if (positions && r.column != null) sb.append(",\"column\":").append(r.column);
+    }
+  }
+
+  private static void schematronFields(StringBuilder sb, SchematronValidator.Result r, boolean truncation) {
+    sb.append("\"ok\":").append(r.ok).append(",\"failures\":").append(r.failures);
+    if (truncation && r.truncated) sb.append(",\"truncated\":true");
+    sb.append(",\"messages\":[");
+    for (int j = 0; j < r.messages.size(); j++) {
+      sb.append("\"").append(esc(r.messages.get(j))).append("\"");
+      if (j < r.messages.size() - 1) sb.append(",");
     }
     sb.append("]");
-    if (explain != null) {
-      sb.append(",\"explain\":{");
-      int i = 0;
-      for (var e : explain.entrySet()) {
-        if (i++ > 0) sb.append(",");
-        sb.append("\"").append(esc(e.getKey())).append("\":\"").append(esc(e.getValue())).append("\"");
-      }
+  }
+
+  /** Doctor writes each warning's beats right after its code; lint writes them last. */
+  private static void lintFields(StringBuilder sb, Linter.FileResult fr, boolean beatsFirst) {
+    sb.append("\"ok\":").append(fr.ok()).append(",\"warnings\":[");
+    for (int j = 0; j < fr.warnings.size(); j++) {
+      var w = fr.warnings.get(j);
+      sb.append("{\"code\":\"").append(esc(w.code)).append("\"");
+      if (beatsFirst) sb.append(",\"beats\":").append(w.beats);
+      if (w.figureId != null) sb.append(",\"figure\":\"").append(esc(w.figureId)).append("\"");
+      if (w.meter != null) sb.append(",\"meter\":\"").append(esc(w.meter)).append("\"");
+      if (w.bars != null) sb.append(",\"bars\":\"").append(esc(w.bars)).append("\"");
+      if (w.message != null) sb.append(",\"message\":\"").append(esc(w.message)).append("\"");
+      if (!beatsFirst) sb.append(",\"beats\":").append(w.beats);
+      sb.append("}");
+      if (j < fr.warnings.size() - 1) sb.append(",");
+    }
+    sb.append("]");
+  }
+
+  private static void timingFields(StringBuilder sb, TimingValidator.FileResult tr) {
+    sb.append("\"ok\":").append(tr.ok()).append(",\"issues\":[");
+    for (int j = 0; j < tr.issues.size(); j++) {
+      var is = tr.issues.get(j);
+      sb.append("{\"code\":\"").append(esc(is.code)).append("\",\"beats\":").append(is.beats);
+      if (is.figureId != null) sb.append(",\"figure\":\"").append(esc(is.figureId)).append("\"");
+      if (is.meter != null) sb.append(",\"meter\":\"").append(esc(is.meter)).append("\"");
+      if (is.message != null) sb.append(",\"message\":\"").append(esc(is.message)).append("\"");
       sb.append("}");
+      if (j < tr.issues.size() - 1) sb.append(",");
     }
+    sb.append("]");
+  }
+
+  private static void geometryFields(StringBuilder sb, GeometryValidator.Result r) {
+    sb.append("\"ok\":").append(r.ok).append(",\"issues\":[");
+    for (int j = 0; j < r.issues.size(); j++) {
+      var is = r.issues.get(j);
+      sb.append("{\"code\":\"").append(esc(is.code)).append("\",\"message\":\"").append(esc(is.message)).append("\"}");
+      if (j < r.issues.size() - 1) sb.append(",");
+    }
+    sb.append("]");
+  }
+
+  private static void object(StringBuilder sb, Path file, Runnable fields) {
+    sb.append("{\"file\":\"").append(esc(file.toString())).append("\",");
+    fields.run();
     sb.append("}");
-    return sb.toString();
+  }
+
+  private static <R> void array(StringBuilder sb, List<R> rs, BiConsumer<StringBuilder, R> item) {
+    sb.append("[");
+    for (int i = 0; i < rs.size(); i++) {
+      item.accept(sb, rs.get(i));
+      if (i < rs.size() - 1) sb.append(",");
+    }
+    sb.append("]");
   }
 }
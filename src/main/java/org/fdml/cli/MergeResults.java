@@ -0,0 +1,241 @@
+package org.fdml.cli;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * {@code merge-results}: joins the {@code --json} reports of all {@code --shard i/n} runs of one
+ * command into the report a single unsharded run writes, byte for byte.
+ *
+ * Records are not re-serialized: each array element is copied as written and the elements are
+ * put back in the unsharded order from the positions in every report's {@code "shard"} object.
+ * Doctor's explain entries are unioned and sorted by code, as doctor orders them. Each shard's exit
+ * code has already reported its failures, so this exits 0 once the report is written and 4 when
+ * the reports do not form one complete set.
+ */
+final class MergeResults {
+
+  private MergeResults() {}
+
+  static int run(String[] args) {
+    List<Path> inputs = new ArrayList<>();
+    Path out = null;
+    for (int i = 1; i < args.length; i++) {
+      if ("--out".equals(args[i]) && i + 1 < args.length) out = Paths.get(args[++i]);
+      else inputs.add(Paths.get(args[i]));
+    }
+    if (inputs.isEmpty()) {
+      System.err.println("merge-results: provide <shard.json> [...] [--out file]");
+      return 4;
+    }
+    try {
+      List<String> reports = new ArrayList<>();
+      for (Path p : inputs) reports.add(Files.readString(p, StandardCharsets.UTF_8).trim());
+      String merged = merge(reports);
+      System.out.println(merged);
+      if (out != null) {
+        if (out.getParent() != null) Files.createDirectories(out.getParent());
+        Files.writeString(out, merged, StandardCharsets.UTF_8);
+      }
+      return 0;
+    } catch (IOException | IllegalArgumentException e) {
+      System.err.println("merge-results: " + e.getMessage());
+      return 4;
+    }
+  }
+
+  /** The unsharded report for one complete set of shard reports, in any order. */
+  static String merge(List<String> reports) {
+    List<List<Member>> shards = new ArrayList<>();
+    List<Map<String, Integer>> positions = new ArrayList<>();
+    boolean[] seen = null;
+    for (String r : reports) {
+      List<Member> members = members(r);
+      Member shard = find(members, "shard");
+      if (shard == null) throw new IllegalArgumentException("not a --shard report (no \"shard\" object)");
+      if (find(members, "profile") != null) throw new IllegalArgumentException("--profile reports cannot be merged");
+      Map<?, ?> info = (Map<?, ?>) JsonMini.parse(shard.raw);
+      int index = ((Number) info.get("index")).intValue();
+      int count = ((Number) info.get("count")).intValue();
+      if (seen == null) seen = new boolean[count];
+      if (count != seen.length) throw new IllegalArgumentException("reports come from different shard counts");
+      if (index < 1 || index > count || seen[index - 1]) throw new IllegalArgumentException("shard " + index + "/" + count + " given twice or out of range");
+      seen[index - 1] = true;
+
+      Map<String, Integer> pos = new HashMap<>();
+      for (Map.Entry<?, ?> e : ((Map<?, ?>) info.get("files")).entrySet()) pos.put((String) e.getKey(), ((Number) e.getValue()).intValue());
+      members.remove(shard);
+      shards.add(members);
+      positions.add(pos);
+    }
+    for (int i = 0; i < seen.length; i++) {
+      if (!seen[i]) throw new IllegalArgumentException("shard " + (i + 1) + "/" + seen.length + " is missing");
+    }
+
+    List<Member> first = shards.get(0);
+    for (List<Member> s : shards) {
+      if (!keys(s).equals(keys(first)) || !find(s, "command").raw.equals(find(first, "command").raw)) {
+        throw new IllegalArgumentException("reports come from different commands or flags");
+      }
+    }
+
+    StringBuilder sb = new StringBuilder("{");
+    for (int k = 0; k < first.size(); k++) {
+      Member m = first.get(k);
+      if (k > 0) sb.append(",");
+      sb.append(m.rawKey).append(":");
+      if (m.key.equals("command")) sb.append(m.raw);
+      else if (m.key.equals("explain")) mergeExplain(sb, shards, m.key);
+      else if (m.raw.startsWith("[")) mergeArray(sb, shards, positions, m.key);
+      else throw new IllegalArgumentException("cannot merge field \"" + m.key + "\"");
+    }
+    return sb.append("}").toString();
+  }
+
+  private static void mergeArray(StringBuilder sb, List<List<Member>> shards, List<Map<String, Integer>> positions, String key) {
+    List<long[]> order = new ArrayList<>();   // {position, shard, element}
+    List<List<String>> elements = new ArrayList<>();
+    for (int s = 0; s < shards.size(); s++) {
+      List<String> els = elements(find(shards.get(s), key).raw);
+      elements.add(els);
+      for (int e = 0; e < els.size(); e++) {
+        Object file = ((Map<?, ?>) JsonMini.parse(els.get(e))).get("file");
+        Integer p = positions.get(s).get(file);
+        if (p == null) throw new IllegalArgumentException("\"" + key + "\" lists " + file + ", which its shard does not own");
+        order.add(new long[] {p, s, e});
+      }
+    }
+    order.sort(Comparator.<long[]>comparingLong(o -> o[0]).thenComparingLong(o -> o[2]));
+    sb.append("[");
+    for (int i = 0; i < order.size(); i++) {
+      if (i > 0) sb.append(",");
+      sb.append(elements.get((int) order.get(i)[1]).get((int) order.get(i)[2]));
+    }
+    sb.append("]");
+  }
+
+  private static void mergeExplain(StringBuilder sb, List<List<Member>> shards, String key) {
+    Map<String, Member> codes = new TreeMap<>();
+    for (List<Member> s : shards) {
+      for (Member m : members(find(s, key).raw)) codes.putIfAbsent(m.key, m);
+    }
+    sb.append("{");
+    int i = 0;
+    for (Member m : codes.values()) {
+      if (i++ > 0) sb.append(",");
+      sb.append(m.rawKey).append(":").append(m.raw);
+    }
+    sb.append("}");
+  }
+
+  /** One object member: its key (decoded and as written) and its value exactly as written. */
+  static final class Member {
+    final String key;
+    final String rawKey;
+    final String raw;
+
+    Member(String key, String rawKey, String raw) {
+      this.key = key;
+      this.rawKey = rawKey;
+      this.raw = raw;
+    }
+  }
+
+  private static Member find(List<Member> members, String key) {
+    for (Member m : members) if (m.key.equals(key)) return m;
+    return null;
+  }
+
+  private static List<String> keys(List<Member> members) {
+    List<String> out = new ArrayList<>();
+    for (Member m : members) out.add(m.key);
+    return out;
+  }
+
+  /** The members of a JSON object, without re-serializing anything. */
+  static List<Member> members(String object) {
+    List<Member> out = new ArrayList<>();
+    int i = open(object, '{');
+    if (object.charAt(i) == '}') return out;
+    while (true) {
+      int k = i;
+      i = skip(object, k);
+      String rawKey = object.substring(k, i);
+      i = ws(object, i);
+      if (object.charAt(i) != ':') throw new IllegalArgumentException("expected ':' at index " + i);
+      int v = ws(object, i + 1);
+      i = skip(object, v);
+      out.add(new Member((String) JsonMini.parse(rawKey), rawKey, object.substring(v, i)));
+      i = ws(object, i);
+      if (object.charAt(i) == '}') return out;
+      if (object.charAt(i) != ',') throw new IllegalArgumentException("expected ',' at index " + i);
+      i = ws(object, i + 1);
+    }
+  }
+
+  /** The elements of a JSON array, each exactly as written. */
+  static List<String> elements(String array) {
+    List<String> out = new ArrayList<>();
+    int i = open(array, '[');
+    if (array.charAt(i) == ']') return out;
+    while (true) {
+      int v = i;
+      i = skip(array, v);
+      out.add(array.substring(v, i));
+      i = ws(array, i);
+      if (array.charAt(i) == ']') return out;
+      if (array.charAt(i) != ',') throw new IllegalArgumentException("expected ',' at index " + i);
+      i = ws(array, i + 1);
+    }
+  }
+
+  private static int open(String s, char c) {
+    int i = ws(s, 0);
+    if (i >= s.length() || s.charAt(i) != c) throw new IllegalArgumentException("expected '" + c + "' at index " + i);
+    return ws(s, i + 1);
+  }
+
+  /** Index just past the value starting at {@code i}. */
+  private static int skip(String s, int i) {
+    char c = s.charAt(i);
+    if (c == '"') {
+      for (i++; i < s.length(); i++) {
+        char x = s.charAt(i);
+        if (x == '\\') i++;
+        else if (x == '"') return i + 1;
+      }
+      throw new IllegalArgumentException("unterminated string");
+    }
+    if (c == '{' || c == '[') {
+      int depth = 0;
+      for (; i < s.length(); i++) {
+        char x = s.charAt(i);
+        if (x == '"') {
+          i = skip(s, i) - 1;
+        } else if (x == '{' || x == '[') {
+          depth++;
+        } else if ((x == '}' || x == ']') && --depth == 0) {
+          return i + 1;
+        }
+      }
+      throw new IllegalArgumentException("unterminated " + (c == '{' ? "object" : "array"));
+    }
+    while (i < s.length() && ",}] \t\r\n".indexOf(s.charAt(i)) < 0) i++;
+    return i;
+  }
+
+  private static int ws(String s, int i) {
+    while (i < s.length() && " \t\r\n".indexOf(s.charAt(i)) >= 0) i++;
+    if (i >= s.length()) throw new IllegalArgumentException("unexpected end of input");
+    return i;
+  }
+}
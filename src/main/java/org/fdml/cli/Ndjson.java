@@ -0,0 +1,105 @@
+package org.fdml.cli;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.AbstractMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * {@code --ndjson}: one JSON object per line, written as soon as its file is done.
+ *
+ * Inputs are listed up front but read, checked and written through {@link Parallel#forEachOrdered},
+ * and nothing is kept once its line is out, so memory is bounded by the window rather than the
+ * corpus. Lines come out in input order. They go to stdout, flushed per line so a consumer sees
+ * each record at once, or to a file.
+ */
+final class Ndjson implements AutoCloseable {
+  private final Writer file;   // null: stdout
+
+  private Ndjson(Writer file) {
+    this.file = file;
+  }
+
+  /** Writes to {@code out}, or to stdout when it is null. */
+  static Ndjson open(String out) throws IOException {
+    if (out == null) return new Ndjson(null);
+    Path p = Paths.get(out);
+    if (p.getParent() != null) Files.createDirectories(p.getParent());
+    return new Ndjson(Files.newBufferedWriter(p, StandardCharsets.UTF_8));
+  }
+
+  void line(String json) {
+    if (file == null) {
+      System.out.println(json);
+      System.out.flush();
+      return;
+    }
+    try {
+      file.write(json);
+      file.write('\n');
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  void line(Consumer<StringBuilder> record) {
+    StringBuilder sb = new StringBuilder();
+    record.accept(sb);
+    line(sb.toString());
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (file != null) file.close();
+  }
+
+  /** Streams {@code check} over each input file; non-null results reach {@code sink} in order. */
+  static <R> void entries(List<Path> inputs, int jobs, Function<CorpusWalker.Entry, R> check, Consumer<R> sink) {
+    entries(inputs, null, jobs, check, sink);
+  }
+
+  /** Only the files of {@code shard} (all when null). */
+  static <R> void entries(List<Path> inputs, Shard shard, int jobs, Function<CorpusWalker.Entry, R> check, Consumer<R> sink) {
+    Parallel.forEachOrdered(CorpusWalker.plan(inputs, shard), jobs, c -> {
+      CorpusWalker.Entry e = CorpusWalker.open(c);
+      return e != null ? check.apply(e) : null;
+    }, r -> {
+      if (r != null) sink.accept(r);
+    });
+  }
+
+  /**
+   * Like {@link #entries}, with each file wrapped in a {@link ParsedDocument} that {@code check}
+   * may share between stages; its bytes are released once {@code check} returns.
+   */
+  static <R> void documents(List<Path> inputs, int jobs, XPaths xp,
+                            Function<ParsedDocument, R> check, BiConsumer<Path, R> sink) {
+    documents(inputs, null, jobs, xp, check, sink);
+  }
+
+  static <R> void documents(List<Path> inputs, Shard shard, int jobs, XPaths xp,
+                            Function<ParsedDocument, R> check, BiConsumer<Path, R> sink) {
+    Parallel.forEachOrdered(CorpusWalker.plan(inputs, shard), jobs, c -> {
+      CorpusWalker.Entry e = CorpusWalker.open(c);
+      if (e == null) return null;
+      ParsedDocument d = new ParsedDocument(xp, e);
+      try {
+        return new AbstractMap.SimpleImmutableEntry<>(d.file, check.apply(d));
+      } finally {
+        d.releaseBytes();
+      }
+    }, (Map.Entry<Path, R> r) -> {
+      if (r != null && r.getValue() != null) sink.accept(r.getKey(), r.getValue());
+    });
+  }
+}
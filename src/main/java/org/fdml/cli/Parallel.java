@@ -0,0 +1,108 @@
+package org.fdml.cli;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Ordered parallel map used by the {@code --jobs N} modes.
+ *
+ * Results always come back in input order, so parallel runs print and serialize exactly what a
+ * single-threaded run would.
+ */
+final class Parallel {
+
+  private Parallel() {}
+
+  /** Parses a {@code --jobs} value: a positive integer or "auto" (one per core). Returns 0 if invalid. */
+  static int parseJobs(String raw) {
+    if (raw == null) return 1;
+    String t = raw.trim();
+    if ("auto".equalsIgnoreCase(t)) return Runtime.getRuntime().availableProcessors();
+    try {
+      int n = Integer.parseInt(t);
+      return n > 0 ? n : 0;
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+
+  static <T, R> List<R> map(List<T> items, int jobs, Function<T, R> fn) {
+    int threads = Math.min(jobs, items.size());
+    if (threads <= 1) {
+      List<R> out = new ArrayList<>(items.size());
+      for (T item : items) out.add(fn.apply(item));
+      return out;
+    }
+
+    ExecutorService pool = newPool(threads);
+    try {
+      List<Future<R>> futures = new ArrayList<>(items.size());
+      for (T item : items) futures.add(pool.submit(() -> fn.apply(item)));
+      List<R> out = new ArrayList<>(items.size());
+      for (Future<R> f : futures) out.add(await(f));
+      return out;
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * Streams {@code fn} over {@code items} into {@code sink} in input order, each result as soon as
+   * it and everything before it are done. At most {@code 2 * jobs} items are in flight, so memory
+   * stays bounded however long the input is. The sink runs on the calling thread.
+   */
+  static <T, R> void forEachOrdered(List<T> items, int jobs, Function<T, R> fn, Consumer<R> sink) {
+    if (jobs <= 1 || items.size() <= 1) {
+      for (T item : items) sink.accept(fn.apply(item));
+      return;
+    }
+
+    ExecutorService pool = newPool(Math.min(jobs, items.size()));
+    try {
+      int window = 2 * jobs;
+      ArrayDeque<Future<R>> inFlight = new ArrayDeque<>(window);
+      Iterator<T> it = items.iterator();
+      while (it.hasNext() || !inFlight.isEmpty()) {
+        while (it.hasNext() && inFlight.size() < window) {
+          T item = it.next();
+          inFlight.add(pool.submit(() -> fn.apply(item)));
+        }
+        sink.accept(await(inFlight.poll()));
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  static ExecutorService newPool(int threads) {
+    AtomicInteger seq = new AtomicInteger();
+    return Executors.newFixedThreadPool(threads, r -> {
+      Thread t = new Thread(r, "fdml-worker-" + seq.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    });
+  }
+
+  static <R> R await(Future<R> f) {
+    try {
+      return f.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException re) throw re;
+      if (cause instanceof Error err) throw err;
+      throw new RuntimeException(cause);
+    }
+  }
+}
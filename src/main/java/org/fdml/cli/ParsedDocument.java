@@ -0,0 +1,236 @@
+package org.fdml.cli;
+
+import net.sf.saxon.s9api.*;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.XMLReader;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.ValidatorHandler;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * One input file shared by every stage of a multi-stage run (doctor, ingest strict checks).
+ *
+ * The directory walk happens once in {@link #load} (via {@link CorpusWalker}), and the Saxon tree is built at most once,
+ * on first use, so XSD, Schematron, lint, timing and geometry all work from the same node.
+ * A parse failure is remembered and rethrown to each stage, which reports it in its own terms.
+ * When the XSD stage runs first, {@link #xsd} builds the tree in the same pass as the schema check.
+ * A document reads its file on first use, in whichever task gets to it, and drops the bytes once
+ * the tree exists (or, after {@link #expectXsd}, once XSD has also run), so each file is read from
+ * disk once per run and only the files in flight are held in memory.
+ */
+final class ParsedDocument {
+  final Path file;
+  /** True when the path was named directly rather than found by walking a directory. */
+  final boolean explicit;
+  /** Root {@code fdml/@version} from the walker's peek; null if not known (see {@link CorpusWalker.Entry#version}). */
+  final String version;
+
+  private final XPaths xpaths;
+  private XdmNode node;
+  private SaxonApiException error;
+  private boolean built;
+  private FdmlValidator xsdBy;
+  private FdmlValidator.Result xsd;
+  /** Set by {@link #expectXsd}: keep the bytes past the tree build until {@link #xsd} has run. */
+  private boolean xsdPending;
+  /** Owned until the tree is built; null until read, once released, or if the file cannot be read. */
+  private FileBytes bytes;
+  /** True until the file has been read (or {@link #releaseBytes} said it will not be). */
+  private boolean unread = true;
+
+  private static final SAXParserFactory SAX = SAXParserFactory.newInstance();
+  static { SAX.setNamespaceAware(true); }
+  private static final ThreadLocal<XMLReader> READERS = ThreadLocal.withInitial(ParsedDocument::newReader);
+
+  ParsedDocument(XPaths xpaths, Path file, boolean explicit) {
+    this(xpaths, file, explicit, null);
+  }
+
+  ParsedDocument(XPaths xpaths, Path file, boolean explicit, String version) {
+    this.xpaths = xpaths;
+    this.file = file;
+    this.explicit = explicit;
+    this.version = version;
+  }
+
+  /** Takes over the entry's bytes. */
+  ParsedDocument(XPaths xpaths, CorpusWalker.Entry e) {
+    this(xpaths, e.file, e.explicit, e.version);
+    this.bytes = e.bytes;
+    this.unread = e.bytes == null;
+  }
+
+  Processor processor() {
+    return xpaths.processor();
+  }
+
+  /** Compiled expressions for this document's processor, shared by every document of one load. */
+  XPaths xpaths() {
+    return xpaths;
+  }
+
+  synchronized XdmNode node() throws SaxonApiException {
+    if (!built) {
+      built = true;
+      try {
+        FileBytes b = bytes();
+        node = xpaths.processor().newDocumentBuilder().build(b != null ? b.source() : new StreamSource(file.toFile()));
+      } catch (SaxonApiException e) {
+        error = e;
+      } finally {
+        if (!xsdPending) releaseBytes();
+      }
+    }
+    if (error != null) throw error;
+    return node;
+  }
+
+  /**
+   * Tells the document that {@link #xsd} will run, so a tree built first (e.g. to time the parse
+   * on its own) keeps the bytes for the schema check instead of reading the file again.
+   */
+  synchronized void expectXsd() {
+    if (xsdBy == null) xsdPending = true;
+  }
+
+  /**
+   * The XSD verdict for this file. If the tree has not been built yet, one SAX pass feeds both
+   * the validator and Saxon's tree builder, so later stages reuse the node without re-reading.
+   * Validation errors are recorded (the first one wins) rather than aborting the build.
+   * A tree that is already built is validated from the held bytes (see {@link #expectXsd}).
+   */
+  synchronized FdmlValidator.Result xsd(FdmlValidator v) {
+    if (xsdBy != v) {
+      if (!built) xsd = buildValidated(v);
+      else if (bytes != null) xsd = v.validateBytes(file, bytes);
+      else xsd = v.validateOne(file);   // only when the tree was built without expectXsd()
+      xsdBy = v;
+      xsdPending = false;
+      if (built) releaseBytes();
+    }
+    return xsd;
+  }
+
+  private FdmlValidator.Result buildValidated(FdmlValidator v) {
+    ValidatorHandler vh = v.handler();
+    FirstError first = new FirstError();
+    vh.setErrorHandler(first);
+    try {
+      DocumentBuilder db = xpaths.processor().newDocumentBuilder();
+      String systemId = FileBytes.systemId(file);
+      db.setBaseURI(URI.create(systemId));
+      BuildingContentHandler tree = db.newBuildingContentHandler();
+      SaxTee tee = new SaxTee(vh, tree);
+      XMLReader r = READERS.get();
+      r.setContentHandler(tee);
+      r.setProperty("http://xml.org/sax/properties/lexical-handler", tee);
+      InputSource in = new InputSource(systemId);
+      FileBytes b = bytes();
+      if (b != null) in.setByteStream(b.stream());
+      r.parse(in);
+      node = tree.getDocumentNode();
+      built = true;
+      releaseBytes();
+    } catch (SAXException | IOException | SaxonApiException e) {
+      // Not well-formed (or unreadable): leave the tree unbuilt so node() parses through Saxon
+      // and stages keep reporting Saxon's own wording for the error.
+      READERS.remove();
+      v.discardHandler();
+      return FdmlValidator.failure(file, first.error != null ? first.error : e);
+    } finally {
+      vh.setErrorHandler(null);
+    }
+    return first.error != null ? FdmlValidator.failure(file, first.error) : new FdmlValidator.Result(file, true, null, null, null);
+  }
+
+  /** SHA-256 of the file, reading it (and keeping the bytes for the parse) if needed; null if it cannot be read. */
+  synchronized byte[] sha256() {
+    FileBytes b = bytes();
+    return b != null ? b.sha256() : null;
+  }
+
+  /** The file's bytes, read on first call; null once released or if the file cannot be read. */
+  private FileBytes bytes() {
+    if (unread) {
+      unread = false;
+      try {
+        bytes = FileBytes.read(file);
+      } catch (IOException e) {
+        // Left to the parser, which reports it in its own terms.
+      }
+    }
+    return bytes;
+  }
+
+  /**
+   * Lets go of the tree and any held bytes once every stage is done with this file, so a run holds
+   * only the trees of the files in flight. A later {@link #node} parses the file again.
+   */
+  synchronized void drop() {
+    node = null;
+    built = false;
+    error = null;
+    releaseBytes();
+    unread = true;
+  }
+
+  /** Drops the held bytes of a document no stage will parse (its results came from elsewhere). */
+  synchronized void releaseBytes() {
+    unread = false;
+    if (bytes != null) {
+      bytes.release();
+      bytes = null;
+    }
+  }
+
+  private static XMLReader newReader() {
+    try {
+      XMLReader r = SAX.newSAXParser().getXMLReader();
+      // Same policy as Validator.validate: parser errors are fatal, warnings are ignored.
+      r.setErrorHandler(new ErrorHandler() {
+        @Override public void warning(SAXParseException e) {}
+        @Override public void error(SAXParseException e) throws SAXException { throw e; }
+        @Override public void fatalError(SAXParseException e) throws SAXException { throw e; }
+      });
+      return r;
+    } catch (ParserConfigurationException | SAXException e) {
+      throw new RuntimeException("Failed to create SAX parser", e);
+    }
+  }
+
+  /** Keeps the first schema error and lets the parse continue so the tree is still built. */
+  private static final class FirstError implements ErrorHandler {
+    SAXParseException error;
+    @Override public void warning(SAXParseException e) {}
+    @Override public void error(SAXParseException e) { if (error == null) error = e; }
+    @Override public void fatalError(SAXParseException e) { if (error == null) error = e; }
+  }
+
+  static List<ParsedDocument> load(Processor proc, List<Path> inputs) {
+    return load(new XPaths(proc), inputs);
+  }
+
+  static List<ParsedDocument> load(XPaths xp, List<Path> inputs) {
+    return load(xp, inputs, null);
+  }
+
+  /** Only the files of {@code shard}, or all when it is null. */
+  static List<ParsedDocument> load(XPaths xp, List<Path> inputs, Shard shard) {
+    List<ParsedDocument> out = new ArrayList<>();
+    for (CorpusWalker.Entry e : CorpusWalker.walk(inputs, shard)) out.add(new ParsedDocument(xp, e));
+    return out;
+  }
+
+  static boolean looksLikeXml(Path p) {
+    String n = p.getFileName().toString().toLowerCase(Locale.ROOT);
+    return n.endsWith(".xml") || n.endsWith(".fdml") || n.endsWith(".fdml.xml");
+  }
+}
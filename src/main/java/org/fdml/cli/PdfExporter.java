@@ -22,7 +22,15 @@ class PdfExporter {
         b.useFastMode();
         b.withHtmlContent(html, base);
         b.toStream(os);
-        b.run();
+        // export-pdf renders one file per run, so this is where openhtmltopdf and PDFBox load.
+        InitTrace.time("pdf", () -> {
+          try {
+            b.run();
+            return null;
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        });
       }
 
       Files.deleteIfExists(tempHtml);
@@ -1,25 +1,32 @@
 package org.fdml.cli;
 
 import net.sf.saxon.s9api.*;
+import javax.xml.transform.Source;
 import javax.xml.transform.stream.StreamSource;
 import java.io.File;
+import java.io.OutputStream;
 import java.nio.file.Path;
 
 class Renderer {
   static void render(Path xmlPath, Path xslPath, Path outPath) {
     try {
-      Processor proc = new Processor(false);
-      XsltCompiler comp = proc.newXsltCompiler();
-      XsltExecutable exec = comp.compile(new StreamSource(xslPath.toFile()));
-      XsltTransformer t = exec.load();
-      t.setSource(new StreamSource(xmlPath.toFile()));
-      Serializer s = proc.newSerializer(new File(outPath.toString()));
-      s.setOutputProperty(Serializer.Property.INDENT, "yes");
-      t.setDestination(s);
-      t.transform();
+      transform(new StreamSource(xmlPath.toFile()), xslPath, EngineContext.shared().processor().newSerializer(new File(outPath.toString())));
       System.out.println("Rendered: " + outPath);
     } catch (Exception e) {
       throw new RuntimeException("Render failed for " + xmlPath + " with " + xslPath, e);
     }
   }
+
+  /** Renders to a stream, e.g. an HTTP response body. */
+  static void render(Source in, Path xslPath, OutputStream out) throws SaxonApiException {
+    transform(in, xslPath, EngineContext.shared().processor().newSerializer(out));
+  }
+
+  private static void transform(Source in, Path xslPath, Serializer s) throws SaxonApiException {
+    XsltTransformer t = EngineContext.shared().stylesheet(xslPath).load();
+    t.setSource(in);
+    s.setOutputProperty(Serializer.Property.INDENT, "yes");
+    t.setDestination(s);
+    t.transform();
+  }
 }
@@ -0,0 +1,306 @@
+package org.fdml.cli;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * On-disk cache of per-file stage results, used by {@code doctor} and {@code validate-all} with
+ * {@code --cache}.
+ *
+ * An entry is keyed by the SHA-256 of the file's bytes and its absolute path, salted with the
+ * SHA-256 of {@code schema/fdml.xsd} and the compiled Schematron stylesheet, the tool build and
+ * the command's options. Editing the schema or stylesheet, or installing a new build, changes the
+ * salt, so stale entries are never looked up again. Run from a class directory ({@code target/classes}
+ * in tests, an IDE or {@code mvn exec}), the build is the digest of every file under it, so editing
+ * a Java rule invalidates entries too; with no code source to look at, nothing is reused across runs. Entries are small binary records under
+ * {@code .fdml-cache/xx/}, written to a temp file and moved into place; an entry that cannot be
+ * read counts as a miss.
+ */
+final class ResultCache {
+  static final Path DEFAULT_DIR = Paths.get(".fdml-cache");
+
+  private static final int MAGIC = 0x46444d43;     // "FDMC"
+  private static final int FORMAT = 1;
+
+  /** Everything the stages found for one file; a null stage skipped the file or did not run. */
+  static final class Record {
+    FdmlValidator.Result xsd;
+    SchematronValidator.Result schematron;
+    Linter.FileResult lint;
+    TimingValidator.FileResult timing;
+    GeometryValidator.Result geometry;
+  }
+
+  private final Path dir;
+  private final byte[] salt;
+  private final AtomicInteger hits = new AtomicInteger();
+  private final AtomicInteger misses = new AtomicInteger();
+
+  private ResultCache(Path dir, byte[] salt) {
+    this.dir = dir;
+    this.salt = salt;
+  }
+
+  /**
+   * A cache in {@code dir} for one command configuration; {@code profile} names everything besides
+   * the inputs that changes results (command, engine, --max-failures).
+   */
+  static ResultCache open(Path dir, String profile) throws IOException {
+    MessageDigest md = FileBytes.sha256Digest();
+    md.update(("fdml-cache/" + FORMAT + "\n" + toolVersion() + "\n" + profile + "\n").getBytes(StandardCharsets.UTF_8));
+    md.update(Files.readAllBytes(EngineContext.SCHEMA));
+    md.update(Files.readAllBytes(EngineContext.SCHEMATRON));
+    return new ResultCache(dir, md.digest());
+  }
+
+  /**
+   * The cache chosen by {@code --cache} (the default directory) or {@code --cache-dir DIR}, or null
+   * when neither is given. PARITY runs are never cached: they exist to compare the engines.
+   */
+  static ResultCache fromFlags(boolean cache, String cacheDir, String profile, SchematronValidator.Engine engine) throws IOException {
+    if ((!cache && cacheDir == null) || engine == SchematronValidator.Engine.PARITY) return null;
+    return open(cacheDir != null ? Paths.get(cacheDir) : DEFAULT_DIR, profile);
+  }
+
+  /** One stderr line with this run's hit rate. */
+  void report(String cmd) {
+    System.err.printf("%s: cache %d hit(s), %d miss(es) in %s%n", cmd, hits(), misses(), dir);
+  }
+
+  /** Stands in for the build when the code source cannot be read: unique to this process. */
+  private static final String UNKNOWN_BUILD = "run:" + UUID.randomUUID();
+
+  /**
+   * The jar's Implementation-Version plus its size and mtime, or the digest of a class directory,
+   * so a rebuild invalidates entries.
+   */
+  static String toolVersion() {
+    String v = Main.class.getPackage().getImplementationVersion();
+    StringBuilder sb = new StringBuilder(v == null ? "dev" : v).append('@');
+    try {
+      Path code = Paths.get(Main.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+      if (Files.isRegularFile(code)) {
+        sb.append(Files.size(code)).append(':').append(Files.getLastModifiedTime(code).toMillis());
+      } else if (Files.isDirectory(code)) {
+        sb.append("classes:").append(directoryDigest(code));
+      } else {
+        sb.append(UNKNOWN_BUILD);
+      }
+    } catch (Exception e) {
+      sb.append(UNKNOWN_BUILD);
+    }
+    return sb.toString();
+  }
+
+  /** SHA-256 over every file under {@code dir}: relative path and bytes, in path order. */
+  static String directoryDigest(Path dir) throws IOException {
+    MessageDigest md = FileBytes.sha256Digest();
+    List<Path> files;
+    try (Stream<Path> walk = Files.walk(dir)) {
+      files = walk.filter(Files::isRegularFile).sorted().toList();
+    }
+    for (Path f : files) {
+      md.update(dir.relativize(f).toString().replace('\\', '/').getBytes(StandardCharsets.UTF_8));
+      md.update((byte) 0);
+      md.update(Files.readAllBytes(f));
+    }
+    return HexFormat.of().formatHex(md.digest());
+  }
+
+  int hits() {
+    return hits.get();
+  }
+
+  int misses() {
+    return misses.get();
+  }
+
+  Path dir() {
+    return dir;
+  }
+
+  /** The entry key for a document, or null when its bytes cannot be read (such files are never cached). */
+  String key(ParsedDocument d) {
+    byte[] content = d.sha256();
+    if (content == null) return null;
+    MessageDigest md = FileBytes.sha256Digest();
+    md.update(salt);
+    md.update(d.file.toAbsolutePath().normalize().toString().getBytes(StandardCharsets.UTF_8));
+    md.update((byte) 0);
+    md.update(content);
+    return HexFormat.of().formatHex(md.digest());
+  }
+
+  /** The cached results for {@code file}, or null on a miss. */
+  Record get(String key, Path file) {
+    Path p = entry(key);
+    if (Files.isRegularFile(p)) {
+      try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(p)))) {
+        if (in.readInt() == MAGIC && in.readInt() == FORMAT) {
+          Record r = read(in, file);
+          hits.incrementAndGet();
+          return r;
+        }
+      } catch (IOException | RuntimeException e) {
+        // Truncated or from an incompatible build: recompute and overwrite.
+      }
+    }
+    misses.incrementAndGet();
+    return null;
+  }
+
+  void put(String key, Record r) {
+    Path p = entry(key);
+    try {
+      Files.createDirectories(p.getParent());
+      Path tmp = Files.createTempFile(p.getParent(), key, ".tmp");
+      try {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+          out.writeInt(MAGIC);
+          out.writeInt(FORMAT);
+          write(out, r);
+        }
+        Files.move(tmp, p, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } finally {
+        Files.deleteIfExists(tmp);
+      }
+    } catch (IOException e) {
+      // A cache that cannot be written only costs the next run time.
+    }
+  }
+
+  private Path entry(String key) {
+    return dir.resolve(key.substring(0, 2)).resolve(key.substring(2));
+  }
+
+  private static void write(DataOutputStream out, Record r) throws IOException {
+    out.writeBoolean(r.xsd != null);
+    if (r.xsd != null) {
+      out.writeBoolean(r.xsd.ok);
+      writeString(out, r.xsd.message);
+      writeInteger(out, r.xsd.line);
+      writeInteger(out, r.xsd.column);
+    }
+    out.writeBoolean(r.schematron != null);
+    if (r.schematron != null) {
+      out.writeBoolean(r.schematron.ok);
+      out.writeInt(r.schematron.failures);
+      writeStrings(out, r.schematron.messages);
+      writeStrings(out, r.schematron.locations);
+      out.writeBoolean(r.schematron.truncated);
+    }
+    out.writeBoolean(r.lint != null);
+    if (r.lint != null) {
+      out.writeInt(r.lint.warnings.size());
+      for (Linter.Warning w : r.lint.warnings) {
+        writeString(out, w.code);
+        writeString(out, w.figureId);
+        writeString(out, w.meter);
+        out.writeLong(w.beats);
+        writeString(out, w.bars);
+        writeString(out, w.message);
+      }
+    }
+    out.writeBoolean(r.timing != null);
+    if (r.timing != null) {
+      out.writeInt(r.timing.issues.size());
+      for (TimingValidator.Issue i : r.timing.issues) {
+        writeString(out, i.code);
+        writeString(out, i.figureId);
+        writeString(out, i.meter);
+        out.writeLong(i.beats);
+        writeString(out, i.message);
+      }
+    }
+    out.writeBoolean(r.geometry != null);
+    if (r.geometry != null) {
+      out.writeBoolean(r.geometry.ok);
+      out.writeInt(r.geometry.issues.size());
+      for (GeometryValidator.Issue i : r.geometry.issues) {
+        writeString(out, i.code);
+        writeString(out, i.message);
+      }
+    }
+  }
+
+  private static Record read(DataInputStream in, Path file) throws IOException {
+    Record r = new Record();
+    if (in.readBoolean()) {
+      boolean ok = in.readBoolean();
+      r.xsd = new FdmlValidator.Result(file, ok, readString(in), readInteger(in), readInteger(in));
+    }
+    if (in.readBoolean()) {
+      boolean ok = in.readBoolean();
+      int failures = in.readInt();
+      List<String> messages = readStrings(in);
+      List<String> locations = readStrings(in);
+      r.schematron = new SchematronValidator.Result(file, ok, failures, messages, locations, in.readBoolean());
+    }
+    if (in.readBoolean()) {
+      r.lint = new Linter.FileResult(file);
+      for (int i = in.readInt(); i > 0; i--) {
+        r.lint.warnings.add(new Linter.Warning(readString(in), readString(in), readString(in), in.readLong(), readString(in), readString(in)));
+      }
+    }
+    if (in.readBoolean()) {
+      r.timing = new TimingValidator.FileResult(file);
+      for (int i = in.readInt(); i > 0; i--) {
+        r.timing.issues.add(new TimingValidator.Issue(readString(in), readString(in), readString(in), in.readLong(), readString(in)));
+      }
+    }
+    if (in.readBoolean()) {
+      boolean ok = in.readBoolean();
+      List<GeometryValidator.Issue> issues = new ArrayList<>();
+      for (int i = in.readInt(); i > 0; i--) issues.add(new GeometryValidator.Issue(readString(in), readString(in)));
+      r.geometry = new GeometryValidator.Result(file, ok, issues);
+    }
+    return r;
+  }
+
+  private static void writeString(DataOutputStream out, String s) throws IOException {
+    if (s == null) {
+      out.writeInt(-1);
+      return;
+    }
+    byte[] b = s.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(b.length);
+    out.write(b);
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    int n = in.readInt();
+    if (n < 0) return null;
+    byte[] b = new byte[n];
+    in.readFully(b);
+    return new String(b, StandardCharsets.UTF_8);
+  }
+
+  private static void writeInteger(DataOutputStream out, Integer i) throws IOException {
+    out.writeBoolean(i != null);
+    if (i != null) out.writeInt(i);
+  }
+
+  private static Integer readInteger(DataInputStream in) throws IOException {
+    return in.readBoolean() ? in.readInt() : null;
+  }
+
+  private static void writeStrings(DataOutputStream out, List<String> xs) throws IOException {
+    out.writeInt(xs.size());
+    for (String s : xs) writeString(out, s);
+  }
+
+  private static List<String> readStrings(DataInputStream in) throws IOException {
+    int n = in.readInt();
+    List<String> out = new ArrayList<>(n);
+    for (int i = 0; i < n; i++) out.add(readString(in));
+    return out;
+  }
+}
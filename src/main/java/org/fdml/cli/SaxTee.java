@@ -0,0 +1,116 @@
+package org.fdml.cli;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.ext.LexicalHandler;
+
+/**
+ * Forwards one SAX stream to two handlers, so a single parse can feed both the XSD
+ * {@code ValidatorHandler} and Saxon's tree builder. Lexical events (comments, CDATA) go to
+ * whichever side accepts them.
+ */
+final class SaxTee implements ContentHandler, LexicalHandler {
+  private final ContentHandler a;
+  private final ContentHandler b;
+  private final LexicalHandler la;
+  private final LexicalHandler lb;
+
+  SaxTee(ContentHandler a, ContentHandler b) {
+    this.a = a;
+    this.b = b;
+    this.la = a instanceof LexicalHandler l ? l : null;
+    this.lb = b instanceof LexicalHandler l ? l : null;
+  }
+
+  @Override public void setDocumentLocator(Locator locator) {
+    a.setDocumentLocator(locator);
+    b.setDocumentLocator(locator);
+  }
+
+  @Override public void startDocument() throws SAXException {
+    a.startDocument();
+    b.startDocument();
+  }
+
+  @Override public void endDocument() throws SAXException {
+    a.endDocument();
+    b.endDocument();
+  }
+
+  @Override public void startPrefixMapping(String prefix, String uri) throws SAXException {
+    a.startPrefixMapping(prefix, uri);
+    b.startPrefixMapping(prefix, uri);
+  }
+
+  @Override public void endPrefixMapping(String prefix) throws SAXException {
+    a.endPrefixMapping(prefix);
+    b.endPrefixMapping(prefix);
+  }
+
+  @Override public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+    a.startElement(uri, localName, qName, atts);
+    b.startElement(uri, localName, qName, atts);
+  }
+
+  @Override public void endElement(String uri, String localName, String qName) throws SAXException {
+    a.endElement(uri, localName, qName);
+    b.endElement(uri, localName, qName);
+  }
+
+  @Override public void characters(char[] ch, int start, int length) throws SAXException {
+    a.characters(ch, start, length);
+    b.characters(ch, start, length);
+  }
+
+  @Override public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+    a.ignorableWhitespace(ch, start, length);
+    b.ignorableWhitespace(ch, start, length);
+  }
+
+  @Override public void processingInstruction(String target, String data) throws SAXException {
+    a.processingInstruction(target, data);
+    b.processingInstruction(target, data);
+  }
+
+  @Override public void skippedEntity(String name) throws SAXException {
+    a.skippedEntity(name);
+    b.skippedEntity(name);
+  }
+
+  @Override public void startDTD(String name, String publicId, String systemId) throws SAXException {
+    if (la != null) la.startDTD(name, publicId, systemId);
+    if (lb != null) lb.startDTD(name, publicId, systemId);
+  }
+
+  @Override public void endDTD() throws SAXException {
+    if (la != null) la.endDTD();
+    if (lb != null) lb.endDTD();
+  }
+
+  @Override public void startEntity(String name) throws SAXException {
+    if (la != null) la.startEntity(name);
+    if (lb != null) lb.startEntity(name);
+  }
+
+  @Override public void endEntity(String name) throws SAXException {
+    if (la != null) la.endEntity(name);
+    if (lb != null) lb.endEntity(name);
+  }
+
+  @Override public void startCDATA() throws SAXException {
+    if (la != null) la.startCDATA();
+    if (lb != null) lb.startCDATA();
+  }
+
+  @Override public void endCDATA() throws SAXException {
+    if (la != null) la.endCDATA();
+    if (lb != null) lb.endCDATA();
+  }
+
+  @Override public void comment(char[] ch, int start, int length) throws SAXException {
+    if (la != null) la.comment(ch, start, length);
+    if (lb != null) lb.comment(ch, start, length);
+  }
+}
@@ -0,0 +1,472 @@
+package org.fdml.cli;
+
+import net.sf.saxon.s9api.*;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+
+/**
+ * The rules of {@code schematron/fdml.sch} as Java predicates over a Saxon tree.
+ *
+ * This is the {@code --engine java} alternative to running {@code fdml-compiled.xsl}. It follows
+ * the compiled stylesheet's semantics so the two agree message for message: patterns run in
+ * schema order, each pattern visits elements in document order, within a pattern only the first
+ * matching rule fires for an element, and asserts report in rule order. Messages keep the
+ * whitespace of the schema text and locations use the same {@code /Q{}name[n]} form as SVRL.
+ *
+ * Keep this in step with fdml.sch; {@code SchematronRulesTest} checks parity over the corpus.
+ */
+final class SchematronRules {
+
+  private SchematronRules() {}
+
+  private static final Set<String> HOLD_KINDS = Set.of("vPosition", "beltHold", "armenianHold", "palmToPalm", "none");
+  private static final Set<String> FORMATION_DIRS = Set.of("clockwise", "counterclockwise", "inward", "outward", "center");
+  private static final Set<String> DANCER_DIRS = Set.of("forward", "backward", "left", "right");
+
+  /** One rule: an element match (the rule context) and the asserts to run on it. */
+  private static final class Rule {
+    final Predicate<XdmNode> match;
+    final BiConsumer<XdmNode, Report> check;
+    Rule(Predicate<XdmNode> match, BiConsumer<XdmNode, Report> check) {
+      this.match = match; this.check = check;
+    }
+  }
+
+  private static Rule rule(Predicate<XdmNode> match, BiConsumer<XdmNode, Report> check) {
+    return new Rule(match, check);
+  }
+
+  /** Patterns in fdml.sch order; each is a list of rules in priority order. */
+  private static final List<List<Rule>> PATTERNS = List.of(
+    // basic-rules
+    List.of(rule(e -> named(e, "fdml"), (e, r) -> {
+      r.check(exists(e, "meta"), e, "fdml must contain meta", false);
+      r.check(exists(e, "body"), e, "fdml must contain body", false);
+    })),
+
+    // v11-meta-rules
+    List.of(rule(e -> isFdml(e, "1.1"), (e, r) -> {
+      r.check(!attrs(path(e, "meta", "origin"), "country").isEmpty(), e, "v1.1 dances must specify an origin country");
+      r.check(!attrs(path(e, "meta", "type"), "genre").isEmpty(), e, "v1.1 dances must specify a type/genre");
+      r.check(!attrs(path(e, "meta", "meter"), "value").isEmpty(), e, "v1.1 dances must specify a meter value");
+    })),
+
+    // v11-sections
+    List.of(rule(e -> isFdml(e, "1.1"), (e, r) -> {
+      List<String> types = attrs(path(e, "body", "section"), "type");
+      r.check(types.contains("notes"), e, "v1.1 dances should include a section with type=\"notes\"");
+      r.check(types.contains("setup"), e, "v1.1 dances should include a section with type=\"setup\"");
+    })),
+
+    // v12-geometry-meta
+    List.of(rule(e -> isFdml(e, "1.2"), (e, r) -> {
+      r.check(!attrs(path(e, "meta", "geometry", "formation"), "kind").isEmpty(), e,
+        "v1.2 dances must include meta/geometry/formation/@kind");
+      boolean usesGeo = false;
+      for (XdmNode step : descendants(e, "step")) usesGeo |= exists(step, "geo");
+      r.check(!usesGeo || hasRoles(e), e, "v1.2 dances that use step/geo should declare meta/geometry/roles/role");
+      List<XdmNode> meter = path(e, "meta", "meter");
+      r.check(!first(attrs(meter, "value")).contains("9/16") || attrs(meter, "rhythmPattern").contains("2+2+2+3"), e,
+        "v1.2 dances with meter 9/16 must specify meter/@rhythmPattern='2+2+2+3'");
+      List<XdmNode> holds = path(e, "meta", "geometry", "hold");
+      List<String> holdKinds = attrs(holds, "kind");
+      r.check(holds.isEmpty() || holdKinds.stream().anyMatch(HOLD_KINDS::contains), e,
+        "v1.2 meta/geometry/hold/@kind must be one of: vPosition|beltHold|armenianHold|palmToPalm|none");
+      r.check(holds.isEmpty() || holdKinds.contains("none") || primitives(e, "releaseHold").isEmpty(), e,
+        "v1.2 dances with hold/@kind != 'none' must not use primitive kind='releaseHold'");
+    })),
+
+    // v12-geometry-step-primitives
+    List.of(rule(e -> named(e, "step") && exists(e, "geo") && underFdml(e, f -> version(f, "1.2")), (e, r) -> {
+      List<XdmNode> prims = path(e, "geo", "primitive");
+      r.check(!prims.isEmpty(), e, "step/geo must contain at least one primitive");
+      r.check(prims.stream().allMatch(p -> attr(p, "kind") != null), e, "each geo/primitive must have @kind");
+    })),
+
+    // v12-geometry-role-refs
+    List.of(
+      rule(e -> named(e, "step") && underFdml(e, f -> version(f, "1.2") && hasRoles(f)), (e, r) -> {
+        String who = norm(attr(e, "who"));
+        r.check(who.isEmpty() || roleIds(e).contains(who), e,
+          "step/@who should reference a declared meta/geometry/roles/role/@id (for v1.2)");
+      }),
+      rule(e -> named(e, "primitive") && attr(e, "who") != null && parentNamed(e, "geo")
+             && underFdml(e, f -> version(f, "1.2") && hasRoles(f)), (e, r) -> {
+        r.check(roleIds(e).contains(norm(attr(e, "who"))), e,
+          "geo/primitive/@who must reference a declared meta/geometry/roles/role/@id (for v1.2)");
+      })
+    ),
+
+    // v12-body-geometry
+    List.of(
+      rule(e -> stepPrimitive(e) && "relpos".equals(attr(e, "kind")), (e, r) -> {
+        r.check(attr(e, "a") != null && attr(e, "b") != null, e, "relpos primitive must declare @a and @b");
+        r.check(attr(e, "relation") != null, e, "relpos primitive must declare @relation");
+      }),
+      rule(e -> stepPrimitive(e) && "swapPlaces".equals(attr(e, "kind")), (e, r) -> {
+        r.check(attr(e, "a") != null && attr(e, "b") != null, e, "swapPlaces primitive must declare @a and @b");
+      }),
+      rule(e -> stepPrimitive(e) && attr(e, "dir") != null, (e, r) -> {
+        String frame = attr(e, "frame");
+        String d = norm(attr(e, "dir"));
+        r.check(frame != null, e, "geo/primitive with @dir must declare @frame");
+        r.check(!FORMATION_DIRS.contains(d) || "formation".equals(frame), e,
+          "geo/primitive with formation-frame dir must use frame='formation'");
+        r.check(!DANCER_DIRS.contains(d) || "dancer".equals(frame), e,
+          "geo/primitive with dancer-frame dir must use frame='dancer'");
+      }),
+      rule(e -> named(e, "fdml") && lineProgression(e), (e, r) -> {
+        List<XdmNode> orders = path(e, "body", "geometry", "line", "order");
+        int slots = 0;
+        boolean distinct = true;
+        for (XdmNode o : orders) {
+          slots += children(o, "slot").size();
+          distinct &= noDuplicates(attrs(children(o, "slot"), "who"));
+        }
+        r.check(slots >= 2, e, "line formation with progress primitives must declare body/geometry/line/order with at least 2 slots");
+        r.check(distinct, e, "line order slot list must not contain duplicate who values");
+        r.check(primitives(e, "progress").stream().allMatch(p -> attr(p, "delta") != null), e,
+          "every progress primitive must have @delta");
+      }),
+      rule(e -> named(e, "slot") && attr(e, "who") != null
+             && underFdml(bodyAbove(e, "line", "order"), f -> lineProgression(f) && hasRoles(f)), (e, r) -> {
+        r.check(roleIds(e).contains(attr(e, "who")), e, "line/order/slot/@who must reference a declared role id");
+      }),
+      rule(e -> isFdml(e, "1.2") && formationKind(e, "twoLinesFacing"), (e, r) -> {
+        r.check(exists(e, "body", "geometry", "twoLines", "facing"), e,
+          "twoLinesFacing formation must declare body/geometry/twoLines/facing");
+      }),
+      rule(e -> named(e, "facing")
+             && underFdml(bodyAbove(e, "twoLines"), f -> version(f, "1.2") && formationKind(f, "twoLinesFacing") && hasRoles(f)),
+        SchematronRules::checkFacing),
+      rule(e -> isFdml(e, "1.2") && formationKind(e, "couple")
+             && !attrs(path(e, "meta", "geometry", "formation"), "womanSide").isEmpty(), (e, r) -> {
+        List<String> ids = attrs(path(e, "meta", "geometry", "roles", "role"), "id");
+        r.check(ids.contains("man") && ids.contains("woman"), e, "couple formation with womanSide must declare roles 'man' and 'woman'");
+        boolean paired = false;
+        for (XdmNode p : path(e, "body", "geometry", "couples", "pair")) {
+          paired |= is(p, "a", "man") && is(p, "b", "woman") || is(p, "a", "woman") && is(p, "b", "man");
+        }
+        r.check(paired, e, "couple formation with womanSide must include body/geometry/couples/pair linking man and woman");
+        String ws = norm(first(attrs(path(e, "meta", "geometry", "formation"), "womanSide")));
+        boolean evidence = false;
+        for (XdmNode p : primitives(e, "relpos")) {
+          if (ws.equals("left")) {
+            evidence |= is(p, "a", "woman") && is(p, "b", "man") && is(p, "relation", "leftOf")
+                     || is(p, "a", "man") && is(p, "b", "woman") && is(p, "relation", "rightOf");
+          } else if (ws.equals("right")) {
+            evidence |= is(p, "a", "woman") && is(p, "b", "man") && is(p, "relation", "rightOf")
+                     || is(p, "a", "man") && is(p, "b", "woman") && is(p, "relation", "leftOf");
+          }
+        }
+        r.check(evidence, e, "couple formation with womanSide must include at least one relpos primitive asserting the correct side between man and woman");
+      }),
+      rule(e -> named(e, "order") && underFdmlParent(bodyAbove(e, "circle")), (e, r) -> {
+        r.check(attr(e, "role") != null, e, "body/geometry/circle/order must have @role");
+      }),
+      rule(e -> named(e, "order") && attr(e, "role") != null
+             && underFdml(bodyAbove(e, "circle"), f -> version(f, "1.2") && docHasRoles(f)), (e, r) -> {
+        // fdml.sch compares each role's @id with that same role's @role; kept as written.
+        boolean found = false;
+        for (XdmNode role : docRoles(e)) found |= attr(role, "id") != null && attr(role, "id").equals(attr(role, "role"));
+        r.check(found, e, "circle/order/@role must reference a declared role id");
+      }),
+      rule(e -> named(e, "order") && exists(e, "slot") && underFdmlParent(bodyAbove(e, "circle")), (e, r) -> {
+        List<XdmNode> slots = children(e, "slot");
+        r.check(slots.size() >= 4, e, "circle/order with explicit slots must include at least 4 slot entries");
+        r.check(noDuplicates(attrs(slots, "who")), e, "circle/order slot list must not contain duplicate who values");
+      }),
+      rule(e -> named(e, "slot") && attr(e, "who") != null
+             && underFdml(bodyAbove(e, "circle", "order"), f -> version(f, "1.2") && docHasRoles(f)), (e, r) -> {
+        r.check(roleIds(e).contains(attr(e, "who")), e, "circle/order/slot/@who must reference a declared role id");
+      }),
+      rule(e -> named(e, "line") && attr(e, "role") != null
+             && underFdml(bodyAbove(e, "twoLines"), f -> version(f, "1.2") && docHasRoles(f)), (e, r) -> {
+        r.check(roleIds(e).contains(attr(e, "role")), e, "twoLines/line/@role must reference a declared role id");
+      }),
+      rule(e -> named(e, "facing")
+             && underFdml(bodyAbove(e, "twoLines"), f -> version(f, "1.2") && docHasRoles(f)),
+        SchematronRules::checkFacing)
+    ),
+
+    // figure-structure
+    List.of(rule(e -> named(e, "figure"), (e, r) -> {
+      r.check(exists(e, "step") || exists(e, "measureRange", "step"), e, "figure must contain at least one step");
+    })),
+
+    // sequence-refs
+    List.of(rule(e -> named(e, "use") && attr(e, "figure") != null && parentNamed(e, "sequence"), (e, r) -> {
+      String target = norm(attr(e, "figure"));
+      boolean found = false;
+      for (XdmNode b : path(document(e), "fdml", "body")) {
+        for (XdmNode f : descendants(b, "figure")) found |= target.equals(attr(f, "id"));
+      }
+      r.check(found, e, "sequence/use/@figure must reference an existing figure id");
+    })),
+
+    // part-structure
+    List.of(rule(e -> named(e, "part"), (e, r) -> {
+      r.check(exists(e, "figure"), e, "part must contain at least one figure");
+    })),
+
+    // type-formation-consistency
+    List.of(rule(e -> isFdml(e, "1.1"), (e, r) -> {
+      String formText = asciiLower(first(attrs(path(e, "meta", "formation"), "text")));
+      List<String> genres = attrs(path(e, "meta", "type"), "genre");
+      for (String g : List.of("circle", "line", "couple")) {
+        r.check(!genres.contains(g) || formText.contains(g), e,
+          "If type/@genre is \"" + g + "\", formation text should mention \"" + g + "\".");
+      }
+    }))
+  );
+
+  /** Runs every pattern over {@code doc}; stops once {@code maxFailures} is exceeded (0 means no limit). */
+  static SchematronValidator.Result check(Path file, XdmNode doc, int maxFailures) {
+    List<XdmNode> elements = new ArrayList<>();
+    for (XdmNode n : axis(doc, Axis.DESCENDANT)) {
+      if (n.getNodeKind() == XdmNodeKind.ELEMENT) elements.add(n);
+    }
+    Report r = new Report(maxFailures);
+    outer:
+    for (List<Rule> pattern : PATTERNS) {
+      for (XdmNode e : elements) {
+        for (Rule rule : pattern) {
+          if (rule.match.test(e)) {
+            rule.check.accept(e, r);
+            break;
+          }
+        }
+        if (r.stopped) break outer;
+      }
+    }
+    return new SchematronValidator.Result(file, r.messages.isEmpty(), r.messages.size(), r.messages, r.locations, r.stopped);
+  }
+
+  private static void checkFacing(XdmNode e, Report r) {
+    XdmNode doc = document(e);
+    List<XdmNode> twoLines = path(doc, "fdml", "body", "geometry", "twoLines");
+    List<String> lineIds = attrs(children(twoLines, "line"), "id");
+    List<XdmNode> facings = children(twoLines, "facing");
+    r.check(lineIds.contains(norm(first(attrs(facings, "a")))), e, "twoLines/facing/@a must reference a declared role id");
+    r.check(lineIds.contains(norm(first(attrs(facings, "b")))), e, "twoLines/facing/@b must reference a declared role id");
+  }
+
+  /** Collected failed asserts, in report order. */
+  private static final class Report {
+    private final int limit;
+    final List<String> messages = new ArrayList<>();
+    final List<String> locations = new ArrayList<>();
+    boolean stopped;
+
+    Report(int limit) {
+      this.limit = limit;
+    }
+
+    /** An assert whose text sat on its own lines in fdml.sch, which SVRL reproduces verbatim. */
+    void check(boolean ok, XdmNode context, String text) {
+      check(ok, context, text, true);
+    }
+
+    void check(boolean ok, XdmNode context, String text, boolean block) {
+      if (ok || stopped) return;
+      if (limit > 0 && messages.size() >= limit) {
+        stopped = true;
+        return;
+      }
+      messages.add(block ? "\n        " + text + "\n      " : text);
+      locations.add(location(context));
+    }
+  }
+
+  // ---- rule contexts ----
+
+  private static boolean isFdml(XdmNode e, String version) {
+    return named(e, "fdml") && version(e, version);
+  }
+
+  private static boolean version(XdmNode fdml, String version) {
+    return version.equals(attr(fdml, "version"));
+  }
+
+  /** {@code fdml[@version='1.2']//step/geo/primitive} */
+  private static boolean stepPrimitive(XdmNode e) {
+    if (!named(e, "primitive") || !parentNamed(e, "geo")) return false;
+    XdmNode geo = e.getParent();
+    return parentNamed(geo, "step") && underFdml(geo.getParent(), f -> version(f, "1.2"));
+  }
+
+  /** The body element if {@code e} sits at {@code body/geometry/<steps...>/e}, else null. */
+  private static XdmNode bodyAbove(XdmNode e, String... steps) {
+    XdmNode n = e;
+    for (int i = steps.length - 1; i >= 0; i--) {
+      if (!parentNamed(n, steps[i])) return null;
+      n = n.getParent();
+    }
+    if (!parentNamed(n, "geometry") || !parentNamed(n.getParent(), "body")) return null;
+    return n.getParent().getParent();
+  }
+
+  /** {@code fdml[@version='1.2']/body}: the body's own parent is a v1.2 fdml. */
+  private static boolean underFdmlParent(XdmNode body) {
+    return body != null && isFdml(body.getParent(), "1.2");
+  }
+
+  /** True if any fdml ancestor of {@code e} satisfies {@code p}, as in a {@code fdml[...]//x} match. */
+  private static boolean underFdml(XdmNode e, Predicate<XdmNode> p) {
+    if (e == null) return false;
+    for (XdmNode a = e.getParent(); a != null; a = a.getParent()) {
+      if (named(a, "fdml") && p.test(a)) return true;
+    }
+    return false;
+  }
+
+  private static boolean lineProgression(XdmNode fdml) {
+    return version(fdml, "1.2") && formationKind(fdml, "line") && !primitives(fdml, "progress").isEmpty();
+  }
+
+  private static boolean formationKind(XdmNode fdml, String kind) {
+    return attrs(path(fdml, "meta", "geometry", "formation"), "kind").contains(kind);
+  }
+
+  private static boolean hasRoles(XdmNode fdml) {
+    return exists(fdml, "meta", "geometry", "roles", "role");
+  }
+
+  /** {@code /fdml/meta/geometry/roles/role} is declared. */
+  private static boolean docHasRoles(XdmNode e) {
+    return !docRoles(e).isEmpty();
+  }
+
+  private static List<XdmNode> docRoles(XdmNode e) {
+    return path(document(e), "fdml", "meta", "geometry", "roles", "role");
+  }
+
+  private static List<String> roleIds(XdmNode e) {
+    return attrs(docRoles(e), "id");
+  }
+
+  /** {@code .//step/geo/primitive[@kind=kind]} */
+  private static List<XdmNode> primitives(XdmNode e, String kind) {
+    List<XdmNode> out = new ArrayList<>();
+    for (XdmNode step : descendants(e, "step")) {
+      for (XdmNode p : path(step, "geo", "primitive")) if (kind.equals(attr(p, "kind"))) out.add(p);
+    }
+    return out;
+  }
+
+  // ---- tree helpers ----
+
+  private static boolean named(XdmNode n, String local) {
+    if (n == null || n.getNodeKind() != XdmNodeKind.ELEMENT) return false;
+    QName q = n.getNodeName();
+    return q.getNamespace().isEmpty() && q.getLocalName().equals(local);
+  }
+
+  private static boolean parentNamed(XdmNode n, String local) {
+    return named(n.getParent(), local);
+  }
+
+  private static List<XdmNode> children(XdmNode n, String local) {
+    List<XdmNode> out = new ArrayList<>();
+    for (XdmNode c : n.children()) if (named(c, local)) out.add(c);
+    return out;
+  }
+
+  private static List<XdmNode> children(List<XdmNode> ns, String local) {
+    List<XdmNode> out = new ArrayList<>();
+    for (XdmNode n : ns) out.addAll(children(n, local));
+    return out;
+  }
+
+  private static List<XdmNode> path(XdmNode n, String... steps) {
+    List<XdmNode> cur = List.of(n);
+    for (String s : steps) cur = children(cur, s);
+    return cur;
+  }
+
+  private static boolean exists(XdmNode n, String... steps) {
+    return !path(n, steps).isEmpty();
+  }
+
+  private static List<XdmNode> descendants(XdmNode n, String local) {
+    List<XdmNode> out = new ArrayList<>();
+    for (XdmNode d : axis(n, Axis.DESCENDANT)) if (named(d, local)) out.add(d);
+    return out;
+  }
+
+  private static List<XdmNode> axis(XdmNode n, Axis axis) {
+    List<XdmNode> out = new ArrayList<>();
+    n.axisIterator(axis).forEachRemaining(out::add);
+    return out;
+  }
+
+  private static String attr(XdmNode n, String name) {
+    return n.getAttributeValue(new QName(name));
+  }
+
+  private static boolean is(XdmNode n, String name, String value) {
+    return value.equals(attr(n, name));
+  }
+
+  private static List<String> attrs(List<XdmNode> ns, String name) {
+    List<String> out = new ArrayList<>();
+    for (XdmNode n : ns) {
+      String v = attr(n, name);
+      if (v != null) out.add(v);
+    }
+    return out;
+  }
+
+  private static XdmNode document(XdmNode n) {
+    XdmNode d = n;
+    while (d.getParent() != null) d = d.getParent();
+    return d;
+  }
+
+  // ---- XPath string semantics ----
+
+  /** The string value of the first node, as XSLT 1.0 string functions see a node-set. */
+  private static String first(List<String> values) {
+    return values.isEmpty() ? "" : values.get(0);
+  }
+
+  private static String norm(String s) {
+    if (s == null) return "";
+    StringBuilder b = new StringBuilder();
+    for (String part : s.split("[ \t\r\n]+")) {
+      if (part.isEmpty()) continue;
+      if (b.length() > 0) b.append(' ');
+      b.append(part);
+    }
+    return b.toString();
+  }
+
+  private static String asciiLower(String s) {
+    StringBuilder b = new StringBuilder(s.length());
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      b.append(c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c);
+    }
+    return b.toString();
+  }
+
+  private static boolean noDuplicates(List<String> values) {
+    return new HashSet<>(values).size() == values.size();
+  }
+
+  /** SVRL location: {@code /Q{ns}name[n]} for each ancestor-or-self element. */
+  static String location(XdmNode e) {
+    Deque<String> steps = new ArrayDeque<>();
+    for (XdmNode n = e; n != null && n.getNodeKind() == XdmNodeKind.ELEMENT; n = n.getParent()) {
+      QName q = n.getNodeName();
+      int pos = 1;
+      for (XdmNode s : axis(n, Axis.PRECEDING_SIBLING)) {
+        if (s.getNodeKind() == XdmNodeKind.ELEMENT && s.getNodeName().equals(q)) pos++;
+      }
+      steps.addFirst("/Q{" + q.getNamespace() + "}" + q.getLocalName() + "[" + pos + "]");
+    }
+    return String.join("", steps);
+  }
+}
@@ -1,89 +1,296 @@
 package org.fdml.cli;
 
+import net.sf.saxon.lib.StandardErrorReporter;
 import net.sf.saxon.s9api.*;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
 import javax.xml.transform.stream.StreamSource;
 import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 class SchematronValidator {
+  static final String SVRL_NS = "http://purl.oclc.org/dsdl/svrl";
+
   static class Result {
     final Path file;
     final boolean ok;
     final int failures;
     final List<String> messages;
+    /** failed-assert/@location XPaths, parallel to {@link #messages}. */
+    final List<String> locations;
+    /** True when the run stopped at --max-failures with further failures still to report. */
+    final boolean truncated;
     Result(Path file, boolean ok, int failures, List<String> messages) {
+      this(file, ok, failures, messages, List.of(), false);
+    }
+    Result(Path file, boolean ok, int failures, List<String> messages, List<String> locations, boolean truncated) {
       this.file = file; this.ok = ok; this.failures = failures; this.messages = messages;
+      this.locations = locations; this.truncated = truncated;
+    }
+  }
+
+  /** How rules are run: the compiled XSLT, the Java port in {@link SchematronRules}, or both compared. */
+  enum Engine {
+    XSLT, JAVA, PARITY;
+
+    /** Parses an {@code --engine} value; null for anything unknown. */
+    static Engine parse(String raw) {
+      if (raw == null) return XSLT;
+      for (Engine e : values()) if (e.name().equalsIgnoreCase(raw.trim())) return e;
+      return null;
     }
   }
 
   private final Processor proc;
   private final XsltExecutable compiledSchematron;
+  private final int maxFailures;
+  private final Engine engine;
+  private final AtomicInteger mismatches = new AtomicInteger();
+  // The executable is shared; transformers are not thread-safe, so each worker keeps its own.
+  private final ThreadLocal<XsltTransformer> transformers;
 
   SchematronValidator(Path compiledSchematronXsl) {
+    this(new Processor(false), compiledSchematronXsl);
+  }
+
+  SchematronValidator(Processor proc, Path compiledSchematronXsl) {
+    this(proc, compile(proc, compiledSchematronXsl), 0, Engine.XSLT);
+  }
+
+  private SchematronValidator(Processor proc, XsltExecutable compiledSchematron, int maxFailures, Engine engine) {
+    this.proc = proc;
+    this.compiledSchematron = compiledSchematron;
+    this.maxFailures = maxFailures;
+    this.engine = engine;
+    this.transformers = ThreadLocal.withInitial(compiledSchematron::load);
+  }
+
+  private static XsltExecutable compile(Processor proc, Path compiledSchematronXsl) {
     try {
-      proc = new Processor(false);
       XsltCompiler comp = proc.newXsltCompiler();
-      compiledSchematron = comp.compile(new StreamSource(compiledSchematronXsl.toFile()));
+      return comp.compile(new StreamSource(compiledSchematronXsl.toFile()));
     } catch (SaxonApiException e) {
       throw new RuntimeException("Failed to load compiled Schematron: " + compiledSchematronXsl, e);
     }
   }
 
+  /**
+   * A validator sharing this one's compiled stylesheet that stops each file after {@code n}
+   * failed assertions (0 means no limit).
+   */
+  SchematronValidator withMaxFailures(int n) {
+    if (n == maxFailures) return this;
+    return new SchematronValidator(proc, compiledSchematron, n, engine);
+  }
+
+  /**
+   * A validator sharing this one's compiled stylesheet that runs on {@code e}. In PARITY mode the
+   * XSLT result is reported and every disagreement with the Java engine is printed to stderr.
+   */
+  SchematronValidator withEngine(Engine e) {
+    if (e == engine) return this;
+    return new SchematronValidator(proc, compiledSchematron, maxFailures, e);
+  }
+
+  /** Files on which the two engines disagreed so far (PARITY mode only). */
+  int parityMismatches() {
+    return mismatches.get();
+  }
+
   List<Result> validateCollect(List<Path> inputs) {
-    List<Path> files = expandAll(inputs);
-    List<Result> out = new ArrayList<>();
-    for (Path f : files) out.add(validateFile(f));
-    return out;
+    return validateCollect(inputs, 1);
+  }
+
+  /** Runs on up to {@code jobs} threads and merges results back in input order. */
+  List<Result> validateCollect(List<Path> inputs, int jobs) {
+    return validateCollect(inputs, jobs, null);
+  }
+
+  /** Only the files of {@code shard} (all when null). */
+  List<Result> validateCollect(List<Path> inputs, int jobs, Shard shard) {
+    return CorpusWalker.map(inputs, shard, jobs, this::validateEntry);
+  }
+
+  /** Runs over already-loaded documents; they must come from the same {@link Processor} as this validator. */
+  List<Result> validateDocs(List<ParsedDocument> docs) {
+    return validateDocs(docs, 1);
+  }
+
+  List<Result> validateDocs(List<ParsedDocument> docs, int jobs) {
+    return Parallel.map(docs, jobs, this::validateDoc);
+  }
+
+  Result validateDoc(ParsedDocument d) {
+    try {
+      return validateNode(d.file, d.node());
+    } catch (SaxonApiException e) {
+      return new Result(d.file, false, 1, List.of("Schematron error: " + e.getMessage()));
+    }
   }
 
   boolean validatePaths(List<Path> inputs) {
-    List<Result> results = validateCollect(inputs);
-    boolean allOk = true;
+    return validatePaths(inputs, 1);
+  }
+
+  boolean validatePaths(List<Path> inputs, int jobs) {
+    return validatePaths(inputs, jobs, null);
+  }
+
+  boolean validatePaths(List<Path> inputs, int jobs, Shard shard) {
+    List<Result> results = validateCollect(inputs, jobs, shard);
+    printResults(results);
+    return results.stream().allMatch(r -> r.ok);
+  }
+
+  void printResults(List<Result> results) {
     for (Result r : results) {
       if (r.ok) System.out.println("SCH OK  : " + r.file);
       else {
-        System.out.println("SCH FAIL: " + r.file + " (" + r.failures + " failure(s))");
-        if (!r.messages.isEmpty()) System.out.println("  \u2192 " + String.join(" | ", r.messages));
+        System.out.println("SCH FAIL: " + r.file + " (" + r.failures + (r.truncated ? "+" : "") + " failure(s))");
+        if (!r.messages.isEmpty()) System.out.println("  → " + String.join(" | ", r.messages));
       }
-      allOk &= r.ok;
     }
     System.out.printf("Schematron checked %d file(s).%n", results.size());
-    return allOk;
   }
 
-  private Result validateFile(Path xml) {
+  Result validateEntry(CorpusWalker.Entry e) {
     try {
-      XsltTransformer t = compiledSchematron.load();
-      XdmDestination dest = new XdmDestination();
-      t.setSource(new StreamSource(xml.toFile()));
-      t.setDestination(dest);
-      t.transform();
+      return validateSource(e.file, e.source());
+    } finally {
+      e.release();
+    }
+  }
 
-      XPathCompiler xpc = proc.newXPathCompiler();
-      xpc.declareNamespace("svrl","http://purl.oclc.org/dsdl/svrl");
+  private Result validateSource(Path xml, StreamSource src) {
+    XdmNode doc;
+    try {
+      doc = proc.newDocumentBuilder().build(src);
+    } catch (SaxonApiException e) {
+      return new Result(xml, false, 1, List.of("Schematron error: " + e.getMessage()));
+    }
+    return validateNode(xml, doc);
+  }
 
-      XdmNode svrl = dest.getXdmNode();
-      XdmValue failed = xpc.evaluate("//svrl:failed-assert", svrl);
-      int count = failed.size();
+  private Result validateNode(Path xml, XdmNode doc) {
+    switch (engine) {
+      case JAVA: return SchematronRules.check(xml, doc, maxFailures);
+      case PARITY: {
+        Result x = transform(xml, doc);
+        Result j = SchematronRules.check(xml, doc, maxFailures);
+        String diff = differences(x, j);
+        if (diff != null) {
+          mismatches.incrementAndGet();
+          System.err.println("SCH PARITY MISMATCH: " + xml + " : " + diff);
+        }
+        return x;
+      }
+      default: return transform(xml, doc);
+    }
+  }
 
-      List<String> msgs = new ArrayList<>();
-      XdmValue texts = xpc.evaluate("//svrl:failed-assert/svrl:text/string()", svrl);
-      for (XdmItem i : texts) msgs.add(i.getStringValue());
+  static String differences(Result x, Result j) {
+    if (x.failures != j.failures) return "xslt reported " + x.failures + " failure(s), java " + j.failures;
+    int n = Math.min(x.messages.size(), j.messages.size());
+    for (int i = 0; i < n; i++) {
+      if (!x.messages.get(i).equals(j.messages.get(i))) {
+        return "message " + (i + 1) + " differs: xslt \"" + x.messages.get(i).strip() + "\", java \"" + j.messages.get(i).strip() + "\"";
+      }
+      if (i < x.locations.size() && i < j.locations.size() && !x.locations.get(i).equals(j.locations.get(i))) {
+        return "location " + (i + 1) + " differs: xslt " + x.locations.get(i) + ", java " + j.locations.get(i);
+      }
+    }
+    if (x.messages.size() != j.messages.size()) {
+      boolean xslt = x.messages.size() > n;
+      List<String> extra = (xslt ? x.messages : j.messages).subList(n, Math.max(x.messages.size(), j.messages.size()));
+      return "xslt reported " + x.messages.size() + " message(s), java " + j.messages.size()
+          + "; only " + (xslt ? "xslt" : "java") + " has \"" + extra.get(0).strip() + "\""
+          + (extra.size() > 1 ? " and " + (extra.size() - 1) + " more" : "");
+    }
+    if (x.locations.size() != j.locations.size()) {
+      return "xslt reported " + x.locations.size() + " location(s), java " + j.locations.size();
+    }
+    if (x.truncated != j.truncated) return "truncation differs";
+    return null;
+  }
 
-      return new Result(xml, count == 0, count, msgs);
+  private Result transform(Path xml, XdmNode doc) {
+    XsltTransformer t = transformers.get();
+    try {
+      t.setInitialContextNode(doc);
     } catch (Exception e) {
       return new Result(xml, false, 1, List.of("Schematron error: " + e.getMessage()));
     }
+    return run(xml, t);
   }
 
-  private List<Path> expandAll(List<Path> inputs) {
-    List<Path> out = new ArrayList<>();
-    for (Path p : inputs) {
-      try {
-        if (Files.isDirectory(p)) Files.walk(p).filter(Files::isRegularFile).forEach(out::add);
-        else out.add(p);
-      } catch (Exception e) { throw new RuntimeException(e); }
+  /** Streams the SVRL output into a collector instead of building and re-scanning a tree. */
+  private Result run(Path xml, XsltTransformer t) {
+    FailedAssertCollector c = new FailedAssertCollector(maxFailures);
+    try {
+      // The deliberate abort at --max-failures is not an error worth printing. Saxon words parse
+      // errors differently for non-standard reporters, so this stays a StandardErrorReporter.
+      t.setErrorReporter(new StandardErrorReporter() {
+        @Override public void report(XmlProcessingError err) { if (!c.stopped) super.report(err); }
+      });
+      t.setDestination(new SAXDestination(c));
+      t.transform();
+    } catch (Exception e) {
+      transformers.remove();
+      if (!c.stopped) return new Result(xml, false, 1, List.of("Schematron error: " + e.getMessage()));
+    }
+    return new Result(xml, c.count == 0, c.count, c.messages, c.locations, c.stopped);
+  }
+
+  /** Counts svrl:failed-assert and collects each one's svrl:text and @location as they are emitted. */
+  private static final class FailedAssertCollector extends DefaultHandler {
+    private final int limit;
+    final List<String> messages = new ArrayList<>();
+    final List<String> locations = new ArrayList<>();
+    int count;
+    boolean stopped;
+
+    private int depth;
+    private int assertDepth = -1;
+    private StringBuilder text;
+
+    FailedAssertCollector(int limit) {
+      this.limit = limit;
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+      depth++;
+      if (!SVRL_NS.equals(uri)) return;
+      if (assertDepth < 0 && "failed-assert".equals(localName)) {
+        if (limit > 0 && count >= limit) {
+          stopped = true;
+          throw new SAXException("stopped after " + limit + " failed assertion(s)");
+        }
+        assertDepth = depth;
+        count++;
+        String loc = atts.getValue("", "location");
+        locations.add(loc == null ? "" : loc);
+      } else if (assertDepth >= 0 && depth == assertDepth + 1 && "text".equals(localName)) {
+        text = new StringBuilder();
+      }
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length) {
+      if (text != null) text.append(ch, start, length);
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) {
+      if (text != null && depth == assertDepth + 1) {
+        messages.add(text.toString());
+        text = null;
+      } else if (depth == assertDepth) {
+        assertDepth = -1;
+      }
+      depth--;
     }
-    return out;
   }
 }
@@ -0,0 +1,389 @@
+package org.fdml.cli;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * {@code fdml search "query"}: full-text search over the {@link SearchIndex} that
+ * {@code fdml index --search} writes.
+ *
+ * Words must all match ({@code AND} may be written out); {@code OR} joins alternatives and binds
+ * looser than AND; parentheses group; {@code "double quotes"} match a phrase within one field or
+ * step. Matches are ranked by BM25 over every query term, ties in file order.
+ */
+final class Search {
+  static final Path DEFAULT_INDEX = Paths.get("out/" + SearchIndex.FILE_NAME);
+
+  private static final double K1 = 1.2;
+  private static final double B = 0.75;
+
+  private Search() {}
+
+  static int run(String[] args) {
+    Path index = DEFAULT_INDEX;
+    int top = 10;
+    boolean json = false;
+    StringBuilder query = new StringBuilder();
+    for (int i = 1; i < args.length; i++) {
+      if ("--index".equals(args[i]) && i + 1 < args.length) index = Paths.get(args[++i]);
+      else if ("--top".equals(args[i]) && i + 1 < args.length) top = parseTop(args[++i]);
+      else if ("--json".equals(args[i])) json = true;
+      else query.append(query.length() == 0 ? "" : " ").append(args[i]);
+    }
+    if (query.toString().isBlank() || top < 1) {
+      System.err.println("search: \"query\" [--index out/search.idx] [--top N] [--json]");
+      return 4;
+    }
+    if (!Files.isRegularFile(index)) {
+      System.err.println("search: no index at " + index + "; build one with `fdml index <path> --search --out " + index.resolveSibling("index.json") + "`");
+      return 4;
+    }
+
+    Hits hits;
+    long t0 = System.nanoTime();
+    try {
+      hits = search(SearchIndex.open(index), query.toString(), top);
+    } catch (IOException | IllegalArgumentException e) {
+      System.err.println("search: " + e.getMessage());
+      return 4;
+    }
+    double ms = (System.nanoTime() - t0) / 1e6;
+
+    if (json) {
+      System.out.println(toJson(query.toString(), hits));
+    } else {
+      for (int i = 0; i < hits.docs.length; i++) {
+        System.out.printf(Locale.ROOT, "%8.4f  %s  %s%n", hits.scores[i], hits.files[i], hits.titles[i]);
+      }
+    }
+    System.err.printf(Locale.ROOT, "search: %d match(es), %.1f ms%n", hits.total, ms);
+    return 0;
+  }
+
+  /** The best {@code top} matches, best first, and how many documents matched in all. */
+  static final class Hits {
+    final int total;
+    final int[] docs;
+    final double[] scores;
+    final String[] files;
+    final String[] titles;
+
+    Hits(int total, int[] docs, double[] scores, String[] files, String[] titles) {
+      this.total = total;
+      this.docs = docs;
+      this.scores = scores;
+      this.files = files;
+      this.titles = titles;
+    }
+  }
+
+  static Hits search(SearchIndex idx, String query, int top) {
+    Node root = new Parser(query).parse();
+    Evaluation ev = new Evaluation(idx);
+    int[] matched = root == null ? new int[0] : root.docs(ev);
+
+    // BM25 summed term by term, each walking its postings once; only matched documents are ranked.
+    Set<String> terms = new LinkedHashSet<>();
+    if (root != null) root.terms(terms);
+    double avg = idx.averageLength();
+    double[] score = new double[idx.docs()];
+    for (String t : terms) {
+      SearchIndex.Postings p = ev.postings(t, false);
+      if (p == null) continue;
+      int df = p.docs.length;
+      double idf = Math.log(1 + (idx.docs() - df + 0.5) / (df + 0.5));
+      for (int i = 0; i < df; i++) {
+        int d = p.docs[i];
+        int tf = p.freqs[i];
+        double norm = K1 * (1 - B + B * (avg == 0 ? 1 : idx.length(d) / avg));
+        score[d] += idf * tf * (K1 + 1) / (tf + norm);
+      }
+    }
+
+    PriorityQueue<double[]> best = new PriorityQueue<>(top + 1, (a, b) -> a[0] != b[0] ? Double.compare(a[0], b[0]) : Double.compare(b[1], a[1]));
+    for (int d : matched) {
+      if (best.size() == top && score[d] <= best.peek()[0]) continue;
+      best.add(new double[] {score[d], d});
+      if (best.size() > top) best.poll();
+    }
+
+    int n = best.size();
+    int[] docs = new int[n];
+    double[] scores = new double[n];
+    String[] files = new String[n];
+    String[] titles = new String[n];
+    for (int i = n - 1; i >= 0; i--) {
+      double[] h = best.poll();
+      docs[i] = (int) h[1];
+      scores[i] = h[0];
+      files[i] = idx.file(docs[i]);
+      titles[i] = idx.title(docs[i]);
+    }
+    return new Hits(matched.length, docs, scores, files, titles);
+  }
+
+  static String toJson(String query, Hits hits) {
+    StringBuilder sb = new StringBuilder();
+    sb.append("{\"query\":\"").append(MainJson.esc(query)).append("\",\"total\":").append(hits.total).append(",\"results\":[");
+    for (int i = 0; i < hits.docs.length; i++) {
+      if (i > 0) sb.append(",");
+      sb.append("{\"file\":\"").append(MainJson.esc(hits.files[i]))
+        .append("\",\"title\":\"").append(MainJson.esc(hits.titles[i]))
+        .append("\",\"score\":").append(String.format(Locale.ROOT, "%.4f", hits.scores[i])).append("}");
+    }
+    return sb.append("]}").toString();
+  }
+
+  private static int parseTop(String raw) {
+    try {
+      return Integer.parseInt(raw.trim());
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+
+  // ---- query evaluation ----
+
+  /** Decoded postings for the query's terms, each read once. */
+  private static final class Evaluation {
+    final SearchIndex idx;
+    final Map<String, SearchIndex.Postings> plain = new HashMap<>();
+    final Map<String, SearchIndex.Postings> positional = new HashMap<>();
+
+    Evaluation(SearchIndex idx) {
+      this.idx = idx;
+    }
+
+    /** Null when no document has the term. */
+    SearchIndex.Postings postings(String term, boolean withPositions) {
+      SearchIndex.Postings p = positional.get(term);
+      if (p != null || withPositions) {
+        if (p == null) {
+          int t = idx.lookup(term);
+          if (t < 0) return null;
+          positional.put(term, p = idx.postings(t, true));
+        }
+        return p;
+      }
+      p = plain.get(term);
+      if (p == null) {
+        int t = idx.lookup(term);
+        if (t < 0) return null;
+        plain.put(term, p = idx.postings(t, false));
+      }
+      return p;
+    }
+  }
+
+  private interface Node {
+    /** Matching documents, ascending. */
+    int[] docs(Evaluation ev);
+
+    void terms(Set<String> out);
+  }
+
+  private static final class Term implements Node {
+    final String term;
+
+    Term(String term) {
+      this.term = term;
+    }
+
+    public int[] docs(Evaluation ev) {
+      SearchIndex.Postings p = ev.postings(term, false);
+      return p == null ? new int[0] : p.docs;
+    }
+
+    public void terms(Set<String> out) {
+      out.add(term);
+    }
+  }
+
+  private static final class Phrase implements Node {
+    final List<String> terms;
+
+    Phrase(List<String> terms) {
+      this.terms = terms;
+    }
+
+    public int[] docs(Evaluation ev) {
+      SearchIndex.Postings[] ps = new SearchIndex.Postings[terms.size()];
+      for (int i = 0; i < ps.length; i++) {
+        ps[i] = ev.postings(terms.get(i), true);
+        if (ps[i] == null) return new int[0];
+      }
+      int[] candidates = ps[0].docs;
+      for (int i = 1; i < ps.length; i++) candidates = intersect(candidates, ps[i].docs);
+      int[] out = new int[candidates.length];
+      int n = 0;
+      for (int d : candidates) if (adjacent(ps, d)) out[n++] = d;
+      return Arrays.copyOf(out, n);
+    }
+
+    /** True when some position of the first term is followed by each of the others in turn. */
+    private static boolean adjacent(SearchIndex.Postings[] ps, int doc) {
+      int[] at = new int[ps.length];
+      for (int i = 0; i < ps.length; i++) at[i] = Arrays.binarySearch(ps[i].docs, doc);
+      SearchIndex.Postings first = ps[0];
+      for (int k = first.start[at[0]]; k < first.start[at[0] + 1]; k++) {
+        int p = first.positions[k];
+        boolean all = true;
+        for (int i = 1; i < ps.length && all; i++) {
+          SearchIndex.Postings q = ps[i];
+          all = Arrays.binarySearch(q.positions, q.start[at[i]], q.start[at[i] + 1], p + i) >= 0;
+        }
+        if (all) return true;
+      }
+      return false;
+    }
+
+    public void terms(Set<String> out) {
+      out.addAll(terms);
+    }
+  }
+
+  private static final class And implements Node {
+    final List<Node> parts;
+
+    And(List<Node> parts) {
+      this.parts = parts;
+    }
+
+    public int[] docs(Evaluation ev) {
+      int[] out = parts.get(0).docs(ev);
+      for (int i = 1; i < parts.size() && out.length > 0; i++) out = intersect(out, parts.get(i).docs(ev));
+      return out;
+    }
+
+    public void terms(Set<String> out) {
+      for (Node n : parts) n.terms(out);
+    }
+  }
+
+  private static final class Or implements Node {
+    final List<Node> parts;
+
+    Or(List<Node> parts) {
+      this.parts = parts;
+    }
+
+    public int[] docs(Evaluation ev) {
+      int[] out = parts.get(0).docs(ev);
+      for (int i = 1; i < parts.size(); i++) out = union(out, parts.get(i).docs(ev));
+      return out;
+    }
+
+    public void terms(Set<String> out) {
+      for (Node n : parts) n.terms(out);
+    }
+  }
+
+  static int[] intersect(int[] a, int[] b) {
+    int[] out = new int[Math.min(a.length, b.length)];
+    int i = 0, j = 0, n = 0;
+    while (i < a.length && j < b.length) {
+      if (a[i] < b[j]) i++;
+      else if (a[i] > b[j]) j++;
+      else { out[n++] = a[i]; i++; j++; }
+    }
+    return Arrays.copyOf(out, n);
+  }
+
+  static int[] union(int[] a, int[] b) {
+    int[] out = new int[a.length + b.length];
+    int i = 0, j = 0, n = 0;
+    while (i < a.length || j < b.length) {
+      if (j == b.length || (i < a.length && a[i] < b[j])) out[n++] = a[i++];
+      else if (i == a.length || b[j] < a[i]) out[n++] = b[j++];
+      else { out[n++] = a[i++]; j++; }
+    }
+    return Arrays.copyOf(out, n);
+  }
+
+  // ---- query parsing ----
+
+  /** {@code or := and ("OR" and)*; and := unit ("AND"? unit)*; unit := word | "phrase" | "(" or ")"}. */
+  private static final class Parser {
+    private final List<String> lexemes = new ArrayList<>();
+    private int at;
+
+    Parser(String query) {
+      int i = 0, n = query.length();
+      while (i < n) {
+        char c = query.charAt(i);
+        if (Character.isWhitespace(c)) {
+          i++;
+        } else if (c == '(' || c == ')') {
+          lexemes.add(String.valueOf(c));
+          i++;
+        } else if (c == '"') {
+          int end = query.indexOf('"', i + 1);
+          if (end < 0) end = n;
+          lexemes.add(query.substring(i, end));   // keeps the opening quote as a marker
+          i = end + 1;
+        } else {
+          int s = i;
+          while (i < n && !Character.isWhitespace(query.charAt(i)) && "()\"".indexOf(query.charAt(i)) < 0) i++;
+          lexemes.add(query.substring(s, i));
+        }
+      }
+    }
+
+    /** Null when the query has no searchable words. */
+    Node parse() {
+      Node n = or();
+      if (at < lexemes.size()) throw new IllegalArgumentException("unexpected '" + lexemes.get(at) + "' in query");
+      return n;
+    }
+
+    private Node or() {
+      List<Node> parts = new ArrayList<>();
+      add(parts, and());
+      while (at < lexemes.size() && "OR".equals(lexemes.get(at))) {
+        at++;
+        add(parts, and());
+      }
+      return parts.isEmpty() ? null : parts.size() == 1 ? parts.get(0) : new Or(parts);
+    }
+
+    private Node and() {
+      List<Node> parts = new ArrayList<>();
+      while (at < lexemes.size() && !"OR".equals(lexemes.get(at)) && !")".equals(lexemes.get(at))) {
+        if ("AND".equals(lexemes.get(at))) {
+          at++;
+          continue;
+        }
+        add(parts, unit());
+      }
+      return parts.isEmpty() ? null : parts.size() == 1 ? parts.get(0) : new And(parts);
+    }
+
+    private Node unit() {
+      String lex = lexemes.get(at++);
+      if ("(".equals(lex)) {
+        Node n = or();
+        if (at >= lexemes.size() || !")".equals(lexemes.get(at))) throw new IllegalArgumentException("missing ')' in query");
+        at++;
+        return n;
+      }
+      List<String> words = SearchIndex.tokens(lex.startsWith("\"") ? lex.substring(1) : lex);
+      if (words.isEmpty()) return null;
+      return words.size() == 1 ? new Term(words.get(0)) : new Phrase(words);
+    }
+
+    private static void add(List<Node> parts, Node n) {
+      if (n != null) parts.add(n);
+    }
+  }
+}
@@ -0,0 +1,366 @@
+package org.fdml.cli;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The full-text index {@code fdml index --search} writes next to {@code index.json} and
+ * {@code fdml search} reads: each document's title, notes and step actions, tokenized, as an
+ * inverted index with positions.
+ *
+ * Tokens are maximal runs of letters and digits, lower-cased. Positions run through title, notes
+ * and each step action in turn, with a one-position gap between them so a phrase never spans two.
+ * A term's postings are, per document in order, the doc-id delta, the term frequency and the
+ * position deltas, all as varints.
+ *
+ * The file is mapped rather than read: a header, the document lengths, the file and title of each
+ * document, then the terms sorted by their UTF-8 bytes with their document frequencies and
+ * postings offsets. A lookup is a binary search over the terms, so a query only touches the
+ * postings of its own terms.
+ */
+final class SearchIndex {
+  static final String FILE_NAME = "search.idx";
+
+  private static final int MAGIC = 0x46444d53;     // "FDMS"
+  private static final int FORMAT = 1;
+  private static final int HEADER = 4 + 4 + 4 + 4 + 8;
+
+  private final ByteBuffer buf;
+  private final int docs;
+  private final int terms;
+  private final long totalLength;
+  private final IntBuffer docLength;
+  private final IntBuffer docInfoOffset;
+  private final int docInfoStart;
+  private final IntBuffer termOffset;
+  private final int termStart;
+  private final IntBuffer docFreq;
+  private final IntBuffer postingsOffset;
+  private final int postingsStart;
+
+  private SearchIndex(ByteBuffer buf) throws IOException {
+    this.buf = buf;
+    if (buf.getInt(0) != MAGIC || buf.getInt(4) != FORMAT) throw new IOException("not an fdml search index (or from another build)");
+    docs = buf.getInt(8);
+    terms = buf.getInt(12);
+    totalLength = buf.getLong(16);
+    int at = HEADER;
+    docLength = ints(at, docs);
+    at += 4 * docs;
+    docInfoOffset = ints(at, docs + 1);
+    at += 4 * (docs + 1);
+    docInfoStart = at;
+    at += docInfoOffset.get(docs);
+    termOffset = ints(at, terms + 1);
+    at += 4 * (terms + 1);
+    termStart = at;
+    at += termOffset.get(terms);
+    docFreq = ints(at, terms);
+    at += 4 * terms;
+    postingsOffset = ints(at, terms + 1);
+    at += 4 * (terms + 1);
+    postingsStart = at;
+  }
+
+  /** The index file that goes with an {@code index.json} written to {@code indexOut}. */
+  static Path besides(Path indexOut) {
+    return indexOut.resolveSibling(FILE_NAME);
+  }
+
+  static SearchIndex open(Path file) throws IOException {
+    try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+      if (ch.size() > Integer.MAX_VALUE) throw new IOException("search index too large: " + file);
+      return new SearchIndex(ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()));
+    }
+  }
+
+  int docs() {
+    return docs;
+  }
+
+  double averageLength() {
+    return docs == 0 ? 0 : (double) totalLength / docs;
+  }
+
+  int length(int doc) {
+    return docLength.get(doc);
+  }
+
+  String file(int doc) {
+    return docString(doc, 0);
+  }
+
+  String title(int doc) {
+    return docString(doc, 1);
+  }
+
+  /** The term's number, or -1 when no document contains it. */
+  int lookup(String term) {
+    byte[] key = term.getBytes(StandardCharsets.UTF_8);
+    int lo = 0, hi = terms - 1;
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      int c = compareTerm(mid, key);
+      if (c < 0) lo = mid + 1;
+      else if (c > 0) hi = mid - 1;
+      else return mid;
+    }
+    return -1;
+  }
+
+  int docFreq(int term) {
+    return docFreq.get(term);
+  }
+
+  /** A term's postings, decoded into primitive arrays; positions only when asked for. */
+  Postings postings(int term, boolean withPositions) {
+    int df = docFreq.get(term);
+    Postings p = new Postings(df);
+    ByteBuffer in = buf.duplicate();
+    in.position(postingsStart + postingsOffset.get(term));
+    int doc = 0;
+    int[] pos = withPositions ? new int[Math.max(16, df * 2)] : null;
+    int n = 0;
+    for (int i = 0; i < df; i++) {
+      doc += readVarint(in);
+      int tf = readVarint(in);
+      p.docs[i] = doc;
+      p.freqs[i] = tf;
+      if (withPositions) {
+        p.start[i] = n;
+        if (n + tf > pos.length) pos = Arrays.copyOf(pos, Math.max(pos.length * 2, n + tf));
+        int at = 0;
+        for (int j = 0; j < tf; j++) pos[n++] = at += readVarint(in);
+      } else {
+        for (int j = 0; j < tf; j++) readVarint(in);
+      }
+    }
+    if (withPositions) {
+      p.start[df] = n;
+      p.positions = pos;
+    }
+    return p;
+  }
+
+  /** One term's documents (ascending), frequencies and, optionally, positions. */
+  static final class Postings {
+    final int[] docs;
+    final int[] freqs;
+    /** Positions of {@code docs[i]} are {@code positions[start[i]] .. positions[start[i + 1] - 1]}. */
+    final int[] start;
+    int[] positions;
+
+    Postings(int df) {
+      docs = new int[df];
+      freqs = new int[df];
+      start = new int[df + 1];
+    }
+  }
+
+  /** Lower-cased runs of letters and digits, in order. */
+  static List<String> tokens(String text) {
+    List<String> out = new ArrayList<>();
+    if (text == null) return out;
+    int i = 0, n = text.length();
+    while (i < n) {
+      while (i < n && !Character.isLetterOrDigit(text.codePointAt(i))) i += Character.charCount(text.codePointAt(i));
+      int s = i;
+      while (i < n && Character.isLetterOrDigit(text.codePointAt(i))) i += Character.charCount(text.codePointAt(i));
+      if (i > s) out.add(text.substring(s, i).toLowerCase(Locale.ROOT));
+    }
+    return out;
+  }
+
+  /** Collects documents in memory, postings already varint-encoded, and writes the index file. */
+  static final class Builder {
+    private final List<String> files = new ArrayList<>();
+    private final List<String> titles = new ArrayList<>();
+    private int[] lengths = new int[64];
+    private long totalLength;
+    private final Map<String, TermPostings> postings = new HashMap<>();
+
+    /** Adds the next document; documents are numbered in the order they are added. */
+    void add(String file, String title, String notes, String[] actions) {
+      int doc = files.size();
+      files.add(file);
+      titles.add(title == null ? "" : title);
+
+      Map<String, int[]> positions = new HashMap<>();   // term -> [count, p0, p1, ...]
+      int[] pos = {0};
+      addField(positions, pos, title);
+      addField(positions, pos, notes);
+      for (String a : actions) addField(positions, pos, a);
+
+      int length = 0;
+      for (Map.Entry<String, int[]> e : positions.entrySet()) {
+        int[] ps = e.getValue();
+        postings.computeIfAbsent(e.getKey(), k -> new TermPostings()).add(doc, ps);
+        length += ps[0];
+      }
+      if (doc == lengths.length) lengths = Arrays.copyOf(lengths, doc * 2);
+      lengths[doc] = length;
+      totalLength += length;
+    }
+
+    private static void addField(Map<String, int[]> positions, int[] pos, String text) {
+      List<String> ts = tokens(text);
+      if (ts.isEmpty()) return;
+      for (String t : ts) {
+        int[] ps = positions.get(t);
+        if (ps == null) ps = new int[4];
+        else if (ps[0] + 1 == ps.length) ps = Arrays.copyOf(ps, ps.length * 2);
+        ps[++ps[0]] = pos[0]++;
+        positions.put(t, ps);
+      }
+      pos[0]++;   // the gap that keeps phrases inside one field or step
+    }
+
+    void write(Path file) throws IOException {
+      int docs = files.size();
+      String[] terms = postings.keySet().toArray(new String[0]);
+      byte[][] keys = new byte[terms.length][];
+      Integer[] order = new Integer[terms.length];
+      for (int i = 0; i < terms.length; i++) {
+        keys[i] = terms[i].getBytes(StandardCharsets.UTF_8);
+        order[i] = i;
+      }
+      Arrays.sort(order, (a, b) -> Arrays.compareUnsigned(keys[a], keys[b]));
+
+      ByteArrayOutputStream info = new ByteArrayOutputStream();
+      int[] infoOffset = new int[docs + 1];
+      for (int d = 0; d < docs; d++) {
+        infoOffset[d] = info.size();
+        writeString(info, files.get(d));
+        writeString(info, titles.get(d));
+      }
+      infoOffset[docs] = info.size();
+
+      if (file.getParent() != null) Files.createDirectories(file.getParent());
+      Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+      try {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+          out.writeInt(MAGIC);
+          out.writeInt(FORMAT);
+          out.writeInt(docs);
+          out.writeInt(terms.length);
+          out.writeLong(totalLength);
+          for (int d = 0; d < docs; d++) out.writeInt(lengths[d]);
+          for (int o : infoOffset) out.writeInt(o);
+          info.writeTo(out);
+          int at = 0;
+          for (Integer t : order) {
+            out.writeInt(at);
+            at += keys[t].length;
+          }
+          out.writeInt(at);
+          for (Integer t : order) out.write(keys[t]);
+          for (Integer t : order) out.writeInt(postings.get(terms[t]).df);
+          at = 0;
+          for (Integer t : order) {
+            out.writeInt(at);
+            at += postings.get(terms[t]).length;
+          }
+          out.writeInt(at);
+          for (Integer t : order) {
+            TermPostings p = postings.get(terms[t]);
+            out.write(p.bytes, 0, p.length);
+          }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } finally {
+        Files.deleteIfExists(tmp);
+      }
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String s) {
+      byte[] b = s.getBytes(StandardCharsets.UTF_8);
+      writeVarint(out, b.length);
+      out.write(b, 0, b.length);
+    }
+  }
+
+  /** One term's postings while building, as varint bytes. */
+  private static final class TermPostings {
+    byte[] bytes = new byte[16];
+    int length;
+    int df;
+    int lastDoc;
+
+    void add(int doc, int[] ps) {
+      put(doc - lastDoc);
+      lastDoc = doc;
+      df++;
+      put(ps[0]);
+      int prev = 0;
+      for (int i = 1; i <= ps[0]; i++) {
+        put(ps[i] - prev);
+        prev = ps[i];
+      }
+    }
+
+    private void put(int v) {
+      if (length + 5 > bytes.length) bytes = Arrays.copyOf(bytes, bytes.length * 2);
+      while ((v & ~0x7f) != 0) {
+        bytes[length++] = (byte) ((v & 0x7f) | 0x80);
+        v >>>= 7;
+      }
+      bytes[length++] = (byte) v;
+    }
+  }
+
+  static void writeVarint(ByteArrayOutputStream out, int v) {
+    while ((v & ~0x7f) != 0) {
+      out.write((v & 0x7f) | 0x80);
+      v >>>= 7;
+    }
+    out.write(v);
+  }
+
+  static int readVarint(ByteBuffer in) {
+    int v = 0;
+    for (int shift = 0; ; shift += 7) {
+      byte b = in.get();
+      v |= (b & 0x7f) << shift;
+      if (b >= 0) return v;
+    }
+  }
+
+  private IntBuffer ints(int at, int count) {
+    return buf.duplicate().position(at).slice().asIntBuffer().limit(count);
+  }
+
+  private String docString(int doc, int which) {
+    ByteBuffer in = buf.duplicate();
+    in.position(docInfoStart + docInfoOffset.get(doc));
+    for (int i = 0; ; i++) {
+      int len = readVarint(in);
+      if (i == which) {
+        byte[] b = new byte[len];
+        in.get(b);
+        return new String(b, StandardCharsets.UTF_8);
+      }
+      in.position(in.position() + len);
+    }
+  }
+
+  private int compareTerm(int term, byte[] key) {
+    int from = termStart + termOffset.get(term);
+    int len = termOffset.get(term + 1) - termOffset.get(term);
+    int n = Math.min(len, key.length);
+    for (int i = 0; i < n; i++) {
+      int c = Integer.compare(buf.get(from + i) & 0xff, key[i] & 0xff);
+      if (c != 0) return c;
+    }
+    return Integer.compare(len, key.length);
+  }
+}
@@ -0,0 +1,319 @@
+package org.fdml.cli;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import net.sf.saxon.s9api.SaxonApiException;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.ext.DefaultHandler2;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.transform.stream.StreamSource;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * {@code fdml serve}: the CLI's checks over HTTP from one warm JVM.
+ *
+ * The schema, compiled Schematron, XPaths and render stylesheet are compiled once at startup and
+ * shared by every request (they are all thread-safe, see {@link EngineContext}), so a request
+ * pays only for parsing and checking its own documents. Requests run on a fixed pool of
+ * {@code --threads} workers.
+ *
+ * Each endpoint takes either {@code path} query parameters (files or directories, resolved
+ * against the server's working directory) or one XML document as the POST body, labelled by the
+ * optional {@code name} parameter. Responses are the JSON the matching {@code --json} command
+ * prints, plus an {@code X-Fdml-Ok} header saying whether every check passed; render returns the
+ * HTML card.
+ *
+ * The server is meant for the local machine only. Requests whose {@code Host} is not the address
+ * it listens on, or that carry a foreign {@code Origin}, are refused, so a web page cannot reach it
+ * by DNS rebinding or a cross-site form post. {@code path} must stay under the working directory,
+ * and a posted document may not have a DOCTYPE, so no parser downstream resolves an entity.
+ */
+final class Serve {
+  static final int DEFAULT_PORT = 7878;
+  static final int MAX_BODY = 16 << 20;
+  private static final Path CARD_XSL = Paths.get("xslt/fdml-to-card.xsl");
+
+  private Serve() {}
+
+  static int run(String[] args) {
+    String host = "127.0.0.1";
+    int port = DEFAULT_PORT;
+    int threads = Runtime.getRuntime().availableProcessors();
+    for (int i = 1; i < args.length; i++) {
+      String a = args[i];
+      String v = i + 1 < args.length ? args[i + 1] : null;
+      if ("--host".equals(a) && v != null) { host = v; i++; }
+      else if ("--port".equals(a) && v != null) { port = parsePort(v); i++; }
+      else if ("--threads".equals(a) && v != null) { threads = Parallel.parseJobs(v); i++; }
+      else { port = -1; break; }
+    }
+    if (port < 0 || threads < 1) {
+      System.err.println("serve: [--host H] [--port N] [--threads N|auto]");
+      return 4;
+    }
+
+    HttpServer server;
+    try {
+      server = start(host, port, threads);
+    } catch (IOException e) {
+      System.err.println("serve: cannot listen on " + host + ":" + port + ": " + e.getMessage());
+      return 4;
+    }
+    System.err.printf("serve: listening on http://%s:%d (%d worker thread(s)); Ctrl-C to stop%n",
+        host, server.getAddress().getPort(), threads);
+
+    CountDownLatch stopped = new CountDownLatch(1);
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+      server.stop(0);
+      stopped.countDown();
+    }));
+    try {
+      stopped.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    return 0;
+  }
+
+  /** Compiles the engines, then serves on {@code host:port} (0 picks a free port) until stopped. */
+  static HttpServer start(String host, int port, int threads) throws IOException {
+    EngineContext ctx = EngineContext.shared();
+    ctx.xsdValidator();
+    ctx.schematronValidator();
+    ctx.stylesheet(CARD_XSL);
+
+    HttpServer server = HttpServer.create(new InetSocketAddress(host, port), 0);
+    ExecutorService pool = Parallel.newPool(threads);
+    server.setExecutor(pool);
+    Set<String> hosts = hostNames(host, server.getAddress().getPort());
+    server.createContext("/", ex -> handle(ex, hosts));
+    server.start();
+    return server;
+  }
+
+  /** The {@code Host} values a request may carry: the listen address and, on loopback, its aliases. */
+  private static Set<String> hostNames(String host, int port) throws IOException {
+    Set<String> names = new HashSet<>();
+    names.add(host.toLowerCase(Locale.ROOT) + ":" + port);
+    if (InetAddress.getByName(host).isLoopbackAddress()) {
+      for (String alias : List.of("localhost", "127.0.0.1", "[::1]")) names.add(alias + ":" + port);
+    }
+    return names;
+  }
+
+  private static void handle(HttpExchange ex, Set<String> hosts) throws IOException {
+    try {
+      String host = ex.getRequestHeaders().getFirst("Host");
+      String origin = ex.getRequestHeaders().getFirst("Origin");
+      if (host == null || !hosts.contains(host.toLowerCase(Locale.ROOT))
+          || (origin != null && !hosts.contains(origin.toLowerCase(Locale.ROOT).replaceFirst("^https?://", "")))) {
+        send(ex, 403, error("only requests to " + ex.getLocalAddress().getHostString() + " from the same origin are served"),
+            "application/json", null);
+        return;
+      }
+      String method = ex.getRequestMethod();
+      if (!"GET".equals(method) && !"POST".equals(method)) {
+        send(ex, 405, error("use GET or POST"), "application/json", null);
+        return;
+      }
+      Request req = Request.of(ex);
+      String path = ex.getRequestURI().getPath();
+      if ("/health".equals(path)) {
+        send(ex, 200, "{\"ok\":true}", "application/json", null);
+      } else if ("/render".equals(path)) {
+        render(ex, req);
+      } else if (JsonCommands.NAMES.contains(path.substring(1))) {
+        CorpusWalker.Entry doc = req.body != null ? req.entry() : null;
+        JsonCommands.Result r = JsonCommands.run(path.substring(1), doc != null ? List.of() : req.paths(), doc, req.flag("explain"));
+        send(ex, 200, r.payload, "application/json", r.ok);
+      } else {
+        send(ex, 404, error("unknown endpoint " + path), "application/json", null);
+      }
+    } catch (BadRequest e) {
+      send(ex, e.status, error(e.getMessage()), "application/json", null);
+    } catch (IllegalArgumentException e) {
+      send(ex, 400, error(e.getMessage()), "application/json", null);
+    } catch (RuntimeException | SaxonApiException e) {
+      send(ex, 500, error(e.getMessage()), "application/json", null);
+    } finally {
+      ex.close();
+    }
+  }
+
+  private static void render(HttpExchange ex, Request req) throws IOException, SaxonApiException {
+    CorpusWalker.Entry e = req.body != null ? req.entry() : null;
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try {
+      Renderer.render(e != null ? e.source() : new StreamSource(req.onePath().toFile()), CARD_XSL, out);
+    } finally {
+      if (e != null) e.release();
+    }
+    send(ex, 200, out.toByteArray(), "text/html; charset=utf-8", null);
+  }
+
+  private static String error(String message) {
+    return "{\"error\":\"" + MainJson.esc(String.valueOf(message)) + "\"}";
+  }
+
+  private static void send(HttpExchange ex, int status, String body, String type, Boolean ok) throws IOException {
+    send(ex, status, body.getBytes(StandardCharsets.UTF_8), type + (type.contains("charset") ? "" : "; charset=utf-8"), ok);
+  }
+
+  private static void send(HttpExchange ex, int status, byte[] body, String type, Boolean ok) throws IOException {
+    ex.getResponseHeaders().set("Content-Type", type);
+    if (ok != null) ex.getResponseHeaders().set("X-Fdml-Ok", ok.toString());
+    ex.sendResponseHeaders(status, body.length);
+    try (OutputStream os = ex.getResponseBody()) {
+      os.write(body);
+    }
+  }
+
+  /**
+   * Refuses a posted document that declares a DOCTYPE, reading no further than its root tag.
+   * Without one no entity can be declared, so the stages' own parsers have nothing to resolve.
+   */
+  static void refuseDoctype(byte[] body) {
+    try {
+      SAXParserFactory f = SAXParserFactory.newInstance();
+      f.setNamespaceAware(true);
+      f.setFeature("http://xml.org/sax/features/external-general-entities", false);
+      f.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
+      f.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+      XMLReader r = f.newSAXParser().getXMLReader();
+      DefaultHandler2 h = new DefaultHandler2() {
+        @Override public void startDTD(String name, String publicId, String systemId) {
+          throw new BadRequest(400, "DOCTYPE declarations are not accepted");
+        }
+        @Override public void startElement(String uri, String local, String qName, Attributes atts) throws SAXException {
+          throw new SAXException("root reached");
+        }
+      };
+      r.setContentHandler(h);
+      r.setProperty("http://xml.org/sax/properties/lexical-handler", h);
+      r.parse(new InputSource(new ByteArrayInputStream(body)));
+    } catch (SAXException | IOException e) {
+      // Root reached, or not well-formed before it: the stages report the latter in their own terms.
+    } catch (ParserConfigurationException e) {
+      throw new RuntimeException("Failed to create SAX parser", e);
+    }
+  }
+
+  /** Absolute and normalized, with symlinks resolved when the file exists. */
+  private static Path realPath(Path p) {
+    Path abs = p.toAbsolutePath().normalize();
+    try {
+      return Files.exists(abs) ? abs.toRealPath() : abs;
+    } catch (IOException e) {
+      return abs;
+    }
+  }
+
+  private static int parsePort(String raw) {
+    try {
+      int p = Integer.parseInt(raw.trim());
+      return p >= 0 && p <= 65535 ? p : -1;
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  private static final class BadRequest extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+    final int status;
+
+    BadRequest(int status, String message) {
+      super(message);
+      this.status = status;
+    }
+  }
+
+  /** Query parameters and, for a POST with a body, the posted document. */
+  private static final class Request {
+    final Map<String, List<String>> params;
+    final byte[] body;
+
+    private Request(Map<String, List<String>> params, byte[] body) {
+      this.params = params;
+      this.body = body;
+    }
+
+    static Request of(HttpExchange ex) throws IOException {
+      Map<String, List<String>> params = new LinkedHashMap<>();
+      String q = ex.getRequestURI().getRawQuery();
+      if (q != null) {
+        for (String pair : q.split("&")) {
+          if (pair.isEmpty()) continue;
+          int eq = pair.indexOf('=');
+          String k = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+          String v = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+          params.computeIfAbsent(k, x -> new ArrayList<>()).add(v);
+        }
+      }
+      byte[] body = null;
+      if ("POST".equals(ex.getRequestMethod())) {
+        try (InputStream in = ex.getRequestBody()) {
+          byte[] b = in.readNBytes(MAX_BODY + 1);
+          if (b.length > MAX_BODY) throw new BadRequest(413, "document larger than " + MAX_BODY + " bytes");
+          if (b.length > 0) body = b;
+        }
+      }
+      return new Request(params, body);
+    }
+
+    boolean flag(String name) {
+      List<String> v = params.get(name);
+      return v != null && !v.isEmpty() && !"0".equals(v.get(0)) && !"false".equals(v.get(0));
+    }
+
+    /** The {@code path} parameters, each of which must resolve to somewhere under the working directory. */
+    List<Path> paths() {
+      List<Path> out = new ArrayList<>();
+      Path cwd = realPath(Paths.get(""));
+      for (String p : params.getOrDefault("path", List.of())) {
+        Path path = Paths.get(p);
+        if (!realPath(path).startsWith(cwd)) throw new BadRequest(403, "path outside the working directory: " + p);
+        out.add(path);
+      }
+      if (out.isEmpty()) throw new BadRequest(400, "give path=<file-or-dir> or POST an XML document");
+      return out;
+    }
+
+    Path onePath() {
+      List<Path> ps = paths();
+      if (ps.size() != 1) throw new BadRequest(400, "give exactly one path");
+      return ps.get(0);
+    }
+
+    /** The posted document, named by {@code name} (default {@code request.fdml.xml}). */
+    CorpusWalker.Entry entry() {
+      refuseDoctype(body);
+      List<String> name = params.get("name");
+      return CorpusWalker.of(Paths.get(name != null && !name.isEmpty() ? name.get(0) : "request.fdml.xml"), body);
+    }
+  }
+}
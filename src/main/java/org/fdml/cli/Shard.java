@@ -0,0 +1,78 @@
+package org.fdml.cli;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@code --shard i/n}: one of {@code n} disjoint slices of the input files, {@code i} from 1.
+ *
+ * A file belongs to the slice picked by the SHA-256 of its normalized path, taken relative to the
+ * working directory when it lies under it and written with {@code /}, so every runner of a
+ * checkout agrees on the split whatever its absolute location or OS, and adding or removing a file
+ * never moves the others. Each selected file's position in the full, unsharded input order is kept
+ * so {@link MergeResults} can interleave the shards' reports back into that order.
+ */
+final class Shard {
+  final int index;
+  final int count;
+  /** Selected files (as reported) to their position among all candidates, in order. */
+  final Map<String, Integer> positions = new LinkedHashMap<>();
+
+  private Shard(int index, int count) {
+    this.index = index;
+    this.count = count;
+  }
+
+  /** Parses {@code i/n} with {@code 1 <= i <= n}; null if malformed. */
+  static Shard parse(String raw) {
+    if (raw == null) return null;
+    String[] parts = raw.trim().split("/", -1);
+    if (parts.length != 2) return null;
+    try {
+      int i = Integer.parseInt(parts[0].trim());
+      int n = Integer.parseInt(parts[1].trim());
+      return n >= 1 && i >= 1 && i <= n ? new Shard(i, n) : null;
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  boolean owns(Path file) {
+    return slot(file, count) == index - 1;
+  }
+
+  /** This shard's candidates, recording where each sat among all of them. */
+  List<CorpusWalker.Entry> select(List<CorpusWalker.Entry> planned) {
+    List<CorpusWalker.Entry> out = new ArrayList<>();
+    for (int i = 0; i < planned.size(); i++) {
+      CorpusWalker.Entry e = planned.get(i);
+      if (!owns(e.file)) continue;
+      positions.put(e.file.toString(), i);
+      out.add(e);
+    }
+    return out;
+  }
+
+  @Override
+  public String toString() {
+    return index + "/" + count;
+  }
+
+  static int slot(Path file, int count) {
+    byte[] h = FileBytes.sha256Digest().digest(key(file).getBytes(StandardCharsets.UTF_8));
+    return (int) Long.remainderUnsigned(ByteBuffer.wrap(h).getLong(), count);
+  }
+
+  static String key(Path file) {
+    Path abs = file.toAbsolutePath().normalize();
+    Path cwd = Paths.get("").toAbsolutePath().normalize();
+    Path p = abs.startsWith(cwd) ? cwd.relativize(abs) : abs;
+    return p.toString().replace('\\', '/');
+  }
+}
@@ -2,7 +2,6 @@ package org.fdml.cli;
 
 import net.sf.saxon.s9api.*;
 
-import javax.xml.transform.stream.StreamSource;
 import java.nio.file.*;
 import java.util.*;
 
@@ -56,101 +55,107 @@ class TimingValidator {
   }
 
   static List<FileResult> validateCollect(List<Path> inputs) {
-    List<Path> files = expandAll(inputs);
+    return validateDocs(ParsedDocument.load(EngineContext.shared().xpaths(), inputs));
+  }
+
+  static List<FileResult> validateDocs(List<ParsedDocument> docs) {
     List<FileResult> out = new ArrayList<>();
     try {
-      Processor proc = new Processor(false);
-      DocumentBuilder db = proc.newDocumentBuilder();
-      XPathCompiler xpc = proc.newXPathCompiler();
-
-      for (Path f : files) {
-        if (!looksLikeXml(f)) continue;
-        FileResult r = new FileResult(f);
-
-        XdmNode doc;
-        try {
-          doc = db.build(new StreamSource(f.toFile()));
-        } catch (SaxonApiException e) {
-          r.issues.add(new Issue("bad_meter_format", null, null, 0, "XML parse error: " + e.getMessage()));
-          out.add(r);
-          continue;
-        }
+      for (ParsedDocument d : docs) {
+        FileResult r = validateDoc(d);
+        if (r != null) out.add(r);
+      }
+    } catch (Exception e) {
+      throw new RuntimeException(e);
+    }
+    return out;
+  }
 
-        String meterRaw = string(xpc, "normalize-space(/fdml/meta/meter/@value)", doc);
-        if (meterRaw.isEmpty()) {
-          r.issues.add(new Issue("missing_meter", null, null, 0, "meta/meter/@value is missing"));
-          out.add(r);
-          continue;
-        }
+  /** One loaded document's result, or null when its name does not look like XML. */
+  static FileResult validateDoc(ParsedDocument d) {
+    return looksLikeXml(d.file) ? validateOne(d) : null;
+  }
+
+  static FileResult validateOne(ParsedDocument d) {
+    FileResult r = new FileResult(d.file);
+
+    XdmNode doc;
+    try {
+      doc = d.node();
+    } catch (SaxonApiException e) {
+      r.issues.add(new Issue("bad_meter_format", null, null, 0, "XML parse error: " + e.getMessage()));
+      return r;
+    }
+    XPaths xp = d.xpaths();
+
+    String meterRaw = string(xp, "normalize-space(/fdml/meta/meter/@value)", doc);
+    if (meterRaw.isEmpty()) {
+      r.issues.add(new Issue("missing_meter", null, null, 0, "meta/meter/@value is missing"));
+      return r;
+    }
 
-        Meter meter = parseMeter(meterRaw);
-        if (meter == null) {
-          r.issues.add(new Issue("bad_meter_format", null, meterRaw, 0, "meter must be N/D or additive A+B+.../D"));
-          out.add(r);
+    Meter meter = parseMeter(meterRaw);
+    if (meter == null) {
+      r.issues.add(new Issue("bad_meter_format", null, meterRaw, 0, "meter must be N/D or additive A+B+.../D"));
+      return r;
+    }
+
+    XdmValue figures = eval(xp, "/fdml/body//figure", doc);
+    for (XdmItem it : figures) {
+      XdmNode fig = (XdmNode) it;
+      String figId = string(xp, "string(@id)", fig);
+      if (figId == null || figId.isBlank()) figId = "(no-id)";
+
+      List<Integer> stepBeats = new ArrayList<>();
+      boolean hasBadStep = false;
+
+      XdmValue steps = eval(xp, "./step | ./measureRange/step", fig);
+      for (XdmItem sit : steps) {
+        XdmNode step = (XdmNode) sit;
+        String beatsRaw = string(xp, "string(@beats)", step);
+        Integer beats = parsePositiveInt(beatsRaw);
+        if (beats == null) {
+          r.issues.add(new Issue(
+            "bad_step_beats",
+            figId,
+            meter.raw,
+            0,
+            "step/@beats must be a positive integer"
+          ));
+          hasBadStep = true;
           continue;
         }
+        stepBeats.add(beats);
+      }
 
-        XdmValue figures = eval(xpc, "/fdml/body//figure", doc);
-        for (XdmItem it : figures) {
-          XdmNode fig = (XdmNode) it;
-          String figId = string(xpc, "string(@id)", fig);
-          if (figId == null || figId.isBlank()) figId = "(no-id)";
-
-          List<Integer> stepBeats = new ArrayList<>();
-          boolean hasBadStep = false;
-
-          XdmValue steps = eval(xpc, "./step | ./measureRange/step", fig);
-          for (XdmItem sit : steps) {
-            XdmNode step = (XdmNode) sit;
-            String beatsRaw = string(xpc, "string(@beats)", step);
-            Integer beats = parsePositiveInt(beatsRaw);
-            if (beats == null) {
-              r.issues.add(new Issue(
-                "bad_step_beats",
-                figId,
-                meter.raw,
-                0,
-                "step/@beats must be a positive integer"
-              ));
-              hasBadStep = true;
-              continue;
-            }
-            stepBeats.add(beats);
-          }
-
-          long totalBeats = 0;
-          for (Integer b : stepBeats) totalBeats += b;
-
-          if (hasBadStep) continue;
-
-          if (!alignsToBarLength(totalBeats, meter)) {
-            r.issues.add(new Issue(
-              "off_meter_figure",
-              figId,
-              meter.raw,
-              totalBeats,
-              "figure total beats do not align to bar length " + meter.barLengthCounts
-            ));
-            continue;
-          }
-
-          if (meter.additive && !alignsToAdditivePattern(stepBeats, meter)) {
-            r.issues.add(new Issue(
-              "off_meter_figure",
-              figId,
-              meter.raw,
-              totalBeats,
-              "step boundaries do not align with additive group boundaries"
-            ));
-          }
-        }
+      long totalBeats = 0;
+      for (Integer b : stepBeats) totalBeats += b;
+
+      if (hasBadStep) continue;
 
-        out.add(r);
+      if (!alignsToBarLength(totalBeats, meter)) {
+        r.issues.add(new Issue(
+          "off_meter_figure",
+          figId,
+          meter.raw,
+          totalBeats,
+          "figure total beats do not align to bar length " + meter.barLengthCounts
+        ));
+        continue;
+      }
+
+      if (meter.additive && !alignsToAdditivePattern(stepBeats, meter)) {
+        r.issues.add(new Issue(
+          "off_meter_figure",
+          figId,
+          meter.raw,
+          totalBeats,
+          "step boundaries do not align with additive group boundaries"
+        ));
       }
-    } catch (Exception e) {
-      throw new RuntimeException(e);
     }
-    return out;
+
+    return r;
   }
 
   private static boolean alignsToAdditivePattern(List<Integer> stepBeats, Meter meter) {
@@ -224,36 +229,18 @@ class TimingValidator {
     }
   }
 
-  private static String string(XPathCompiler xpc, String expr, XdmNode node) {
-    try {
-      XdmItem i = xpc.evaluateSingle(expr, node);
-      return i == null ? "" : i.getStringValue();
-    } catch (SaxonApiException e) {
-      return "";
-    }
+  private static String string(XPaths xp, String expr, XdmNode node) {
+    return xp.string(expr, node);
   }
 
-  private static XdmValue eval(XPathCompiler xpc, String expr, XdmNode node) {
+  private static XdmValue eval(XPaths xp, String expr, XdmNode node) {
     try {
-      return xpc.evaluate(expr, node);
+      return xp.evaluate(expr, node);
     } catch (SaxonApiException e) {
       return XdmEmptySequence.getInstance();
     }
   }
 
-  private static List<Path> expandAll(List<Path> inputs) {
-    List<Path> out = new ArrayList<>();
-    for (Path p : inputs) {
-      try {
-        if (Files.isDirectory(p)) Files.walk(p).filter(Files::isRegularFile).forEach(out::add);
-        else out.add(p);
-      } catch (Exception e) {
-        throw new RuntimeException(e);
-      }
-    }
-    return out;
-  }
-
   private static boolean looksLikeXml(Path p) {
     String n = p.getFileName().toString().toLowerCase(Locale.ROOT);
     return n.endsWith(".xml") || n.endsWith(".fdml") || n.endsWith(".fdml.xml");
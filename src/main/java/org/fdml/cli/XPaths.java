@@ -0,0 +1,84 @@
+package org.fdml.cli;
+
+import net.sf.saxon.s9api.*;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compiled XPath expressions for one {@link Processor}.
+ *
+ * The validators, indexer and exporter evaluate the same few dozen expressions for every figure,
+ * step and primitive. Each expression is compiled on first use and the {@link XPathExecutable}
+ * reused afterwards; only a cheap {@link XPathSelector} is created per evaluation. Safe to share
+ * between threads.
+ */
+final class XPaths {
+  private final Processor proc;
+  private final XPathCompiler xpc;
+  private final ConcurrentHashMap<String, XPathExecutable> compiled = new ConcurrentHashMap<>();
+
+  XPaths(Processor proc) {
+    this.proc = proc;
+    this.xpc = proc.newXPathCompiler();
+  }
+
+  Processor processor() {
+    return proc;
+  }
+
+  XPathExecutable compile(String expr) throws SaxonApiException {
+    XPathExecutable exec = compiled.get(expr);
+    if (exec != null) return exec;
+    synchronized (xpc) {
+      exec = compiled.get(expr);
+      if (exec == null) {
+        exec = xpc.compile(expr);
+        compiled.put(expr, exec);
+      }
+    }
+    return exec;
+  }
+
+  XdmValue evaluate(String expr, XdmItem context) throws SaxonApiException {
+    XPathSelector sel = compile(expr).load();
+    sel.setContextItem(context);
+    return sel.evaluate();
+  }
+
+  XdmItem evaluateSingle(String expr, XdmItem context) throws SaxonApiException {
+    XPathSelector sel = compile(expr).load();
+    sel.setContextItem(context);
+    return sel.evaluateSingle();
+  }
+
+  /** String value of the first item, or "" when the result is empty or the expression fails. */
+  String string(String expr, XdmItem context) {
+    try {
+      XdmItem i = evaluateSingle(expr, context);
+      return i == null ? "" : i.getStringValue();
+    } catch (SaxonApiException e) {
+      return "";
+    }
+  }
+
+  /** Effective boolean value; false when the expression fails. */
+  boolean bool(String expr, XdmItem context) {
+    try {
+      XPathSelector sel = compile(expr).load();
+      sel.setContextItem(context);
+      return sel.effectiveBooleanValue();
+    } catch (SaxonApiException e) {
+      return false;
+    }
+  }
+
+  /** Numeric value of the first item; NaN when empty, non-numeric or the expression fails. */
+  double number(String expr, XdmItem context) {
+    try {
+      XdmItem i = evaluateSingle(expr, context);
+      return i == null ? Double.NaN : Double.parseDouble(i.getStringValue());
+    } catch (SaxonApiException | NumberFormatException e) {
+      return Double.NaN;
+    }
+  }
+}
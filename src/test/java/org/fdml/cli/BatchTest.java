@@ -0,0 +1,33 @@
+package org.fdml.cli;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Paths;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BatchTest {
+
+  @Test
+  public void jobLineCarriesIdVerdictAndCommandPayload() {
+    EngineContext ctx = EngineContext.shared();
+    StringBuilder sb = new StringBuilder();
+    int code = Batch.execute("{\"id\":\"v-1\",\"cmd\":\"validate\",\"paths\":[\"corpus/invalid_v12\"]}", 1, sb);
+
+    String payload = MainJson.toJsonValidate(ctx.xsdValidator().validateCollect(List.of(Paths.get("corpus/invalid_v12")), 1));
+    assertEquals(2, code);
+    assertEquals("{\"id\":\"v-1\",\"cmd\":\"validate\",\"ok\":false,\"result\":" + payload + "}", sb.toString());
+  }
+
+  @Test
+  public void badJobsReportAnErrorUnderTheirLineNumber() {
+    StringBuilder sb = new StringBuilder();
+    assertEquals(4, Batch.execute("{\"cmd\":\"render\",\"path\":\"corpus/valid\"}", 7, sb));
+    assertTrue(sb.toString().startsWith("{\"id\":7,\"cmd\":\"render\",\"error\":"), sb.toString());
+
+    sb.setLength(0);
+    assertEquals(4, Batch.execute("{\"id\":3,\"cmd\":\"doctor\"}", 8, sb));
+    assertEquals("{\"id\":3,\"cmd\":\"doctor\",\"error\":\"give \\\"path\\\" or \\\"paths\\\"\"}", sb.toString());
+  }
+}
@@ -0,0 +1,50 @@
+package org.fdml.cli;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CorpusWalkerTest {
+
+  @Test
+  public void keepsFilesWalkOrderAndSkipsNonFdmlSideFiles() throws Exception {
+    Path dir = Paths.get("corpus/valid_ingest_auto");
+    List<Path> walked = new ArrayList<>();
+    try (var w = Files.walk(dir)) {
+      w.filter(Files::isRegularFile).filter(ParsedDocument::looksLikeXml).forEach(walked::add);
+    }
+
+    List<Path> files = CorpusWalker.files(List.of(dir));
+    assertEquals(walked, files, "Expected Files.walk order with only the XML files kept");
+    assertTrue(files.stream().noneMatch(p -> p.toString().endsWith(".json")));
+  }
+
+  @Test
+  public void peeksRootAndVersionWithoutParsingTheWholeFile() throws Exception {
+    Path dir = Files.createTempDirectory("fdml-walk");
+    Files.writeString(dir.resolve("a.fdml.xml"), "<fdml version=\"1.2\"><meta>");
+    Files.writeString(dir.resolve("other.xml"), "<catalog/>");
+    Files.writeString(dir.resolve("notes.json"), "{}");
+    Path sub = Files.createDirectory(dir.resolve("sub"));
+    Files.writeString(sub.resolve("b.fdml"), "<?xml version=\"1.0\"?>\n<!-- c --><fdml/>");
+
+    List<CorpusWalker.Entry> entries = CorpusWalker.walk(List.of(dir, sub.resolve("b.fdml"), dir.resolve("notes.json")));
+    List<String> names = new ArrayList<>();
+    for (var e : entries) names.add(dir.relativize(e.file).toString());
+
+    assertEquals(3, entries.size(), "Expected the duplicate b.fdml dropped and other.xml skipped: " + names);
+    assertTrue(names.contains("a.fdml.xml"));
+    assertTrue(names.contains("sub/b.fdml"));
+    assertEquals("notes.json", names.get(2), "Explicit files are always kept");
+    for (var e : entries) {
+      assertNull(e.bytes, "Expected walk to peek only, leaving the read to the task that uses the file");
+      if (e.file.endsWith("a.fdml.xml")) assertEquals("1.2", e.version);
+      if (e.file.endsWith("b.fdml")) { assertEquals("", e.version); assertFalse(e.explicit); }
+      if (e.file.endsWith("notes.json")) { assertNull(e.version); assertTrue(e.explicit); }
+    }
+  }
+}
@@ -0,0 +1,45 @@
+package org.fdml.cli;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DaemonTest {
+
+  @Test
+  public void forwardedCallsReturnTheCommandsOutputAndExitCode(@TempDir Path tmp) throws Exception {
+    Path socket = tmp.resolve("fdml.sock");
+    Daemon d = Daemon.bind(socket);
+    Thread t = new Thread(d::serve);
+    t.start();
+    try {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      ByteArrayOutputStream err = new ByteArrayOutputStream();
+      int code = Daemon.call(socket, List.of("validate", "corpus/invalid_v12", "--json"), out, err);
+      String expected = MainJson.toJsonValidate(EngineContext.shared().xsdValidator()
+          .validateCollect(List.of(Path.of("corpus/invalid_v12")), 1));
+      assertEquals(2, code);
+      assertEquals(expected + System.lineSeparator(), out.toString(StandardCharsets.UTF_8));
+
+      err.reset();
+      assertEquals(4, Daemon.call(socket, List.of("validate", "--jobs", "0", "corpus/valid"), out, err));
+      assertTrue(err.toString(StandardCharsets.UTF_8).contains("--jobs expects"));
+
+      assertEquals(-1, Daemon.call(socket, List.of("serve"), out, err), "serve never returns, so it keeps its own JVM");
+
+      assertEquals(0, Daemon.call(socket, List.of("daemon", "--stop"), out, err));
+      t.join(5000);
+      assertFalse(t.isAlive());
+      assertFalse(Files.exists(socket));
+    } finally {
+      d.close();
+    }
+  }
+}
@@ -0,0 +1,43 @@
+package org.fdml.cli;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Paths;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DoctorProfileTest {
+
+  @Test
+  public void profilesEveryStageWithoutChangingResults() {
+    EngineContext ctx = EngineContext.shared();
+    var targets = List.of(Paths.get("corpus/valid"), Paths.get("corpus/invalid_timing"));
+    var profile = new DoctorProfile();
+
+    var plain = DoctorStages.run(ParsedDocument.load(ctx.xpaths(), targets), ctx.xsdValidator(), ctx.schematronValidator(), 1);
+    var profiled = DoctorStages.run(ParsedDocument.load(ctx.xpaths(), targets), ctx.xsdValidator(), ctx.schematronValidator(), 3, null, profile);
+
+    assertEquals(
+      MainJson.toJsonDoctor(plain.xsd, plain.schematron, plain.lint, plain.timing, null),
+      MainJson.toJsonDoctor(profiled.xsd, profiled.schematron, profiled.lint, profiled.timing, null));
+
+    assertEquals(profiled.records.size(), profile.fileCount());
+    var stages = profile.stages();
+    assertEquals(List.of(DoctorProfile.Stage.PARSE, DoctorProfile.Stage.XSD, DoctorProfile.Stage.SCHEMATRON,
+        DoctorProfile.Stage.LINT, DoctorProfile.Stage.TIMING, DoctorProfile.Stage.GEOMETRY),
+        stages.stream().map(s -> s.stage).toList());
+    for (var s : stages) {
+      long[] wall = s.values[0];
+      assertTrue(wall[0] <= wall[1] && wall[1] <= wall[2] && wall[2] <= wall[3], s.stage + ": p50 <= p95 <= max <= total");
+    }
+
+    var slowest = profile.slowest(3);
+    assertEquals(3, slowest.size());
+    assertTrue(slowest.get(0).wallNs >= slowest.get(1).wallNs && slowest.get(1).wallNs >= slowest.get(2).wallNs);
+
+    String json = MainJson.toJsonDoctor(profiled.xsd, profiled.schematron, profiled.lint, profiled.timing, null, profile, 3);
+    assertTrue(json.contains("\"profile\":{\"files\":" + profile.fileCount() + ",\"stages\":{\"parse\":{\"count\":"));
+    assertTrue(json.contains("\"slowest\":[{\"file\":"));
+  }
+}
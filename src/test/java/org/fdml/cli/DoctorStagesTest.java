@@ -0,0 +1,38 @@
+package org.fdml.cli;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Paths;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DoctorStagesTest {
+
+  @Test
+  public void concurrentStagesReportExactlyWhatTheSerialRunDoes() {
+    EngineContext ctx = EngineContext.shared();
+    var targets = List.of(Paths.get("corpus/valid"), Paths.get("corpus/invalid_v12"), Paths.get("corpus/invalid_timing"));
+
+    var serial = DoctorStages.run(ParsedDocument.load(ctx.xpaths(), targets), ctx.xsdValidator(), ctx.schematronValidator(), 1);
+    var parallel = DoctorStages.run(ParsedDocument.load(ctx.xpaths(), targets), ctx.xsdValidator(), ctx.schematronValidator(), 4);
+
+    assertFalse(serial.xsd.isEmpty());
+    assertTrue(serial.schematron.stream().anyMatch(r -> !r.ok), "Expected the invalid corpus to produce failures");
+    assertEquals(
+      MainJson.toJsonDoctor(serial.xsd, serial.schematron, serial.lint, serial.timing, null),
+      MainJson.toJsonDoctor(parallel.xsd, parallel.schematron, parallel.lint, parallel.timing, null));
+    assertEquals(
+      DoctorExplain.build(serial.xsd, serial.schematron, serial.lint, serial.timing, serial.geometry),
+      DoctorExplain.build(parallel.xsd, parallel.schematron, parallel.lint, parallel.timing, parallel.geometry));
+  }
+
+  @Test
+  public void droppedTreesAreParsedAgainOnDemand() throws Exception {
+    EngineContext ctx = EngineContext.shared();
+    var docs = ParsedDocument.load(ctx.xpaths(), List.of(Paths.get("corpus/valid")));
+    var run = DoctorStages.run(docs, ctx.xsdValidator(), ctx.schematronValidator(), 4);
+    assertTrue(run.ok());
+    for (ParsedDocument d : docs) assertEquals("fdml", d.xpaths().string("local-name(/*)", d.node()), d.file.toString());
+  }
+}
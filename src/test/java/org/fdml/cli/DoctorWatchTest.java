@@ -0,0 +1,36 @@
+package org.fdml.cli;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.*;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DoctorWatchTest {
+
+  @Test
+  public void recheckCoversChangedBrokenAndDeletedFiles(@TempDir Path dir) throws Exception {
+    Path a = Files.copy(Paths.get("corpus/valid/abdala.fdml.xml"), dir.resolve("a.fdml.xml"));
+    Path b = Files.copy(Paths.get("corpus/valid/example-01.fdml.xml"), dir.resolve("b.fdml.xml"));
+
+    EngineContext ctx = EngineContext.shared();
+    DoctorWatch w = new DoctorWatch(ctx.xpaths(), List.of(dir), ctx.xsdValidator(), ctx.schematronValidator(), 1);
+    assertEquals(2, w.checkAll().size());
+    assertTrue(w.stages().xsd.stream().allMatch(r -> r.ok));
+
+    assertEquals(List.of(a), w.recheck(List.of(a)), "Only the changed file is re-checked");
+    assertEquals(List.of(b), w.recheck(List.of(b)));
+
+    Files.writeString(a, "<fdml version=\"1.0\"><bad></fdml>");
+    assertEquals(List.of(a), w.recheck(List.of(a)));
+    assertFalse(w.stages().xsd.get(0).ok, "The broken save should be reported");
+    assertTrue(w.stages().xsd.get(1).ok);
+
+    Files.delete(a);
+    assertEquals(List.of(), w.recheck(List.of(a)));
+    assertEquals(1, w.stages().xsd.size(), "Deleted files drop out of the summary");
+    assertEquals(b, w.stages().xsd.get(0).file);
+  }
+}
@@ -0,0 +1,33 @@
+package org.fdml.cli;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EngineContextTest {
+
+  @Test
+  public void compiledArtifactsAreBuiltOncePerProcess() {
+    EngineContext ctx = EngineContext.shared();
+    assertSame(ctx, EngineContext.shared());
+    assertSame(ctx.xsdValidator(), ctx.xsdValidator(Paths.get("schema/../schema/fdml.xsd")));
+    assertSame(ctx.schematronValidator(), ctx.schematronValidator());
+    assertSame(ctx.stylesheet(Paths.get("xslt/fdml-to-card.xsl")), ctx.stylesheet(Paths.get("xslt/fdml-to-card.xsl")));
+  }
+
+  @Test
+  public void editedSourceIsCompiledAgain(@TempDir Path tmp) throws Exception {
+    EngineContext ctx = EngineContext.shared();
+    Path xsl = Files.copy(Paths.get("xslt/fdml-to-card.xsl"), tmp.resolve("card.xsl"));
+    var first = ctx.stylesheet(xsl);
+    assertSame(first, ctx.stylesheet(xsl));
+
+    Files.writeString(xsl, Files.readString(xsl) + "<!-- edited -->\n");
+    assertNotSame(first, ctx.stylesheet(xsl), "Expected the stale stylesheet to be replaced");
+  }
+}
@@ -0,0 +1,74 @@
+package org.fdml.cli;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FdmlEngineTest {
+
+  @Test
+  public void bytesStreamsAndFilesGiveTheSameTypedResults() throws Exception {
+    FdmlEngine engine = FdmlEngine.shared();
+    Path file = Paths.get("corpus/invalid_timing/example-off-meter.fdml.xml");
+    byte[] xml = Files.readAllBytes(file);
+
+    FdmlEngine.DoctorReport fromFile = engine.doctor(FdmlEngine.Document.of(file));
+    FdmlEngine.DoctorReport fromBytes = engine.doctor(FdmlEngine.Document.of(file.toString(), xml));
+    FdmlEngine.DoctorReport fromStream = engine.doctor(FdmlEngine.Document.of(file.toString(), new ByteArrayInputStream(xml)));
+
+    assertFalse(fromFile.ok());
+    assertTrue(fromFile.xsd.ok);
+    assertFalse(fromFile.timing.ok);
+    assertEquals(file, fromBytes.file);
+    for (FdmlEngine.DoctorReport r : List.of(fromBytes, fromStream)) {
+      assertEquals(fromFile.timing.findings.toString(), r.timing.findings.toString());
+      assertEquals(fromFile.lint.findings.toString(), r.lint.findings.toString());
+    }
+    assertEquals(fromFile.timing.findings.toString(), engine.timing(FdmlEngine.Document.of(file)).findings.toString());
+  }
+
+  @Test
+  public void corpusOverloadsMatchTheCommandsAndAreSafeToShare() throws Exception {
+    FdmlEngine engine = FdmlEngine.shared();
+    List<Path> inputs = List.of(Paths.get("corpus/valid"), Paths.get("corpus/invalid_v12"));
+    List<FdmlEngine.Check> expected = engine.validate(inputs);
+    assertEquals(EngineContext.shared().xsdValidator().validateCollect(inputs, 1).size(), expected.size());
+    assertTrue(expected.stream().anyMatch(c -> !c.ok && !c.findings.isEmpty()));
+
+    ExecutorService pool = Parallel.newPool(4);
+    try {
+      List<Future<List<FdmlEngine.Check>>> runs = new ArrayList<>();
+      for (int i = 0; i < 4; i++) runs.add(pool.submit(() -> engine.validate(inputs)));
+      for (Future<List<FdmlEngine.Check>> f : runs) {
+        List<FdmlEngine.Check> got = f.get();
+        assertEquals(expected.size(), got.size());
+        for (int i = 0; i < got.size(); i++) {
+          assertEquals(expected.get(i).file, got.get(i).file);
+          assertEquals(expected.get(i).ok, got.get(i).ok);
+        }
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+
+    String html = engine.render(FdmlEngine.Document.of(Paths.get("corpus/valid/abdala.fdml.xml")));
+    assertTrue(html.contains("<html") || html.contains("<div"), html);
+  }
+
+  @Test
+  public void doctorChecksADocumentWhateverItsName() throws Exception {
+    byte[] broken = Files.readAllBytes(Paths.get("corpus/invalid/example-04-bad-email.fdml.xml"));
+    FdmlEngine.DoctorReport r = FdmlEngine.shared().doctor(FdmlEngine.Document.of("upload.txt", broken));
+    assertFalse(r.xsd.ok, "Expected the schema check to run on a file not named like XML");
+    assertFalse(r.ok());
+  }
+}
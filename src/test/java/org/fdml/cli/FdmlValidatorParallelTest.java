@@ -0,0 +1,42 @@
+package org.fdml.cli;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FdmlValidatorParallelTest {
+
+  @Test
+  public void parallelRunMatchesSerialRunInOrderAndContent() {
+    List<Path> targets = List.of(Paths.get("corpus/valid"), Paths.get("corpus/invalid"), Paths.get("corpus/valid_v12"));
+    FdmlValidator v = EngineContext.shared().xsdValidator();
+
+    var serial = v.validateCollect(targets, 1);
+    var parallel = v.validateCollect(targets, 4);
+
+    assertEquals(serial.size(), parallel.size());
+    assertTrue(serial.stream().anyMatch(r -> !r.ok), "Expected the invalid corpus to produce failures");
+    for (int i = 0; i < serial.size(); i++) {
+      var a = serial.get(i);
+      var b = parallel.get(i);
+      assertEquals(a.file, b.file);
+      assertEquals(a.ok, b.ok);
+      assertEquals(a.message, b.message);
+      assertEquals(a.line, b.line);
+      assertEquals(a.column, b.column);
+    }
+  }
+
+  @Test
+  public void jobsFlagAcceptsPositiveIntegersAndAuto() {
+    assertEquals(1, Parallel.parseJobs(null));
+    assertEquals(8, Parallel.parseJobs("8"));
+    assertTrue(Parallel.parseJobs("auto") >= 1);
+    assertEquals(0, Parallel.parseJobs("0"));
+    assertEquals(0, Parallel.parseJobs("many"));
+  }
+}
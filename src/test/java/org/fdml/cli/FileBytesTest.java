@@ -0,0 +1,47 @@
+package org.fdml.cli;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.nio.file.*;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FileBytesTest {
+
+  @Test
+  public void smallAndMappedFilesStreamTheirExactBytes() throws Exception {
+    Path dir = Files.createTempDirectory("fdml-bytes");
+    byte[] small = "<fdml version=\"1.2\"/>".getBytes();
+    byte[] large = new byte[FileBytes.MAP_THRESHOLD + 4096];
+    Arrays.fill(large, (byte) 'x');
+    Files.write(dir.resolve("small.xml"), small);
+    Files.write(dir.resolve("large.xml"), large);
+
+    for (byte[] expected : new byte[][] {small, large}) {
+      Path f = dir.resolve(expected == small ? "small.xml" : "large.xml");
+      FileBytes b = FileBytes.read(f);
+      assertEquals(expected.length, b.size());
+      try (InputStream a = b.stream(); InputStream c = b.stream()) {
+        assertArrayEquals(expected, a.readAllBytes());
+        assertArrayEquals(expected, c.readAllBytes(), "Each stream should start from the beginning");
+      }
+      assertEquals(FileBytes.systemId(f), b.source().getSystemId());
+      b.release();
+    }
+  }
+
+  @Test
+  public void lastReleaseEndsAccess() throws Exception {
+    Path f = Files.createTempFile("fdml-bytes", ".xml");
+    Files.writeString(f, "<fdml/>");
+    FileBytes b = FileBytes.read(f);
+    b.retain();
+    b.release();
+    assertNotNull(b.stream(), "One holder left, the bytes are still readable");
+    b.release();
+    assertThrows(IllegalStateException.class, b::stream);
+    assertThrows(IllegalStateException.class, b::release);
+  }
+}
@@ -0,0 +1,55 @@
+package org.fdml.cli;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IncrementalIndexTest {
+
+  @Test
+  public void reExtractsOnlyChangedFilesAndMatchesAFullBuild(@TempDir Path tmp) throws Exception {
+    Path corpus = Files.createDirectories(tmp.resolve("corpus"));
+    for (String name : List.of("abdala.fdml.xml", "example-03.fdml.xml", "example-01.fdml.xml")) {
+      Files.copy(Paths.get("corpus/valid", name), corpus.resolve(name));
+    }
+    Path out = tmp.resolve("index.json");
+    List<Path> inputs = List.of(corpus);
+
+    IncrementalIndex.Stats first = IncrementalIndex.write(inputs, 2, out, s -> {});
+    assertEquals(3, first.extracted);
+    assertEquals(Indexer.buildIndex(inputs), Files.readString(out, StandardCharsets.UTF_8));
+
+    Path edited = corpus.resolve("example-03.fdml.xml");
+    String xml = Files.readString(edited, StandardCharsets.UTF_8);
+    Files.writeString(edited, xml.replaceFirst("<title>", "<title>Edited "), StandardCharsets.UTF_8);
+    Files.delete(corpus.resolve("example-01.fdml.xml"));
+    Files.copy(Paths.get("corpus/valid_v12/mayim-mayim.v12.fdml.xml"), corpus.resolve("mayim.fdml.xml"));
+
+    IncrementalIndex.Stats second = IncrementalIndex.write(inputs, 2, out, s -> {});
+    assertEquals(2, second.extracted);
+    assertEquals(1, second.unchanged);
+    assertEquals(1, second.dropped);
+    String merged = Files.readString(out, StandardCharsets.UTF_8);
+    assertEquals(Indexer.buildIndex(inputs), merged);
+    assertTrue(merged.contains("\"title\":\"Edited "), merged);
+  }
+
+  @Test
+  public void indexRewrittenWithoutTheSidecarForcesAFullRebuild(@TempDir Path tmp) throws Exception {
+    List<Path> inputs = List.of(Paths.get("corpus/valid/abdala.fdml.xml"));
+    Path out = tmp.resolve("index.json");
+    IncrementalIndex.write(inputs, 1, out, s -> {});
+    Files.writeString(out, "{\"items\":[]}", StandardCharsets.UTF_8);
+
+    IncrementalIndex.Stats st = IncrementalIndex.write(inputs, 1, out, s -> {});
+    assertEquals(1, st.extracted);
+    assertEquals(Indexer.buildIndex(inputs), Files.readString(out, StandardCharsets.UTF_8));
+  }
+}
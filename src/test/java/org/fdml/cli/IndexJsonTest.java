@@ -70,6 +70,14 @@ public class IndexJsonTest {
     assertTrue(m6.contains("\"fullDescriptionSteps\":16"));
   }
 
+  @Test
+  public void parallelIndexStreamsTheSameJsonInFileOrder() {
+    List<Path> inputs = List.of(Paths.get("corpus/valid"), Paths.get("corpus/valid_v12"), Paths.get("corpus/invalid"));
+    StringBuilder streamed = new StringBuilder();
+    Indexer.writeIndex(inputs, 4, streamed::append);
+    assertEquals(Indexer.buildIndex(inputs), streamed.toString());
+  }
+
   private static String extractItemObject(String json, String file) {
     String marker = "\"file\":\"" + file + "\"";
     int markerPos = json.indexOf(marker);
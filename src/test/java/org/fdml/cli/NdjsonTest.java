@@ -0,0 +1,55 @@
+package org.fdml.cli;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NdjsonTest {
+
+  @Test
+  public void streamedLinesAreTheElementsOfTheFullPayloadInOrder() {
+    EngineContext ctx = EngineContext.shared();
+    var targets = List.of(Paths.get("corpus/valid"), Paths.get("corpus/invalid_v12"));
+    FdmlValidator v = ctx.xsdValidator();
+
+    List<String> lines = new ArrayList<>();
+    Ndjson.entries(targets, 4, v::validateEntry, r -> {
+      StringBuilder sb = new StringBuilder();
+      MainJson.xsd(sb, r);
+      lines.add(sb.toString());
+    });
+
+    String full = MainJson.toJsonValidate(v.validateCollect(targets, 1));
+    assertTrue(lines.size() > 1);
+    assertTrue(lines.stream().anyMatch(l -> l.contains("\"ok\":false")), "Expected the invalid corpus to produce failures");
+    assertEquals(full, "{\"command\":\"validate\",\"results\":[" + String.join(",", lines) + "]}");
+  }
+
+  @Test
+  public void streamedDoctorRecordsMatchTheBatchRun() {
+    EngineContext ctx = EngineContext.shared();
+    var targets = List.of(Paths.get("corpus/valid"), Paths.get("corpus/invalid_timing"));
+    var stages = DoctorStages.stages(ctx.xsdValidator(), ctx.schematronValidator(), true, null);
+
+    List<String> lines = new ArrayList<>();
+    Ndjson.documents(targets, 3, ctx.xpaths(), stages::check, (f, r) -> {
+      StringBuilder sb = new StringBuilder();
+      MainJson.doctorFile(sb, f, r);
+      lines.add(sb.toString());
+    });
+
+    var docs = ParsedDocument.load(ctx.xpaths(), targets);
+    var batch = DoctorStages.run(docs, ctx.xsdValidator(), ctx.schematronValidator(), 1);
+    List<String> expected = new ArrayList<>();
+    for (int i = 0; i < docs.size(); i++) {
+      StringBuilder sb = new StringBuilder();
+      MainJson.doctorFile(sb, docs.get(i).file, batch.records.get(i));
+      expected.add(sb.toString());
+    }
+    assertEquals(expected, lines);
+  }
+}
@@ -0,0 +1,75 @@
+package org.fdml.cli;
+
+import net.sf.saxon.s9api.Processor;
+import net.sf.saxon.s9api.SaxonApiException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.*;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ParsedDocumentTest {
+
+  @Test
+  public void treeIsBuiltOnceAndSharedAcrossCalls() throws Exception {
+    var d = new ParsedDocument(new XPaths(new Processor(false)), Paths.get("corpus/valid/abdala.fdml.xml"), true);
+    assertSame(d.node(), d.node(), "Expected the same tree instance on every call");
+  }
+
+  @Test
+  public void parseErrorIsRememberedForEveryStage() throws Exception {
+    Path tmp = Files.createTempFile("fdml-broken", ".fdml.xml");
+    Files.writeString(tmp, "<fdml version=\"1.0\"><meta>");
+    var d = new ParsedDocument(new XPaths(new Processor(false)), tmp, true);
+    SaxonApiException first = assertThrows(SaxonApiException.class, d::node);
+    SaxonApiException second = assertThrows(SaxonApiException.class, d::node);
+    assertSame(first, second, "Expected the parse failure to be cached, not re-parsed");
+  }
+
+  @Test
+  public void loadWalksDirectoriesAndKeepsExplicitFiles() {
+    var docs = ParsedDocument.load(new Processor(false), List.of(
+      Paths.get("corpus/valid/abdala.fdml.xml"),
+      Paths.get("corpus/invalid_timing")
+    ));
+    assertEquals(2, docs.size());
+    assertTrue(docs.get(0).explicit);
+    assertFalse(docs.get(1).explicit);
+  }
+
+  @Test
+  public void xsdPassBuildsTheTreeAndMatchesStandaloneValidation() throws Exception {
+    FdmlValidator v = EngineContext.shared().xsdValidator();
+    Path invalid = Paths.get("corpus/invalid/example-04-bad-email.fdml.xml");
+    var d = new ParsedDocument(EngineContext.shared().xpaths(), invalid, true);
+
+    var teed = d.xsd(v);
+    var alone = v.validateOne(invalid);
+    assertFalse(teed.ok);
+    assertEquals(alone.message, teed.message);
+    assertEquals(alone.line, teed.line);
+    assertEquals(alone.column, teed.column);
+    assertEquals("fdml", d.xpaths().string("local-name(/*)", d.node()),
+      "Expected the tree to be built even though the document is schema-invalid");
+    assertSame(teed, d.xsd(v));
+  }
+
+  @Test
+  public void xsdAfterTheTreeIsBuiltUsesTheHeldBytes(@TempDir Path tmp) throws Exception {
+    FdmlValidator v = EngineContext.shared().xsdValidator();
+    Path invalid = Paths.get("corpus/invalid/example-04-bad-email.fdml.xml");
+    Path copy = Files.copy(invalid, tmp.resolve(invalid.getFileName()));
+    var d = new ParsedDocument(EngineContext.shared().xpaths(), copy, true);
+
+    d.expectXsd();
+    d.node();
+    Files.delete(copy);
+    var r = d.xsd(v);
+    var alone = v.validateOne(invalid);
+    assertFalse(r.ok);
+    assertEquals(alone.message, r.message, "Expected the schema check to run on the bytes, not the deleted file");
+    assertEquals(alone.line, r.line);
+  }
+}
@@ -0,0 +1,61 @@
+package org.fdml.cli;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.*;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResultCacheTest {
+
+  @Test
+  public void unchangedFilesComeFromCacheWithIdenticalResults() throws Exception {
+    Path work = Files.createTempDirectory("fdml-cache-test");
+    Path dir = Files.createDirectory(work.resolve("in"));
+    Files.copy(Paths.get("corpus/invalid_timing/example-off-meter.fdml.xml"), dir.resolve("timing.fdml.xml"));
+    Files.copy(Paths.get("corpus/invalid_v12/aalistullaa.hold-broken.v12.fdml.xml"), dir.resolve("hold.fdml.xml"));
+    Files.copy(Paths.get("corpus/valid/abdala.fdml.xml"), dir.resolve("abdala.fdml.xml"));
+
+    EngineContext ctx = EngineContext.shared();
+    ResultCache first = ResultCache.open(work.resolve("cache"), "doctor test");
+    var cold = DoctorStages.run(ParsedDocument.load(ctx.xpaths(), List.of(dir)), ctx.xsdValidator(), ctx.schematronValidator(), 1, first);
+    assertEquals(3, first.misses());
+
+    ResultCache second = ResultCache.open(work.resolve("cache"), "doctor test");
+    var warm = DoctorStages.run(ParsedDocument.load(ctx.xpaths(), List.of(dir)), ctx.xsdValidator(), ctx.schematronValidator(), 1, second);
+    assertEquals(3, second.hits());
+    assertEquals(json(cold), json(warm));
+    assertEquals(
+      DoctorExplain.build(cold.xsd, cold.schematron, cold.lint, cold.timing, cold.geometry),
+      DoctorExplain.build(warm.xsd, warm.schematron, warm.lint, warm.timing, warm.geometry));
+
+    Files.writeString(dir.resolve("abdala.fdml.xml"), Files.readString(dir.resolve("abdala.fdml.xml")) + "\n<!-- edited -->\n");
+    ResultCache third = ResultCache.open(work.resolve("cache"), "doctor test");
+    DoctorStages.run(ParsedDocument.load(ctx.xpaths(), List.of(dir)), ctx.xsdValidator(), ctx.schematronValidator(), 1, third);
+    assertEquals(2, third.hits());
+    assertEquals(1, third.misses(), "Only the edited file should be re-validated");
+
+    ResultCache other = ResultCache.open(work.resolve("cache"), "doctor other-options");
+    DoctorStages.run(ParsedDocument.load(ctx.xpaths(), List.of(dir)), ctx.xsdValidator(), ctx.schematronValidator(), 1, other);
+    assertEquals(0, other.hits(), "A different configuration must not share entries");
+  }
+
+  private static String json(DoctorStages s) {
+    return MainJson.toJsonDoctor(s.xsd, s.schematron, s.lint, s.timing, null);
+  }
+
+  @Test
+  public void classDirectoryBuildsAreToldApartByTheirFiles(@TempDir Path classes) throws Exception {
+    String tool = ResultCache.toolVersion();
+    assertTrue(tool.contains("@classes:"), "Tests run from target/classes: " + tool);
+    assertEquals(tool, ResultCache.toolVersion());
+
+    Path rule = Files.createDirectories(classes.resolve("org/fdml/cli")).resolve("Linter.class");
+    Files.write(rule, new byte[] {1, 2, 3});
+    String before = ResultCache.directoryDigest(classes);
+    Files.write(rule, new byte[] {1, 2, 4});
+    assertNotEquals(before, ResultCache.directoryDigest(classes), "Editing a class must change the build");
+  }
+}
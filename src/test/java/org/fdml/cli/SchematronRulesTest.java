@@ -0,0 +1,78 @@
+package org.fdml.cli;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SchematronRulesTest {
+
+  // Trips most v1.2 rules at once, including the ones the corpus never exercises.
+  private static final String KITCHEN_SINK = String.join("\n",
+    "<fdml version=\"1.2\">",
+    "  <meta>",
+    "    <meter value=\"9/16\"/>",
+    "    <geometry>",
+    "      <formation kind=\"couple\" womanSide=\"left\"/>",
+    "      <hold kind=\"weird\"/>",
+    "      <roles><role id=\"man\"/><role id=\"x\" role=\"x\"/></roles>",
+    "    </geometry>",
+    "  </meta>",
+    "  <body>",
+    "    <geometry>",
+    "      <circle><order role=\"lead\"><slot who=\"a\"/><slot who=\"a\"/></order><order/></circle>",
+    "      <twoLines><line id=\"L1\" role=\"nobody\"/><facing a=\" L1 \" b=\"L9\"/></twoLines>",
+    "      <couples><pair a=\"woman\" b=\"man\"/></couples>",
+    "    </geometry>",
+    "    <part><figure id=\"f1\"><step who=\"ghost\"><geo>",
+    "      <primitive kind=\"relpos\" a=\"man\"/><primitive dir=\" inward \" frame=\"dancer\"/>",
+    "      <primitive kind=\"swapPlaces\"/><primitive dir=\"left\"/><primitive kind=\"releaseHold\" who=\" zed \"/><primitive/>",
+    "    </geo></step><step><geo/></step></figure></part>",
+    "    <part/>",
+    "    <figure id=\"f2\"/>",
+    "    <sequence><use figure=\" f1 \"/><use figure=\"nope\"/></sequence>",
+    "  </body>",
+    "</fdml>");
+
+  @Test
+  public void javaEngineMatchesCompiledStylesheet() throws Exception {
+    Path sink = Files.createTempFile("fdml-sch-parity", ".fdml.xml");
+    Files.writeString(sink, KITCHEN_SINK);
+    List<Path> targets = new ArrayList<>();
+    try (var dirs = Files.list(Paths.get("corpus"))) { dirs.filter(Files::isDirectory).sorted().forEach(targets::add); }
+    targets.add(sink);
+
+    SchematronValidator xslt = EngineContext.shared().schematronValidator();
+    var expected = xslt.validateCollect(targets);
+    var actual = xslt.withEngine(SchematronValidator.Engine.JAVA).validateCollect(targets);
+
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      var x = expected.get(i);
+      var j = actual.get(i);
+      assertEquals(x.ok, j.ok, x.file.toString());
+      assertEquals(x.failures, j.failures, x.file.toString());
+      assertEquals(x.messages, j.messages, x.file.toString());
+      if (!x.messages.isEmpty() && !x.messages.get(0).startsWith("Schematron error")) {
+        assertEquals(x.locations, j.locations, x.file.toString());
+      }
+    }
+    assertTrue(actual.get(actual.size() - 1).failures > 15, "Expected the kitchen-sink document to trip most rules");
+  }
+
+  @Test
+  public void parityModeCountsNoMismatchesAndHonoursMaxFailures() throws Exception {
+    Path sink = Files.createTempFile("fdml-sch-parity", ".fdml.xml");
+    Files.writeString(sink, KITCHEN_SINK);
+    SchematronValidator parity = EngineContext.shared().schematronValidator()
+      .withEngine(SchematronValidator.Engine.PARITY).withMaxFailures(3);
+
+    var r = parity.validateCollect(List.of(sink, Paths.get("corpus/invalid_v11"))).get(0);
+    assertEquals(3, r.failures);
+    assertTrue(r.truncated);
+    assertEquals(0, parity.parityMismatches());
+  }
+}
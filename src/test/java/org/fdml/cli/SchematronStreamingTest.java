@@ -0,0 +1,48 @@
+package org.fdml.cli;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SchematronStreamingTest {
+  private static final Path TWO_FAILURES = Paths.get("corpus/invalid_v12/haire-mamougeh.bad-formation.v12.fdml.xml");
+
+  @Test
+  public void collectsTextAndLocationForEachFailedAssert() {
+    var r = EngineContext.shared().schematronValidator().validateCollect(List.of(TWO_FAILURES)).get(0);
+    assertFalse(r.ok);
+    assertEquals(2, r.failures);
+    assertEquals(2, r.messages.size());
+    assertEquals(2, r.locations.size());
+    assertTrue(r.messages.get(0).contains("twoLines/facing/@a"));
+    assertTrue(r.locations.get(0).startsWith("/"), "Expected an XPath location, got " + r.locations.get(0));
+    assertFalse(r.truncated);
+  }
+
+  @Test
+  public void maxFailuresStopsEarlyAndMarksTruncated() {
+    SchematronValidator base = EngineContext.shared().schematronValidator();
+    var r = base.withMaxFailures(1).validateCollect(List.of(TWO_FAILURES)).get(0);
+    assertFalse(r.ok);
+    assertEquals(1, r.failures);
+    assertEquals(1, r.messages.size());
+    assertTrue(r.truncated);
+
+    var exact = base.withMaxFailures(2).validateCollect(List.of(TWO_FAILURES)).get(0);
+    assertEquals(2, exact.failures);
+    assertFalse(exact.truncated, "Reaching the limit exactly is not a truncation");
+    assertSame(base, base.withMaxFailures(0));
+  }
+
+  @Test
+  public void parityReportsMessageListsOfDifferentLengthsWithSameCount() {
+    var x = new SchematronValidator.Result(TWO_FAILURES, false, 2, List.of("a", "b"), List.of("/x", "/y"), false);
+    var j = new SchematronValidator.Result(TWO_FAILURES, false, 2, List.of("a"), List.of("/x"), false);
+    assertEquals("xslt reported 2 message(s), java 1; only xslt has \"b\"", SchematronValidator.differences(x, j));
+    assertNull(SchematronValidator.differences(x, x));
+  }
+}
@@ -0,0 +1,32 @@
+package org.fdml.cli;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SchematronValidatorParallelTest {
+
+  @Test
+  public void parallelRunMatchesSerialRunInOrderAndContent() {
+    List<Path> targets = List.of(Paths.get("corpus/valid"), Paths.get("corpus/invalid_v11"), Paths.get("corpus/invalid_v12"));
+    SchematronValidator sch = EngineContext.shared().schematronValidator();
+
+    var serial = sch.validateCollect(targets, 1);
+    var parallel = sch.validateCollect(targets, 4);
+
+    assertEquals(serial.size(), parallel.size());
+    assertTrue(serial.stream().anyMatch(r -> !r.ok), "Expected the invalid corpus to produce failures");
+    for (int i = 0; i < serial.size(); i++) {
+      var a = serial.get(i);
+      var b = parallel.get(i);
+      assertEquals(a.file, b.file);
+      assertEquals(a.ok, b.ok);
+      assertEquals(a.failures, b.failures);
+      assertEquals(a.messages, b.messages);
+    }
+  }
+}
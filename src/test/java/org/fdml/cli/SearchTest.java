@@ -0,0 +1,70 @@
+package org.fdml.cli;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SearchTest {
+
+  private static SearchIndex small(Path dir) throws Exception {
+    SearchIndex.Builder b = new SearchIndex.Builder();
+    b.add("a.xml", "Circle Waltz", "Couples in a circle.", new String[] {"Step right, close left", "Turn with partner"});
+    b.add("b.xml", "Line Dance", "", new String[] {"Step left", "Right hop"});
+    b.add("c.xml", "Hora", "A circle dance.", new String[] {"Step right", "Close left, step right"});
+    Path file = dir.resolve(SearchIndex.FILE_NAME);
+    b.write(file);
+    return SearchIndex.open(file);
+  }
+
+  private static List<String> files(SearchIndex idx, String query) {
+    return Arrays.asList(Search.search(idx, query, 10).files);
+  }
+
+  @Test
+  public void postingsRoundTripThroughTheFile(@TempDir Path tmp) throws Exception {
+    SearchIndex idx = small(tmp);
+    assertEquals(3, idx.docs());
+    assertEquals("Hora", idx.title(2));
+    assertEquals(-1, idx.lookup("waltzes"));
+
+    SearchIndex.Postings p = idx.postings(idx.lookup("right"), true);
+    assertArrayEquals(new int[] {0, 1, 2}, p.docs);
+    assertArrayEquals(new int[] {1, 1, 2}, p.freqs);
+    // c.xml: "hora" 0 | "a circle dance" 2-4 | "step right" 6-7 | "close left step right" 9-12
+    assertArrayEquals(new int[] {7, 12}, Arrays.copyOfRange(p.positions, p.start[2], p.start[3]));
+  }
+
+  @Test
+  public void booleanPhraseAndRanking(@TempDir Path tmp) throws Exception {
+    SearchIndex idx = small(tmp);
+    assertEquals(List.of("a.xml", "c.xml"), files(idx, "circle AND right"));
+    assertEquals(List.of("a.xml", "c.xml"), files(idx, "circle right"));
+    assertEquals(List.of("b.xml", "a.xml"), files(idx, "hop OR partner"));
+    assertEquals(List.of("b.xml"), files(idx, "(hop OR partner) line"));
+    assertEquals(List.of("c.xml", "a.xml"), files(idx, "\"step right\""));
+    assertEquals(List.of("c.xml"), files(idx, "\"left step\""));
+    // c.xml has "right" and "close" in turn too, but in two different steps
+    assertEquals(List.of("a.xml"), files(idx, "\"right close\""));
+    // c.xml has "right" twice; b.xml is the shortest document
+    assertEquals(List.of("c.xml", "b.xml", "a.xml"), files(idx, "right"));
+    assertThrows(IllegalArgumentException.class, () -> Search.search(idx, "(circle", 10));
+  }
+
+  @Test
+  public void indexFindsStepTextInTheCorpus(@TempDir Path tmp) throws Exception {
+    SearchIndex.Builder b = new SearchIndex.Builder();
+    Indexer.writeIndex(List.of(Paths.get("corpus/valid")), 2, s -> {}, b);
+    Path file = tmp.resolve(SearchIndex.FILE_NAME);
+    b.write(file);
+
+    Search.Hits hits = Search.search(SearchIndex.open(file), "\"light hop\"", 10);
+    assertEquals(1, hits.total);
+    assertEquals("corpus/valid/abdala.fdml.xml", hits.files[0]);
+  }
+}
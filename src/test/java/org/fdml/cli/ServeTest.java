@@ -0,0 +1,119 @@
+package org.fdml.cli;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ServeTest {
+
+  @Test
+  public void endpointsReturnTheCommandJson() throws Exception {
+    HttpServer server = Serve.start("127.0.0.1", 0, 2);
+    try {
+      String base = "http://127.0.0.1:" + server.getAddress().getPort();
+      HttpClient http = HttpClient.newHttpClient();
+      EngineContext ctx = EngineContext.shared();
+
+      var byPath = http.send(HttpRequest.newBuilder(URI.create(base + "/validate?path=corpus/valid&path=corpus/invalid_v12")).build(),
+          HttpResponse.BodyHandlers.ofString());
+      assertEquals(200, byPath.statusCode());
+      assertEquals(MainJson.toJsonValidate(ctx.xsdValidator().validateCollect(List.of(Paths.get("corpus/valid"), Paths.get("corpus/invalid_v12")))),
+          byPath.body());
+
+      Path file = Paths.get("corpus/invalid_timing/example-off-meter.fdml.xml");
+      var posted = http.send(HttpRequest.newBuilder(URI.create(base + "/doctor?name=" + file + "&explain=1"))
+          .POST(HttpRequest.BodyPublishers.ofByteArray(Files.readAllBytes(file))).build(), HttpResponse.BodyHandlers.ofString());
+      var st = DoctorStages.run(ParsedDocument.load(ctx.xpaths(), List.of(file)), ctx.xsdValidator(), ctx.schematronValidator(), 1);
+      assertEquals(MainJson.toJsonDoctor(st.xsd, st.schematron, st.lint, st.timing,
+          DoctorExplain.build(st.xsd, st.schematron, st.lint, st.timing, st.geometry)), posted.body());
+      assertEquals("false", posted.headers().firstValue("X-Fdml-Ok").orElse(null));
+
+      var missing = http.send(HttpRequest.newBuilder(URI.create(base + "/lint")).build(), HttpResponse.BodyHandlers.ofString());
+      assertEquals(400, missing.statusCode());
+    } finally {
+      server.stop(0);
+    }
+  }
+
+  @Test
+  public void postedDocumentWithADoctypeIsRefused(@TempDir Path tmp) throws Exception {
+    Path secret = Files.writeString(tmp.resolve("secret.txt"), "xxe-secret-value");
+    String xml = "<?xml version=\"1.0\"?>\n<!DOCTYPE fdml [<!ENTITY x SYSTEM \"" + secret.toUri() + "\">]>\n"
+        + "<fdml version=\"1.0\"><meta><title>&x;</title></meta><body/></fdml>";
+    HttpServer server = Serve.start("127.0.0.1", 0, 1);
+    try {
+      String base = "http://127.0.0.1:" + server.getAddress().getPort();
+      HttpClient http = HttpClient.newHttpClient();
+      for (String endpoint : List.of("/export-json", "/index")) {
+        var r = http.send(HttpRequest.newBuilder(URI.create(base + endpoint))
+            .POST(HttpRequest.BodyPublishers.ofString(xml)).build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(400, r.statusCode(), endpoint);
+        assertFalse(r.body().contains("xxe-secret-value"), r.body());
+      }
+    } finally {
+      server.stop(0);
+    }
+  }
+
+  @Test
+  public void foreignHostOrOriginIsRefused() throws Exception {
+    HttpServer server = Serve.start("127.0.0.1", 0, 1);
+    try {
+      int port = server.getAddress().getPort();
+      assertEquals(200, status(port, "Host: 127.0.0.1:" + port));
+      assertEquals(200, status(port, "Host: localhost:" + port));
+      assertEquals(403, status(port, "Host: evil.example"));
+      assertEquals(403, status(port, "Host: evil.example:" + port));
+      assertEquals(403, status(port, "Host: 127.0.0.1:" + port + "\r\nOrigin: http://evil.example"));
+      assertEquals(200, status(port, "Host: 127.0.0.1:" + port + "\r\nOrigin: http://127.0.0.1:" + port));
+    } finally {
+      server.stop(0);
+    }
+  }
+
+  @Test
+  public void pathsOutsideTheWorkingDirectoryAreRefused(@TempDir Path tmp) throws Exception {
+    Path outside = Files.copy(Paths.get("corpus/valid/abdala.fdml.xml"), tmp.resolve("abdala.fdml.xml"));
+    HttpServer server = Serve.start("127.0.0.1", 0, 1);
+    try {
+      String base = "http://127.0.0.1:" + server.getAddress().getPort();
+      HttpClient http = HttpClient.newHttpClient();
+      for (String path : List.of(outside.toString(), "../" + outside.getFileName(), "corpus/../../etc/hostname")) {
+        var r = http.send(HttpRequest.newBuilder(URI.create(base + "/index?path=" + path)).build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(403, r.statusCode(), path);
+      }
+      var inside = http.send(HttpRequest.newBuilder(URI.create(base + "/index?path=corpus/valid/abdala.fdml.xml")).build(),
+          HttpResponse.BodyHandlers.ofString());
+      assertEquals(200, inside.statusCode());
+    } finally {
+      server.stop(0);
+    }
+  }
+
+  /** The status of a raw {@code GET /health}, as {@link HttpClient} will not send a Host of our choosing. */
+  private static int status(int port, String headers) throws Exception {
+    try (Socket s = new Socket("127.0.0.1", port)) {
+      OutputStream out = s.getOutputStream();
+      out.write(("GET /health HTTP/1.1\r\n" + headers + "\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+      out.flush();
+      InputStream in = s.getInputStream();
+      String line = new String(in.readNBytes(12), StandardCharsets.US_ASCII);
+      return Integer.parseInt(line.substring(9, 12));
+    }
+  }
+}
@@ -0,0 +1,55 @@
+package org.fdml.cli;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShardTest {
+
+  @Test
+  public void shardsPartitionTheInputsByNormalizedPath() {
+    var targets = List.of(Paths.get("corpus"));
+    List<Path> all = new ArrayList<>();
+    for (var e : CorpusWalker.plan(targets)) all.add(e.file);
+
+    Set<Path> union = new HashSet<>();
+    int total = 0;
+    for (int i = 1; i <= 3; i++) {
+      for (var e : CorpusWalker.plan(targets, Shard.parse(i + "/3"))) {
+        assertTrue(union.add(e.file), "file in two shards: " + e.file);
+        total++;
+      }
+    }
+    assertEquals(all.size(), total);
+    assertEquals(new HashSet<>(all), union);
+
+    Path f = all.get(0);
+    assertEquals(Shard.key(f), Shard.key(Paths.get("./" + f).toAbsolutePath()));
+    assertEquals(Shard.slot(f, 7), Shard.slot(Paths.get("corpus/../" + f), 7));
+    assertNull(Shard.parse("0/3"));
+    assertNull(Shard.parse("4/3"));
+    assertNull(Shard.parse("1-3"));
+  }
+
+  @Test
+  public void mergedShardReportsEqualTheSingleRun() {
+    FdmlValidator v = EngineContext.shared().xsdValidator();
+    var targets = List.of(Paths.get("corpus/valid"), Paths.get("corpus/invalid_v12"));
+    String single = MainJson.toJsonValidate(v.validateCollect(targets, 1));
+
+    List<String> reports = new ArrayList<>();
+    for (int i = 3; i >= 1; i--) {
+      Shard shard = Shard.parse(i + "/3");
+      reports.add(MainJson.withShard(MainJson.toJsonValidate(v.validateCollect(targets, 1, shard)), shard));
+    }
+    assertEquals(single, MergeResults.merge(reports));
+    assertThrows(IllegalArgumentException.class, () -> MergeResults.merge(reports.subList(0, 2)));
+  }
+}
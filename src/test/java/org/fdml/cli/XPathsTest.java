@@ -0,0 +1,35 @@
+package org.fdml.cli;
+
+import net.sf.saxon.s9api.Processor;
+import net.sf.saxon.s9api.XdmNode;
+import org.junit.jupiter.api.Test;
+
+import javax.xml.transform.stream.StreamSource;
+import java.io.StringReader;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class XPathsTest {
+
+  @Test
+  public void expressionsAreCompiledOnceAndReused() throws Exception {
+    XPaths xp = new XPaths(new Processor(false));
+    assertSame(xp.compile("string(@kind)"), xp.compile("string(@kind)"));
+  }
+
+  @Test
+  public void typedAccessorsEvaluateAgainstContext() throws Exception {
+    Processor proc = new Processor(false);
+    XPaths xp = new XPaths(proc);
+    XdmNode doc = proc.newDocumentBuilder().build(new StreamSource(new StringReader(
+      "<fdml version=\"1.2\"><body><figure><step beats=\"2\"/><step beats=\"3\"/></figure></body></fdml>")));
+
+    assertEquals("1.2", xp.string("string(/fdml/@version)", doc));
+    assertEquals("", xp.string("string(/fdml/meta/title)", doc));
+    assertEquals(5.0, xp.number("sum(//step/@beats)", doc));
+    assertTrue(Double.isNaN(xp.number("/fdml/meta/tempo/@bpm", doc)));
+    assertTrue(xp.bool("exists(//figure)", doc));
+    assertFalse(xp.bool("exists(//part)", doc));
+    assertEquals(2, xp.evaluate("//step", doc).size());
+  }
+}